@@ -610,6 +610,38 @@ public class AuHelper extends BaseHelper {
         return getActiveUserIdList(ms).size();
     }
 
+    /**
+     * 所有【在线/活跃】（默认60秒内）用户数量的近似值，不需要读取每个设备的请求信息，适合定期统计
+     *
+     * @return 用户数量的近似值
+     * @since 1.2.14
+     */
+    public static int getApproximateNumberOfActiveUser() {
+        return getApproximateNumberOfActiveUser(60000L);
+    }
+
+    /**
+     * 所有【在线/活跃】用户数量的近似值，时间间隔按分钟向外取整
+     *
+     * @param time 时间间隔
+     * @return 用户数量的近似值
+     * @since 1.2.14
+     */
+    public static int getApproximateNumberOfActiveUser(@NonNull String time) {
+        return AuthzDeviceHelper.getApproximateNumberOfActiveUser(time);
+    }
+
+    /**
+     * 所有【在线/活跃】用户数量的近似值，时间间隔按分钟向外取整
+     *
+     * @param ms 时间间隔(ms)
+     * @return 用户数量的近似值
+     * @since 1.2.14
+     */
+    public static int getApproximateNumberOfActiveUser(long ms) {
+        return AuthzDeviceHelper.getApproximateNumberOfActiveUser(ms);
+    }
+
     /**
      * 所有【在线/活跃】（默认60秒内）用户Id数组
      *
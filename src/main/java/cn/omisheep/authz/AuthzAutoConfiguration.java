@@ -142,7 +142,7 @@ public class AuthzAutoConfiguration {
             template.setKeySerializer(stringRedisSerializer);
             template.setHashKeySerializer(stringRedisSerializer);
             template.setValueSerializer(jackson2JsonRedisSerializer);
-            template.setHashKeySerializer(jackson2JsonRedisSerializer);
+            template.setHashValueSerializer(jackson2JsonRedisSerializer);
             template.afterPropertiesSet();
             return template;
         }
@@ -84,6 +84,49 @@ public @interface RateLimit {
      */
     String[] associatedPatterns() default {};
 
+    /**
+     * 限流算法，默认为滑动窗口。
+     * <p>
+     * 滑动窗口会记录窗口内的每一次请求时间，每个ip或用户id占用 O(maxRequests) 的内存；
+     * 令牌桶与GCRA只需要常数个字段，适合 maxRequests 很大的场景，允许的突发数量为 maxRequests，
+     * 之后按 window / maxRequests 的速率恢复。
+     *
+     * @return 限流算法
+     * @since 1.2.14
+     */
+    Algorithm algorithm() default Algorithm.SLIDING_WINDOW;
+
+    enum Algorithm {
+        /**
+         * 滑动窗口（记录每一次请求）
+         */
+        SLIDING_WINDOW("slidingWindow"),
+        /**
+         * 令牌桶
+         */
+        TOKEN_BUCKET("tokenBucket"),
+        /**
+         * generic cell rate algorithm，只记录一个理论到达时间
+         */
+        GCRA("gcra");
+
+        private final String val;
+
+        Algorithm(String val) {
+            this.val = val;
+        }
+
+        @JsonValue
+        public String getVal() {
+            return val;
+        }
+
+        @JsonCreator
+        public static Algorithm create(String p) {
+            return valueOf(NamingUtils.humpToUnderline(p).toUpperCase(Locale.ROOT));
+        }
+    }
+
     enum CheckType {
         IP("ip"),
         USER_ID("userId");
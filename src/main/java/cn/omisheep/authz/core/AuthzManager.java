@@ -1,6 +1,7 @@
 package cn.omisheep.authz.core;
 
 import cn.omisheep.authz.core.auth.ipf.Blacklist;
+import cn.omisheep.authz.core.auth.ipf.BlacklistSnapshot;
 import cn.omisheep.authz.core.auth.ipf.Httpd;
 import cn.omisheep.authz.core.auth.rpd.PermissionDict;
 import cn.omisheep.authz.core.cache.L2Cache;
@@ -43,7 +44,11 @@ public class AuthzManager extends BaseHelper {
     @Nullable
     public static Object modify(@NonNull AuthzModifier authzModifier) {
         try {
-            return op(authzModifier);
+            Object result = op(authzModifier);
+            if (authzModifier.getTarget() == AuthzModifier.Target.BLACKLIST) {
+                BlacklistSnapshot.record(authzModifier.getBlacklistInfo());
+            }
+            return result;
         } finally {
             if (cache instanceof L2Cache) AuthzAppVersion.send(authzModifier);
         }
@@ -174,6 +174,20 @@ public class AuthzProperties {
          */
         private boolean bindIp = false;
 
+        /**
+         * 已验证token的缓存数量，同一个token重复请求时不再重复验签解析，为0时关闭
+         *
+         * @since 1.2.14
+         */
+        private long parsedCacheMaximumSize = 0;
+
+        /**
+         * 已验证token缓存的最长存活时间，不会超过token本身的过期时间，默认 5m ，单位 ms|s|m|h|d
+         *
+         * @since 1.2.14
+         */
+        private String parsedCacheExpireTime = "5m";
+
     }
 
     @Data
@@ -243,6 +257,44 @@ public class AuthzProperties {
          */
         private boolean enableRedisActuator = false;
 
+        /**
+         * 是否使用redis进行集群限流，enableRedis为true时生效，默认关闭
+         * 开启后每次限流检查都在redis中通过lua脚本原子完成，各节点共享同一份计数，不再广播请求记录
+         *
+         * @since 1.2.14
+         */
+        private boolean enableRedisRateLimit = false;
+
+        /**
+         * 限流请求记录同步时每批最多合并的条数，不大于1时逐条发布，enableRedis为true且未开启集群限流时生效
+         *
+         * @since 1.2.14
+         */
+        private int requestBatchSize = 200;
+
+        /**
+         * 限流请求记录同步的发布周期，默认5毫秒
+         *
+         * @since 1.2.14
+         */
+        private String requestBatchPeriod = "5ms";
+
+        /**
+         * 设备最近请求时间的写入间隔，同一设备在间隔内的请求不再重复写入，默认30秒
+         * 为0或为空时每次请求都写入
+         *
+         * @since 1.2.14
+         */
+        private String requestDetailsWriteInterval = "30s";
+
+        /**
+         * 设备最近请求时间的批量写入周期，期间待写入的记录合并后一次写入（开启redis时使用pipeline），默认1秒
+         * 为0或为空时逐条写入
+         *
+         * @since 1.2.14
+         */
+        private String requestDetailsFlushPeriod = "1s";
+
         /**
          * redis每次扫描key的数量
          */
@@ -267,6 +319,15 @@ public class AuthzProperties {
          */
         private String expireAfterReadTime   = "10m";
 
+        /**
+         * L2Cache在【写入】之后多久从redis异步刷新，默认1分钟，配置为0时不刷新，单位 ms|s|m|h|d
+         * 读取只走本地缓存，其他节点的修改依赖CacheMessage同步，而setSneaky写入不发送消息，
+         * 其他节点中的旧值只能靠刷新与redis对齐
+         *
+         * @since 1.2.14
+         */
+        private String refreshAfterWriteTime = "1m";
+
     }
 
     @Data
@@ -365,6 +426,63 @@ public class AuthzProperties {
          */
         private String gcPeriod;
 
+        /**
+         * 限流记录的清理周期，单位 s|m|h|d，默认10分钟
+         * 为0或为空则关闭
+         *
+         * @since 1.2.14
+         */
+        private String requestPoolCleanPeriod = "10m";
+
+        /**
+         * 限流记录的最少空闲时间，单位 s|m|h|d，默认10分钟
+         * 超过该时间未访问、窗口已空且不在封禁（惩罚）期内的ip/userId记录会在清理时被移除
+         * 为0或为空时使用清理周期
+         *
+         * @since 1.2.14
+         */
+        private String requestPoolIdleTime = "10m";
+
+        /**
+         * 过期封禁记录的清理周期，单位 s|m|h|d，默认1分钟
+         * 检查时会跳过过期记录，不依赖清理
+         * 为0或为空则关闭
+         *
+         * @since 1.2.14
+         */
+        private String blacklistCleanPeriod = "1m";
+
+        /**
+         * ip黑名单布隆过滤器的初始容量，封禁的ip数超过容量时自动按两倍扩容重建
+         *
+         * @since 1.2.14
+         */
+        private int blacklistBloomFilterCapacity = 1000;
+
+        /**
+         * ip黑名单布隆过滤器的误判率
+         *
+         * @since 1.2.14
+         */
+        private double blacklistBloomFilterFpp = 0.001;
+
+        /**
+         * 黑名单快照的周期，单位 s|m|h|d，默认关闭，配置后开启，启动时从快照恢复
+         * 开启redis时集群共用一份快照，封禁与解除时立即更新，该周期只用于清理过期记录；
+         * 否则按该周期保存在 blacklistSnapshotFile 中，只在封禁记录有变化时保存
+         * 为0或为空则关闭
+         *
+         * @since 1.2.14
+         */
+        private String blacklistSnapshotPeriod;
+
+        /**
+         * 未开启redis时黑名单快照的保存文件，为空则不保存
+         *
+         * @since 1.2.14
+         */
+        private String blacklistSnapshotFile;
+
         /**
          * jar包md5检查
          */
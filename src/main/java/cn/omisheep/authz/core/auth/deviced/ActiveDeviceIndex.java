@@ -0,0 +1,124 @@
+package cn.omisheep.authz.core.auth.deviced;
+
+import cn.omisheep.authz.core.config.Constants;
+import cn.omisheep.authz.core.util.RedisUtils;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * 设备最近请求时间的有序索引，查找【在线/活跃】设备时不再需要按 {@code user:request:*:*} 扫描整个键空间
+ * <p>
+ * 成员为 {@code {userId}:{tid}}，分数为最近请求时间。开启redis时保存在redis的zset中，否则保存在本地。
+ * 每次写入时顺带删除早于保留时间的成员；设备退出登录后成员不会立即删除，读取请求信息时发现不存在会被忽略。
+ * 索引由所有节点共同写入，分数比本地缓存中的请求信息更新，判断是否活跃时以两者中较晚的时间为准
+ *
+ * @author zhouxinchen[1269670415@qq.com]
+ * @since 1.2.14
+ */
+class ActiveDeviceIndex {
+
+    private final boolean                         enableRedis;
+    private final long                            retention;
+    private final ConcurrentHashMap<String, Long> scores = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Item>     sorted = new ConcurrentSkipListSet<>();
+
+    /**
+     * @param enableRedis 是否开启redis
+     * @param retention   成员的保留时间(ms)
+     */
+    ActiveDeviceIndex(boolean enableRedis,
+                      long retention) {
+        this.enableRedis = enableRedis;
+        this.retention   = retention;
+    }
+
+    /**
+     * @param requests 成员及其最近请求时间
+     * @param now      当前时间
+     */
+    void add(Map<String, Long> requests,
+             long now) {
+        if (requests == null || requests.isEmpty()) return;
+        if (enableRedis) {
+            RedisUtils.ZSets.add(Constants.USER_ACTIVE_INDEX_KEY.get(), requests, now - retention);
+            return;
+        }
+        requests.forEach((member, time) -> scores.compute(member, (k, v) -> {
+            if (v != null) {
+                if (v >= time) return v;
+                sorted.remove(new Item(v, k));
+            }
+            sorted.add(new Item(time, k));
+            return time;
+        }));
+        trim(now - retention);
+    }
+
+    /**
+     * @param since 起始时间(ms)，不包含
+     * @return 最近请求时间晚于since的成员及其最近请求时间
+     */
+    Map<String, Long> since(long since) {
+        if (enableRedis) return RedisUtils.ZSets.rangeByScoreWithScores(Constants.USER_ACTIVE_INDEX_KEY.get(), since + 1);
+        HashMap<String, Long> members = new HashMap<>();
+        for (Item item : sorted.tailSet(new Item(since + 1, ""))) members.put(item.member, item.score);
+        return members;
+    }
+
+    /**
+     * @param members 成员
+     * @return 索引中存在的成员及其最近请求时间
+     */
+    Map<String, Long> scores(Collection<String> members) {
+        if (members == null || members.isEmpty()) return new HashMap<>();
+        if (enableRedis) return RedisUtils.ZSets.scores(Constants.USER_ACTIVE_INDEX_KEY.get(), members);
+        HashMap<String, Long> map = new HashMap<>();
+        for (String member : members) {
+            Long score = scores.get(member);
+            if (score != null) map.put(member, score);
+        }
+        return map;
+    }
+
+    private void trim(long min) {
+        for (Item item : sorted.headSet(new Item(min, ""))) {
+            scores.computeIfPresent(item.member, (k, v) -> {
+                if (v != item.score) return v;
+                sorted.remove(item);
+                return null;
+            });
+        }
+    }
+
+    private static final class Item implements Comparable<Item> {
+        private final long   score;
+        private final String member;
+
+        private Item(long score,
+                     String member) {
+            this.score  = score;
+            this.member = member;
+        }
+
+        @Override
+        public int compareTo(Item o) {
+            int c = Long.compare(score, o.score);
+            return c != 0 ? c : member.compareTo(o.member);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Item && compareTo((Item) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(score) * 31 + member.hashCode();
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+package cn.omisheep.authz.core.auth.deviced;
+
+import cn.omisheep.authz.core.config.Constants;
+import cn.omisheep.authz.core.util.RedisUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按分钟分桶的活跃用户近似计数
+ * <p>
+ * 每个桶是一个HyperLogLog，开启redis时使用 {@code PFADD}/{@code PFCOUNT}，否则使用进程内的 {@link HyperLogLog}。
+ * 统计时合并时间范围覆盖到的桶，范围按分钟向外取整，超过保留时间的部分会被忽略。
+ * redis中所有桶的key共用一个hash tag，保证在集群中位于同一个slot，可以用一次 {@code PFCOUNT} 合并。
+ * 本地的桶在新建时顺带删除超过保留时间的旧桶，不依赖统计方法被调用
+ *
+ * @author zhouxinchen[1269670415@qq.com]
+ * @since 1.2.14
+ */
+class ActiveUserCounter {
+
+    static final long BUCKET = TimeUnit.MINUTES.toMillis(1);
+
+    private final boolean                              enableRedis;
+    private final long                                 retention;
+    private final ConcurrentHashMap<Long, HyperLogLog> local = new ConcurrentHashMap<>();
+
+    /**
+     * @param enableRedis 是否开启redis
+     * @param retention   桶的保留时间(ms)
+     */
+    ActiveUserCounter(boolean enableRedis,
+                      long retention) {
+        this.enableRedis = enableRedis;
+        this.retention   = retention;
+    }
+
+    static long bucket(long time) {
+        return time / BUCKET;
+    }
+
+    /**
+     * @param bucket  桶
+     * @param userIds 该桶内活跃的用户
+     */
+    void add(long bucket,
+             Collection<String> userIds) {
+        if (userIds == null || userIds.isEmpty()) return;
+        if (enableRedis) {
+            RedisUtils.HyperLogLogs.add(key(bucket), retention + BUCKET, userIds);
+            return;
+        }
+        HyperLogLog hll = local.get(bucket);
+        if (hll == null) {
+            hll = local.computeIfAbsent(bucket, k -> new HyperLogLog());
+            prune(bucket * BUCKET);
+        }
+        userIds.forEach(hll::add);
+    }
+
+    void add(Map<Long, ? extends Collection<String>> userIdsByBucket) {
+        userIdsByBucket.forEach(this::add);
+    }
+
+    /**
+     * @param now 当前时间
+     * @param ms  时间范围(ms)
+     * @return 时间范围内活跃用户数量的近似值
+     */
+    long count(long now,
+               long ms) {
+        if (ms <= 0) return 0;
+        long to   = bucket(now);
+        long from = bucket(now - Math.min(ms, retention) + 1);
+        if (enableRedis) {
+            ArrayList<String> keys = new ArrayList<>();
+            for (long bucket = from; bucket <= to; bucket++) keys.add(key(bucket));
+            return RedisUtils.HyperLogLogs.count(keys);
+        }
+        prune(now);
+        byte[] registers = HyperLogLog.newRegisters();
+        for (long bucket = from; bucket <= to; bucket++) {
+            HyperLogLog hll = local.get(bucket);
+            if (hll != null) hll.mergeTo(registers);
+        }
+        return HyperLogLog.estimate(registers);
+    }
+
+    private void prune(long now) {
+        long min = bucket(now - retention);
+        local.keySet().removeIf(bucket -> bucket < min);
+    }
+
+    private static String key(long bucket) {
+        return Constants.USER_ACTIVE_COUNTER_KEY_PREFIX.get() + bucket;
+    }
+
+}
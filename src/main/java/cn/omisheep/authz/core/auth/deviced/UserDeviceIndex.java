@@ -0,0 +1,99 @@
+package cn.omisheep.authz.core.auth.deviced;
+
+import cn.omisheep.authz.core.config.Constants;
+import cn.omisheep.authz.core.util.RedisUtils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 用户到其设备id(tid)的二级索引，查找某个用户的设备时不再需要按 {@code user:device:{userId}:*} 扫描整个键空间
+ * <p>
+ * 开启redis时保存在redis的set中，每次添加都会把过期时间延长到不小于设备的过期时间；否则保存在本地。
+ * 设备过期后索引中的tid不会立即删除，读取设备时发现不存在再通过 {@link #prune(Object, Collection)} 顺带清理
+ *
+ * @author zhouxinchen[1269670415@qq.com]
+ * @since 1.2.14
+ */
+class UserDeviceIndex {
+
+    private final boolean                                enableRedis;
+    private final ConcurrentHashMap<String, Set<String>> local = new ConcurrentHashMap<>();
+
+    UserDeviceIndex(boolean enableRedis) {
+        this.enableRedis = enableRedis;
+    }
+
+    /**
+     * @param userId userId
+     * @param tid    设备id
+     * @param ms     设备的存活时间，-1为不过期
+     */
+    void add(Object userId,
+             String tid,
+             long ms) {
+        if (tid == null) return;
+        if (enableRedis) {
+            RedisUtils.Sets.add(key(userId), ms, Collections.singleton(tid));
+        } else {
+            local.compute(String.valueOf(userId), (k, v) -> {
+                if (v == null) v = ConcurrentHashMap.newKeySet();
+                v.add(tid);
+                return v;
+            });
+        }
+    }
+
+    void remove(Object userId,
+                Collection<String> tids) {
+        if (tids == null || tids.isEmpty()) return;
+        if (enableRedis) {
+            RedisUtils.Sets.remove(key(userId), tids);
+        } else {
+            local.computeIfPresent(String.valueOf(userId), (k, v) -> {
+                v.removeAll(tids);
+                return v.isEmpty() ? null : v;
+            });
+        }
+    }
+
+    /**
+     * 删除设备已经不存在的tid。redis中逐个确认设备key不存在后再删除，设备key与索引可能不在同一个slot，不能放在同一个脚本中。
+     * 登录时先写入设备再写入索引，所以索引中能读到的tid对应的设备一定已经写入，确认与删除之间不会误删刚登录的设备
+     *
+     * @param userId userId
+     * @param tids   读取时发现设备不存在的tid
+     */
+    void prune(Object userId,
+               Collection<String> tids) {
+        if (tids == null || tids.isEmpty()) return;
+        if (enableRedis) {
+            HashMap<String, String> keys = new HashMap<>();
+            for (String tid : tids) keys.put(UserDevicesDict.key(userId, tid), tid);
+            Set<String> absent = new HashSet<>();
+            RedisUtils.Obj.absent(keys.keySet()).forEach(k -> absent.add(keys.get(k)));
+            remove(userId, absent);
+        } else {
+            remove(userId, tids);
+        }
+    }
+
+    /**
+     * @param userId userId
+     * @return 该用户的全部设备id，可能包含已经过期的设备
+     */
+    Set<String> tids(Object userId) {
+        if (enableRedis) return RedisUtils.Sets.members(key(userId));
+        Set<String> tids = local.get(String.valueOf(userId));
+        return tids == null ? new HashSet<>() : new HashSet<>(tids);
+    }
+
+    private static String key(Object userId) {
+        return Constants.USER_DEVICE_INDEX_KEY_PREFIX.get() + userId;
+    }
+
+}
@@ -94,6 +94,17 @@ public interface UserDevicesDict {
     List<DeviceDetails> listActiveUserDevices(Object userId,
                                               long ms);
 
+    /**
+     * 所有【在线/活跃】用户数量的近似值，用于只需要数量的统计场景
+     *
+     * @param ms 毫秒数
+     * @return 【在线/活跃】用户数量的近似值
+     * @since 1.2.14
+     */
+    default int countActiveUsersApproximately(long ms) {
+        return (int) listActiveUserDevices(ms).stream().map(DeviceDetails::getUserId).distinct().count();
+    }
+
     // =========================   other   ========================= //
 
     void request(HttpMeta httpMeta);
@@ -8,13 +8,19 @@ import cn.omisheep.authz.core.auth.ipf.HttpMeta;
 import cn.omisheep.authz.core.cache.Cache;
 import cn.omisheep.authz.core.config.Constants;
 import cn.omisheep.authz.core.tk.AccessToken;
+import cn.omisheep.authz.core.tk.AccessTokenCache;
 import cn.omisheep.authz.core.tk.GrantType;
 import cn.omisheep.authz.core.tk.RefreshToken;
 import cn.omisheep.authz.core.tk.TokenPair;
+import cn.omisheep.authz.core.util.RedisUtils;
 import cn.omisheep.commons.util.Async;
 import cn.omisheep.commons.util.TimeUtils;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.StringUtils;
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.nullness.qual.NonNull;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
@@ -38,11 +44,98 @@ public class UserDevicesDictByCache implements UserDevicesDict {
     private final AuthzProperties                      properties;
     private final Cache                                cache;
     private final Map<Object, CompletableFuture<Void>> cleanCache = new ConcurrentHashMap<>();
+    private final UserDeviceIndex                      deviceIndex;
+    private final ActiveDeviceIndex                    activeIndex;
+    private final ActiveUserCounter                    activeUserCounter;
+
+    private static final long REQUEST_DETAILS_TTL             = TimeUnit.DAYS.toMillis(2);
+    private static final long ACTIVE_USER_COUNTER_RETENTION   = TimeUnit.DAYS.toMillis(1);
+    private static final int  DEVICE_INDEX_MIGRATE_BATCH_SIZE = 1000;
+
+    private final long                               requestWriteInterval;
+    private final boolean                            batchRequestWrites;
+    private final Map<String, Long>                  lastRequestWrites  = new ConcurrentHashMap<>();
+    private final Map<String, DefaultRequestDetails> pendingRequests    = new ConcurrentHashMap<>();
+    private final Map<Long, Set<String>>             pendingActiveUsers = new ConcurrentHashMap<>();
+
+    private final com.github.benmanes.caffeine.cache.Cache<String, Long> activeUserBuckets = Caffeine.newBuilder()
+            .expireAfterWrite(ActiveUserCounter.BUCKET * 2, TimeUnit.MILLISECONDS)
+            .build();
+
+    private static final long DEVICE_STATUS_CACHE_MAXIMUM_SIZE = 100000;
+    private static final long DEVICE_STATUS_TTL                = TimeUnit.MINUTES.toNanos(10);
+    private static final long DEVICE_NONE_STATUS_TTL           = TimeUnit.SECONDS.toNanos(1);
+
+    private final com.github.benmanes.caffeine.cache.Cache<String, DeviceStatus> deviceStatusCache;
 
     public UserDevicesDictByCache(AuthzProperties properties,
                                   Cache cache) {
-        this.properties = properties;
-        this.cache      = cache;
+        boolean enableRedis = properties.getCache().isEnableRedis();
+        this.properties        = properties;
+        this.cache             = cache;
+        this.deviceIndex       = new UserDeviceIndex(enableRedis);
+        this.activeIndex       = new ActiveDeviceIndex(enableRedis, REQUEST_DETAILS_TTL);
+        this.activeUserCounter = new ActiveUserCounter(enableRedis, ACTIVE_USER_COUNTER_RETENTION);
+        this.deviceStatusCache = Caffeine.newBuilder()
+                .maximumSize(Optional.ofNullable(properties.getCache().getCacheMaximumSize())
+                                     .orElse(DEVICE_STATUS_CACHE_MAXIMUM_SIZE))
+                .expireAfter(new Expiry<String, DeviceStatus>() {
+                    // 设备不存在的状态只短暂缓存，避免其他节点的写入消息丢失后一直要求重新登录
+                    @Override
+                    public long expireAfterCreate(@NonNull String key,
+                                                  @NonNull DeviceStatus value,
+                                                  long currentTime) {
+                        return value == DeviceStatus.NONE ? DEVICE_NONE_STATUS_TTL : DEVICE_STATUS_TTL;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(@NonNull String key,
+                                                  @NonNull DeviceStatus value,
+                                                  long currentTime,
+                                                  @NonNegative long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(@NonNull String key,
+                                                @NonNull DeviceStatus value,
+                                                long currentTime,
+                                                @NonNegative long currentDuration) {
+                        return value == DeviceStatus.NONE ? currentDuration : DEVICE_STATUS_TTL;
+                    }
+                })
+                .build();
+
+        String writeInterval = properties.getCache().getRequestDetailsWriteInterval();
+        String flushPeriod   = properties.getCache().getRequestDetailsFlushPeriod();
+        this.requestWriteInterval = writeInterval == null ? 0 : Math.max(0, TimeUtils.parseTimeValue(writeInterval));
+        this.batchRequestWrites   = flushPeriod != null && TimeUtils.parseTimeValue(flushPeriod) > 0;
+    }
+
+    /**
+     * 从已有的设备重建索引，只在开启redis时需要，用于升级前已经登录的设备。
+     * 完成后写入迁移标记，之后的启动不再扫描设备。
+     * 活跃设备索引不做回填，升级前的设备在下一次请求时加入
+     *
+     * @since 1.2.14
+     */
+    public void initDeviceIndex() {
+        if (!properties.getCache().isEnableRedis()) return;
+        String migratedKey = Constants.USER_DEVICE_INDEX_MIGRATED_KEY.get();
+        if (RedisUtils.hasKey(migratedKey)) return;
+
+        String       prefix = Constants.USER_DEVICE_KEY_PREFIX.get();
+        List<String> keys   = new ArrayList<>(RedisUtils.scan(prefix + Constants.WILDCARD));
+        for (int i = 0; i < keys.size(); i += DEVICE_INDEX_MIGRATE_BATCH_SIZE) {
+            RedisUtils.pTtl(keys.subList(i, Math.min(i + DEVICE_INDEX_MIGRATE_BATCH_SIZE, keys.size())))
+                    .forEach((key, ttl) -> {
+                        int index = key.lastIndexOf(Constants.SEPARATOR);
+                        if (index <= prefix.length()) return;
+                        deviceIndex.add(key.substring(prefix.length(), index), key.substring(index + 1),
+                                        ttl == -1 ? Cache.INFINITE : ttl + 1);
+                    });
+        }
+        RedisUtils.Obj.set(migratedKey, TimeUtils.nowTime());
     }
 
     @Override
@@ -50,28 +143,24 @@ public class UserDevicesDictByCache implements UserDevicesDict {
         String accessTokenId = accessToken.getTokenId();
         String clientId      = accessToken.getClientId();
 
-        Device device;
-        if (clientId == null) {
-            device = cache.get(key(accessToken), Device.class);
-        } else {
-            device = cache.get(UserDevicesDict.oauthKey(accessToken), Device.class);
-        }
+        DeviceStatus status = deviceStatus(clientId == null ? key(accessToken)
+                                                            : UserDevicesDict.oauthKey(accessToken));
 
         // 设备未登录。需要重新登录
-        if (device == null) return REQUIRE_LOGIN;
+        if (status == DeviceStatus.NONE) return REQUIRE_LOGIN;
 
         // clientId不匹配。需要重新dengue
         if (clientId != null) {
-            if (!StringUtils.equals(device.getClientId(), clientId)) return REQUIRE_LOGIN;
+            if (!StringUtils.equals(status.clientId, clientId)) return REQUIRE_LOGIN;
         } else {
             // accessTokenId不匹配，账号在其他地方登录
-            if (!StringUtils.equals(device.getAccessTokenId(), accessTokenId)) return LOGIN_EXCEPTION;
+            if (!StringUtils.equals(status.accessTokenId, accessTokenId)) return LOGIN_EXCEPTION;
         }
 
         // 若绑定了ip，验证ip是否相等
-        if (device.getBindIp() != null) {
+        if (status.bindIp != null) {
             try {
-                if (!StringUtils.equals(device.getBindIp(), AuthzContext.getCurrentHttpMeta().getIp())) {
+                if (!StringUtils.equals(status.bindIp, AuthzContext.getCurrentHttpMeta().getIp())) {
                     return REQUIRE_LOGIN;
                 }
             } catch (ThreadWebEnvironmentException e) {
@@ -83,6 +172,66 @@ public class UserDevicesDictByCache implements UserDevicesDict {
         return SUCCESS;
     }
 
+    /**
+     * 读取设备的登录状态，优先使用本地的状态缓存。
+     * 缓存时记录设备在缓存中对应的 {@link Cache.CacheItem}，命中时比较其是否仍是缓存中的同一个对象，
+     * 设备被重新写入、删除、过期或由其他节点通过 {@code CacheMessage} 同步后都会重新读取。
+     * 设备不存在时同样缓存，直到该设备出现在缓存中（{@code cache.get(Set)} 留下的空占位视为不存在），最多缓存1秒
+     *
+     * @param key 设备的key
+     * @return 设备的登录状态，设备不存在时为 {@link DeviceStatus#NONE}
+     */
+    @SuppressWarnings("rawtypes")
+    private DeviceStatus deviceStatus(String key) {
+        Map<String, Cache.CacheItem> rawMap = cache.asRawMap();
+        Cache.CacheItem              source = rawMap != null ? present(rawMap.get(key)) : null;
+        DeviceStatus                 status = deviceStatusCache.getIfPresent(key);
+        if (status != null && status.source == source) return status;
+
+        Device device = cache.get(key, Device.class);
+        if (device == null) {
+            status = DeviceStatus.NONE;
+            if (rawMap != null && present(rawMap.get(key)) == null) deviceStatusCache.put(key, status);
+        } else {
+            status = new DeviceStatus(device, source);
+            if (source != null && source.getValue() == device) deviceStatusCache.put(key, status);
+        }
+        return status;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static Cache.CacheItem present(Cache.CacheItem item) {
+        return item == null || item.getValue() == null ? null : item;
+    }
+
+    /**
+     * 判断登录状态所需的设备信息
+     */
+    @SuppressWarnings("rawtypes")
+    private static final class DeviceStatus {
+        private static final DeviceStatus NONE = new DeviceStatus(null, null, null, null);
+
+        private final String          accessTokenId;
+        private final String          clientId;
+        private final String          bindIp;
+        private final Cache.CacheItem source;
+
+        private DeviceStatus(Device device,
+                             Cache.CacheItem source) {
+            this(device.getAccessTokenId(), device.getClientId(), device.getBindIp(), source);
+        }
+
+        private DeviceStatus(String accessTokenId,
+                             String clientId,
+                             String bindIp,
+                             Cache.CacheItem source) {
+            this.accessTokenId = accessTokenId;
+            this.clientId      = clientId;
+            this.bindIp        = bindIp;
+            this.source        = source;
+        }
+    }
+
     // @since 1.2.0 优化了登录以及验证逻辑
     @Override
     public void addUser(TokenPair tokenPair) {
@@ -135,7 +284,11 @@ public class UserDevicesDictByCache implements UserDevicesDict {
                 removeCurrentDevice();
             }
 
-            cache.set(key, device, expiredIn);
+            // 设备与索引在redis集群中可能位于不同的slot，无法在一个脚本中同时写入。
+            // 先写设备再写索引：索引中的tid只要存在，设备就一定已经写入，读取时的清理不会删掉刚登录的设备；
+            // 两次写入之间进程退出时只会留下一个不在索引中的设备，随设备自身的过期时间消失
+            cache.set(key, device, expiredIn,
+                      () -> deviceIndex.add(accessToken.getUserId(), accessToken.getId(), expiredIn));
 
             Object                  userId = accessToken.getUserId();
             Runnable                run    = () -> clean(userId, deviceType, deviceId, key, rKey);
@@ -161,10 +314,19 @@ public class UserDevicesDictByCache implements UserDevicesDict {
         Long        expiredAt   = tokenPair.getRefreshToken().getExpiresAt();
 
         device.setAccessTokenId(accessToken.getTokenId());
+        // 设备已在原处修改，新的设备写入前状态缓存仍是旧的accessTokenId，需立即失效
+        deviceStatusCache.invalidate(key);
 
         Async.run(() -> {
-            cache.set(key(accessToken), device, expiredAt - TimeUtils.nowTime());
-            cache.del(key);
+            long ttl = expiredAt - TimeUtils.nowTime();
+            String newKey = key(accessToken);
+            cache.set(newKey, device, ttl, () -> deviceIndex.add(accessToken.getUserId(), accessToken.getId(), ttl));
+            // tid未变化时新旧设备是同一个key，不能删除
+            if (!newKey.equals(key)) {
+                cache.del(key);
+                deviceIndex.remove(accessToken.getUserId(),
+                                   Collections.singleton(tokenPair.getRefreshToken().getId()));
+            }
         });
         return true;
     }
@@ -172,10 +334,12 @@ public class UserDevicesDictByCache implements UserDevicesDict {
     @Override
     public void removeAccessTokenByTid(Object userId,
                                        String tid) {
+        AccessTokenCache.invalidate(tid);
         String key    = key(userId, tid);
         Device device = cache.get(key, Device.class);
         if (device == null) return;
         device.setAccessTokenId(null);
+        deviceStatusCache.invalidate(key);
         cache.set(key, device);
     }
 
@@ -183,17 +347,25 @@ public class UserDevicesDictByCache implements UserDevicesDict {
     public void removeDeviceById(Object userId,
                                  String id) {
         cache.del(key(userId, id));
+        deviceIndex.remove(userId, Collections.singleton(id));
     }
 
     @Override
     public void removeAllDevice(Object userId) {
-        Async.run(() -> cache.del(cache.keys(key(userId, Constants.WILDCARD))));
+        Async.run(() -> {
+            Set<String> tids = deviceIndex.tids(userId);
+            // 只删除读到的tid，期间新登录的设备不受影响
+            deviceIndex.remove(userId, tids);
+            cache.del(tids.stream().map(tid -> key(userId, tid)).collect(Collectors.toSet()));
+        });
     }
 
     @Override
     public void removeCurrentDevice() {
         try {
-            cache.del(key(AuHelper.getToken()));
+            AccessToken token = AuHelper.getToken();
+            cache.del(key(token));
+            deviceIndex.remove(token.getUserId(), Collections.singleton(token.getId()));
         } catch (Exception ignored) {
         }
     }
@@ -209,22 +381,24 @@ public class UserDevicesDictByCache implements UserDevicesDict {
                              String deviceType,
                              String deviceId) {
         if (deviceType == null || deviceType.equals("")) return;
-        Map<String, Device> deviceMap = cache.get(cache.keys(key(userId, Constants.WILDCARD)), Device.class);
+        Map<String, Device> deviceMap = devices(userId);
         Set<String> dels = deviceMap.entrySet().stream()
                 .filter(e -> StringUtils.equals(e.getValue().getDeviceType(), deviceType))
                 .filter(e -> deviceId == null || StringUtils.equals(e.getValue().getDeviceType(), deviceId))
                 .map(Map.Entry::getKey)
                 .collect(Collectors.toSet());
-        Async.run(() -> cache.del(dels));
+        Async.run(() -> {
+            cache.del(dels);
+            deviceIndex.remove(userId, tids(dels));
+        });
     }
 
     @Override
     public DeviceDetails getDevice(Object userId,
                                    String deviceType,
                                    String deviceId) {
-        Set<String> keys = cache.keys(key(userId, Constants.WILDCARD));
-        if (keys.isEmpty()) return null;
-        Map<String, Device> deviceMap = cache.get(keys, Device.class);
+        Map<String, Device> deviceMap = devices(userId);
+        if (deviceMap.isEmpty()) return null;
         Optional<Map.Entry<String, Device>> _item = deviceMap.entrySet().stream()
                 .filter(d -> equalsDeviceByTypeAndId(d.getValue(), deviceType, deviceId))
                 .findAny();
@@ -250,9 +424,8 @@ public class UserDevicesDictByCache implements UserDevicesDict {
 
     @Override
     public List<DeviceDetails> listDevicesByUserId(Object userId) {
-        Set<String> keys = cache.keys(key(userId, Constants.WILDCARD));
-        if (keys.isEmpty()) return new ArrayList<>(0);
-        Map<String, Device> deviceMap = cache.get(keys, Device.class);
+        Map<String, Device> deviceMap = devices(userId);
+        if (deviceMap.isEmpty()) return new ArrayList<>(0);
 
         ArrayList<DeviceDetails> deviceDetails = new ArrayList<>();
         deviceMap.forEach((k, v) -> {
@@ -273,31 +446,52 @@ public class UserDevicesDictByCache implements UserDevicesDict {
         if ((userId + "").contains("*") || (userId + "").contains("?")) {
             return new ArrayList<>();
         }
-        return _listActiveUserDevices(requestKey(userId, Constants.WILDCARD), ms);
+        Set<String> members = deviceIndex.tids(userId).stream()
+                .map(tid -> userId + Constants.SEPARATOR + tid).collect(Collectors.toSet());
+        return _listActiveUserDevices(members, activeIndex.scores(members), TimeUtils.nowTime(), ms);
     }
 
     @Override
     public List<DeviceDetails> listActiveUserDevices(long ms) {
-        return _listActiveUserDevices(requestKey(Constants.WILDCARD, Constants.WILDCARD), ms);
+        long              now    = TimeUtils.nowTime();
+        Map<String, Long> scores = activeIndex.since(now - ms);
+        return _listActiveUserDevices(scores.keySet(), scores, now, ms);
+    }
+
+    @Override
+    public int countActiveUsersApproximately(long ms) {
+        return (int) activeUserCounter.count(TimeUtils.nowTime(), ms);
     }
 
-    private List<DeviceDetails> _listActiveUserDevices(String requestKey,
+    /**
+     * 本地缓存中的请求信息可能是其他节点写入前的旧值，最近请求时间以其与活跃索引中较晚的为准
+     *
+     * @param members {@code {userId}:{tid}}
+     * @param scores  活跃索引中成员的最近请求时间
+     */
+    private List<DeviceDetails> _listActiveUserDevices(Set<String> members,
+                                                       Map<String, Long> scores,
+                                                       long now,
                                                        long ms) {
-        long        now   = TimeUtils.nowTime();
-        Set<String> rKeys = cache.keys(requestKey);
-        if (rKeys.isEmpty()) return new ArrayList<>(0);
+        if (members.isEmpty()) return new ArrayList<>(0);
 
+        String                      prefix            = Constants.USER_REQUEST_KEY_PREFIX.get();
+        Set<String>                 rKeys             = members.stream().map(m -> prefix + m).collect(Collectors.toSet());
         Map<String, RequestDetails> requestDetailsMap = cache.get(rKeys, RequestDetails.class);
 
-        return requestDetailsMap.entrySet().stream()
-                .filter(e -> (now - e.getValue().getLastRequestTime().getTime()) < ms)
-                .map(e -> {
-                    String[] split = e.getKey().split(Constants.SEPARATOR);
-                    return new DeviceDetails().setId(split[5])
-                            .setUserId(split[4]).setRequest(e.getValue());
-                })
-                .sorted((v1, v2) -> v2.getLastRequestTime().compareTo(v1.getLastRequestTime()))
-                .collect(Collectors.toList());
+        ArrayList<DeviceDetails> list = new ArrayList<>();
+        requestDetailsMap.forEach((k, v) -> {
+            if (v == null) return;
+            long time  = v.getLastRequestTime().getTime();
+            Long score = scores.get(k.substring(prefix.length()));
+            if (score != null && score > time) time = score;
+            if (now - time >= ms) return;
+            String[] split = k.split(Constants.SEPARATOR);
+            list.add(new DeviceDetails().setId(split[5]).setUserId(split[4]).setRequest(v)
+                             .setLastRequestTime(new Date(time)));
+        });
+        list.sort((v1, v2) -> v2.getLastRequestTime().compareTo(v1.getLastRequestTime()));
+        return list;
     }
 
     @Override
@@ -305,17 +499,83 @@ public class UserDevicesDictByCache implements UserDevicesDict {
         try {
             AccessToken token = httpMeta.getToken();
             if (token.getClientId() == null) {
+                String rKey = requestKey(token);
+                long   now  = httpMeta.getNow().getTime();
+                countActiveUser(String.valueOf(token.getUserId()), now);
+                // 间隔内已经写入过的设备不再重复写入
+                if (requestWriteInterval > 0) {
+                    Long last = lastRequestWrites.get(rKey);
+                    if (last != null && now - last < requestWriteInterval) return;
+                    lastRequestWrites.put(rKey, now);
+                }
                 DefaultRequestDetails requestDetails = (DefaultRequestDetails) new DefaultRequestDetails()
                         .setLastRequestTime(httpMeta.getNow())
                         .setIp(httpMeta.getIp())
                         .setDeviceType(token.getDeviceType())
                         .setDeviceId(token.getDeviceId());
-                Async.run(() -> cache.setSneaky(requestKey(token), requestDetails, 2, TimeUnit.DAYS));
+                if (batchRequestWrites) {
+                    pendingRequests.put(rKey, requestDetails);
+                } else {
+                    Async.run(() -> {
+                        cache.setSneaky(rKey, requestDetails, REQUEST_DETAILS_TTL);
+                        indexRequests(Collections.singletonMap(rKey, requestDetails));
+                    });
+                }
             }
         } catch (Exception ignored) {
         }
     }
 
+    /**
+     * 写入待写入的设备最近请求时间及活跃用户计数，并清理已经超过写入间隔的记录，定期执行
+     *
+     * @since 1.2.14
+     */
+    public void flushRequests() {
+        if (!pendingRequests.isEmpty()) {
+            HashMap<String, DefaultRequestDetails> batch = new HashMap<>();
+            for (String key : pendingRequests.keySet()) {
+                DefaultRequestDetails requestDetails = pendingRequests.remove(key);
+                if (requestDetails != null) batch.put(key, requestDetails);
+            }
+            if (!batch.isEmpty()) {
+                cache.setSneaky(batch, REQUEST_DETAILS_TTL);
+                indexRequests(batch);
+            }
+        }
+        for (Long bucket : pendingActiveUsers.keySet()) {
+            activeUserCounter.add(bucket, pendingActiveUsers.remove(bucket));
+        }
+        if (requestWriteInterval > 0 && !lastRequestWrites.isEmpty()) {
+            long expired = TimeUtils.nowTime() - requestWriteInterval;
+            lastRequestWrites.values().removeIf(t -> t < expired);
+        }
+    }
+
+    private void countActiveUser(String userId,
+                                 long now) {
+        long bucket = ActiveUserCounter.bucket(now);
+        if (batchRequestWrites) {
+            pendingActiveUsers.compute(bucket, (k, v) -> {
+                if (v == null) v = new HashSet<>();
+                v.add(userId);
+                return v;
+            });
+        } else {
+            // 每个用户在每个桶内只写入一次
+            Long last = activeUserBuckets.asMap().put(userId, bucket);
+            if (last != null && last == bucket) return;
+            Async.run(() -> activeUserCounter.add(bucket, Collections.singleton(userId)));
+        }
+    }
+
+    private void indexRequests(Map<String, ? extends RequestDetails> requests) {
+        int                   prefix  = Constants.USER_REQUEST_KEY_PREFIX.get().length();
+        HashMap<String, Long> members = new HashMap<>();
+        requests.forEach((k, v) -> members.put(k.substring(prefix), v.getLastRequestTime().getTime()));
+        activeIndex.add(members, TimeUtils.nowTime());
+    }
+
     @Override
     public void deviceClean(Object userId) {
 
@@ -353,32 +613,16 @@ public class UserDevicesDictByCache implements UserDevicesDict {
 
         Set<String> delKeys = new HashSet<>();
 
-        Set<String> keys  = new HashSet<>();
-        Set<String> rKeys = new HashSet<>();
-        Async.joinAndCheck(
-                Async.combine(() -> keys.addAll(cache.keys(key(userId, Constants.WILDCARD))),
-                              () -> rKeys.addAll(cache.keys(requestKey(userId, Constants.WILDCARD)))
-                ));
-
-        if (key != null && !keys.isEmpty()) {
-            keys.remove(key);
-        }
-        if (rKey != null && !rKeys.isEmpty()) {
-            rKeys.remove(rKey);
-        }
-
-        if (keys.isEmpty()) return;
-
-        Map<String, Device>         deviceMap  = new HashMap<>();
-        Map<String, RequestDetails> requestMap = new HashMap<>();
-
-        Async.joinAndCheck(
-                Async.combine(() -> deviceMap.putAll(cache.get(keys, Device.class)),
-                              () -> requestMap.putAll(cache.get(rKeys, RequestDetails.class))
-                ));
-
+        Map<String, Device> deviceMap = devices(userId);
+        if (key != null) deviceMap.remove(key);
         if (deviceMap.isEmpty()) return;
 
+        Set<String> rKeys = tids(deviceMap.keySet()).stream()
+                .map(tid -> requestKey(userId, tid))
+                .collect(Collectors.toSet());
+        if (rKey != null) rKeys.remove(rKey);
+        Map<String, RequestDetails> requestMap = cache.get(rKeys, RequestDetails.class);
+
         // 删除同type同id
         if (deviceType != null && deviceId != null) {
             d(Integer.MIN_VALUE, deviceMap, requestMap, delKeys,
@@ -414,7 +658,34 @@ public class UserDevicesDictByCache implements UserDevicesDict {
         if (!delKeys.isEmpty()) {
             cache.del(delKeys);
             cache.del(key(userId, Constants.WILDCARD));
+            deviceIndex.remove(userId, tids(delKeys));
+        }
+    }
+
+    /**
+     * 通过索引读取用户的全部设备
+     *
+     * @param userId userId
+     * @return 设备key -> 设备，可修改
+     */
+    private Map<String, Device> devices(Object userId) {
+        Set<String> tids = deviceIndex.tids(userId);
+        if (tids.isEmpty()) return new HashMap<>();
+        Set<String>         keys      = tids.stream().map(tid -> key(userId, tid)).collect(Collectors.toSet());
+        Map<String, Device> deviceMap = new HashMap<>();
+        cache.get(keys, Device.class).forEach((k, v) -> {
+            if (v != null) deviceMap.put(k, v);
+        });
+        if (deviceMap.size() < keys.size()) {
+            keys.removeAll(deviceMap.keySet());
+            deviceIndex.prune(userId, tids(keys));
         }
+        return deviceMap;
+    }
+
+    private static Set<String> tids(Collection<String> keys) {
+        return keys.stream().map(k -> k.substring(k.lastIndexOf(Constants.SEPARATOR) + 1))
+                .collect(Collectors.toSet());
     }
 
     private void d(int max,
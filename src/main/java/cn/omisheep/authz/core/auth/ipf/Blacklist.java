@@ -1,6 +1,7 @@
 package cn.omisheep.authz.core.auth.ipf;
 
 import cn.omisheep.authz.core.AuthzManager;
+import cn.omisheep.authz.core.AuthzProperties;
 import cn.omisheep.authz.core.AuthzResult;
 import cn.omisheep.authz.core.msg.AuthzModifier;
 import cn.omisheep.authz.core.tk.AccessToken;
@@ -11,8 +12,6 @@ import cn.omisheep.web.entity.ResponseResult;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
-import orestes.bloomfilter.CountingBloomFilter;
-import orestes.bloomfilter.FilterBuilder;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
@@ -21,9 +20,10 @@ import org.springframework.lang.Nullable;
 
 import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 import static cn.omisheep.authz.core.msg.AuthzModifier.BlacklistInfo.OP.REMOVE;
 import static cn.omisheep.authz.core.msg.AuthzModifier.BlacklistInfo.OP.UPDATE;
@@ -37,16 +37,27 @@ import static cn.omisheep.authz.core.msg.AuthzModifier.BlacklistInfo.TYPE.USER;
 public class Blacklist {
 
     private static final Set<IP>                     ipBlacklist            = new CopyOnWriteArraySet<>();
-    private static final CountingBloomFilter<String> ipBlacklistBloomFilter = new FilterBuilder(1000,
-                                                                                                0.001).countingBits(8)
-            .buildCountingBloomFilter();
-
-    private static final Set<User>                   userBlacklist            = new CopyOnWriteArraySet<>();
-    private static final CountingBloomFilter<String> userBlacklistBloomFilter = new FilterBuilder(1000,
-                                                                                                  0.001).countingBits(8)
-            .buildCountingBloomFilter();
-
-    private static final Set<IPRangeDeny> ipRangeBlacklist = new CopyOnWriteArraySet<>();
+    /**
+     * 容量与误判率见 {@link AuthzProperties.OtherConfig#getBlacklistBloomFilterCapacity()}，超出容量时自动扩容重建
+     */
+    private static final ResizableBloomFilter        ipBlacklistBloomFilter = new ResizableBloomFilter(
+            1000, 0.001, () -> ipBlacklist.stream().map(IP::getIp).collect(Collectors.toList()));
+
+    /**
+     * userId -> 该用户下的封禁记录（整个用户、某类设备、某个设备），过期记录由 {@link #clean()} 定时清理
+     */
+    private static final Map<Object, Set<User>> userBlacklist = new ConcurrentHashMap<>();
+
+    private static final Set<IPRangeDeny>         ipRangeBlacklist = new CopyOnWriteArraySet<>();
+    /**
+     * ipRangeBlacklist 的前缀树索引，check时不再逐个网段比较
+     */
+    private static final IPRangeTrie<IPRangeDeny> ipRangeTrie      = new IPRangeTrie<>();
+
+    /**
+     * 每次更新或移除封禁记录时递增，用于判断是否需要重新保存快照
+     */
+    private static final AtomicLong version = new AtomicLong();
 
     public static boolean check(@NonNull String ip,
                                 @Nullable Object userId,
@@ -65,6 +76,22 @@ public class Blacklist {
                               accessToken.getDeviceId());
     }
 
+    /**
+     * @param ip          ip
+     * @param ipAddress   已解析的ip，见 {@link HttpMeta#getIpAddress()}
+     * @param accessToken accessToken
+     * @return 是否通过
+     * @since 1.2.14
+     */
+    public static boolean check(@NonNull String ip,
+                                @Nullable IPAddress ipAddress,
+                                @Nullable AccessToken accessToken) {
+        if (!IP.check(ip) || !IPRangeDeny.check(ipAddress)) return false;
+        return accessToken == null || User.check(accessToken.getUserId(),
+                                                 accessToken.getDeviceType(),
+                                                 accessToken.getDeviceId());
+    }
+
     public static boolean check(String ip) {
         return IP.check(ip) && IPRangeDeny.check(ip);
     }
@@ -116,20 +143,23 @@ public class Blacklist {
                                     @Nullable String deviceType,
                                     @Nullable String deviceId,
                                     long time) {
-            User _user = new User(userId, deviceType, deviceId, TimeMeta.of(time));
-            userBlacklist.remove(_user);
-            userBlacklist.add(_user);
-            userBlacklistBloomFilter.add(userId.toString());
+            _put(new User(userId, deviceType, deviceId, TimeMeta.of(time)));
         }
 
         private static void _update(Object userId,
                                     @Nullable String deviceType,
                                     @Nullable String deviceId,
                                     Date endDate) {
-            User _user = new User(userId, deviceType, deviceId, TimeMeta.of(endDate));
-            userBlacklist.remove(_user);
-            userBlacklist.add(_user);
-            userBlacklistBloomFilter.add(userId.toString());
+            _put(new User(userId, deviceType, deviceId, TimeMeta.of(endDate)));
+        }
+
+        private static void _put(User _user) {
+            userBlacklist.compute(_user.userId, (k, users) -> {
+                if (users == null) users = ConcurrentHashMap.newKeySet();
+                users.remove(_user);
+                users.add(_user);
+                return users;
+            });
         }
 
         public static void update(Object userId,
@@ -160,8 +190,11 @@ public class Blacklist {
         private static void _remove(Object userId,
                                     @Nullable String deviceType,
                                     @Nullable String deviceId) {
-            userBlacklist.remove(new User(userId, deviceType, deviceId, null));
-            userBlacklistBloomFilter.remove(userId.toString());
+            User _user = new User(userId, deviceType, deviceId, null);
+            userBlacklist.computeIfPresent(userId, (k, users) -> {
+                users.remove(_user);
+                return users.isEmpty() ? null : users;
+            });
         }
 
         public static void remove(Object userId,
@@ -177,10 +210,9 @@ public class Blacklist {
         public static User getDevice(Object userId,
                                      @Nullable String deviceType,
                                      @Nullable String deviceId) {
-            return userBlacklist.stream()
-                    .filter(u -> u.userId.equals(userId)
-                            && StringUtils.equals(u.deviceType, deviceType) && StringUtils.equals(
-                            u.deviceId, deviceId))
+            return list(userId).stream()
+                    .filter(u -> StringUtils.equals(u.deviceType, deviceType) && StringUtils.equals(u.deviceId,
+                                                                                                    deviceId))
                     .findFirst()
                     .orElse(null);
         }
@@ -192,48 +224,57 @@ public class Blacklist {
 
         public static Set<User> list(Object userId) {
             HashSet<User> users = new HashSet<>();
-            userBlacklist.removeIf(u -> {
-                if (u.timeMeta.relive()) {
-                    return true;
-                } else {
-                    if (u.userId.equals(userId)) {
-                        users.add(u);
-                    }
-                    return false;
-                }
-            });
+            if (userId == null) return users;
+            Set<User> set = userBlacklist.get(userId);
+            if (set == null) return users;
+            for (User user : set) {
+                if (!user.timeMeta.relive()) users.add(user);
+            }
             return users;
         }
 
         public static Set<User> list() {
-            return Collections.unmodifiableSet(userBlacklist);
+            HashSet<User> users = new HashSet<>();
+            for (Set<User> set : userBlacklist.values()) {
+                for (User user : set) {
+                    if (!user.timeMeta.relive()) users.add(user);
+                }
+            }
+            return Collections.unmodifiableSet(users);
+        }
+
+        /**
+         * 移除过期的封禁记录
+         *
+         * @since 1.2.14
+         */
+        private static void clean() {
+            for (Object userId : userBlacklist.keySet()) {
+                userBlacklist.computeIfPresent(userId, (k, users) -> {
+                    users.removeIf(u -> u.timeMeta.relive());
+                    return users.isEmpty() ? null : users;
+                });
+            }
         }
 
         public static boolean check(@Nullable Object userId,
                                     @Nullable String deviceType,
                                     @Nullable String deviceId) {
             if (userId == null) return true;
-            if (userBlacklistBloomFilter.contains(userId.toString())) {
-                Set<User> list = list(userId);
-                boolean hit = list.stream().anyMatch(user -> {
-                    if (user.timeMeta.relive()) return false;
-                    if (user.deviceType == null && user.deviceId == null) {
-                        return true;
-                    } else if (user.deviceType != null && user.deviceId != null) {
-                        return StringUtils.equals(user.deviceType, deviceType) && StringUtils.equals(user.deviceId,
-                                                                                                     deviceId);
-                    } else if (user.deviceType != null) {
-                        return StringUtils.equals(user.deviceType, deviceType);
-                    }
+            Set<User> users = userBlacklist.get(userId);
+            if (users == null) return true;
+            for (User user : users) {
+                if (user.timeMeta.relive()) continue;
+                if (user.deviceType == null && user.deviceId == null) {
                     return false;
-                });
-                for (User user : list) {
-                    if (user.timeMeta.relive()) {
-                        userBlacklist.remove(user);
+                } else if (user.deviceType != null && user.deviceId != null) {
+                    if (StringUtils.equals(user.deviceType, deviceType) && StringUtils.equals(user.deviceId,
+                                                                                              deviceId)) {
+                        return false;
                     }
+                } else if (user.deviceType != null) {
+                    if (StringUtils.equals(user.deviceType, deviceType)) return false;
                 }
-                if (list.isEmpty()) userBlacklistBloomFilter.remove(userId.toString());
-                return !hit;
             }
             return true;
         }
@@ -269,18 +310,20 @@ public class Blacklist {
 
         private static void _update(String ip,
                                     long time) {
-            IP _ip = new IP(ip, TimeMeta.of(time));
-            ipBlacklist.remove(_ip);
-            ipBlacklist.add(_ip);
-            ipBlacklistBloomFilter.add(ip);
+            _put(new IP(ip, TimeMeta.of(time)));
         }
 
         private static void _update(String ip,
                                     Date endDate) {
-            IP _ip = new IP(ip, TimeMeta.of(endDate));
-            ipBlacklist.remove(_ip);
-            ipBlacklist.add(_ip);
-            ipBlacklistBloomFilter.add(ip);
+            _put(new IP(ip, TimeMeta.of(endDate)));
+        }
+
+        private static void _put(IP _ip) {
+            ipBlacklistBloomFilter.add(_ip.ip, () -> {
+                boolean exists = ipBlacklist.remove(_ip);
+                ipBlacklist.add(_ip);
+                return !exists;
+            });
         }
 
         public static void update(String ip,
@@ -298,8 +341,7 @@ public class Blacklist {
         }
 
         private static void _remove(String ip) {
-            ipBlacklist.remove(new IP(ip, null));
-            ipBlacklistBloomFilter.remove(ip);
+            ipBlacklistBloomFilter.remove(ip, () -> ipBlacklist.remove(new IP(ip, null)));
         }
 
         public static void remove(String ip) {
@@ -308,12 +350,23 @@ public class Blacklist {
 
         @Nullable
         public static IP get(String ip) {
-            AtomicReference<IP> i = new AtomicReference<>();
-            ipBlacklist.removeIf(o -> {
-                if (o.ip.equals(ip)) i.set(o);
-                return o.timeMeta.relive();
-            });
-            return i.get();
+            for (IP o : ipBlacklist) {
+                if (o.ip.equals(ip)) return o;
+            }
+            return null;
+        }
+
+        /**
+         * 移除过期的记录，只移除这一个实例，期间被重新封禁的记录不受影响
+         */
+        private static void _expire(IP _ip) {
+            ipBlacklistBloomFilter.remove(_ip.ip, () -> ipBlacklist.removeIf(o -> o == _ip));
+        }
+
+        private static void clean() {
+            for (IP _ip : ipBlacklist) {
+                if (_ip.timeMeta.relive()) _expire(_ip);
+            }
         }
 
         public static boolean check(String ip) {
@@ -321,8 +374,7 @@ public class Blacklist {
                 IP _ip = get(ip);
                 if (_ip == null) {return true;} else {
                     if (_ip.timeMeta.relive()) {
-                        ipBlacklistBloomFilter.remove(ip);
-                        ipBlacklist.remove(_ip);
+                        _expire(_ip);
                         return true;
                     } else {
                         return false;
@@ -369,16 +421,18 @@ public class Blacklist {
 
         private static void _update(String ipRange,
                                     Date endDate) {
-            IPRangeDeny _ipRange = new IPRangeDeny(ipRange, TimeMeta.of(endDate));
-            ipRangeBlacklist.remove(_ipRange);
-            ipRangeBlacklist.add(_ipRange);
+            _put(new IPRangeDeny(ipRange, TimeMeta.of(endDate)));
         }
 
         private static void _update(String ipRange,
                                     long time) {
-            IPRangeDeny _ipRange = new IPRangeDeny(ipRange, TimeMeta.of(time));
+            _put(new IPRangeDeny(ipRange, TimeMeta.of(time)));
+        }
+
+        private static void _put(IPRangeDeny _ipRange) {
             ipRangeBlacklist.remove(_ipRange);
             ipRangeBlacklist.add(_ipRange);
+            ipRangeTrie.put(_ipRange.ipRange, _ipRange);
         }
 
         public static void update(String ipRange,
@@ -392,7 +446,10 @@ public class Blacklist {
         }
 
         private static void _remove(String ipRange) {
-            ipRangeBlacklist.remove(new IPRangeDeny(ipRange, null));
+            IPRangeDeny _ipRange = new IPRangeDeny(ipRange, null);
+            ipRangeBlacklist.remove(_ipRange);
+            // 写法不同但网段相同的记录（如 10.0.0.1/8 与 10.0.0.0/8）共用一个节点，只删除写法相同的这一条
+            ipRangeTrie.remove(_ipRange.ipRange, _ipRange);
         }
 
         public static void remove(String ipRange) {
@@ -400,19 +457,33 @@ public class Blacklist {
         }
 
         public static boolean check(String ip) {
-            AtomicBoolean hit = new AtomicBoolean(false);
-            ipRangeBlacklist.removeIf(v -> {
-                boolean relive = v.timeMeta.relive();
-                if (!relive && v.ipRange.isIPAddressInRange(new IPAddress(ip))) {
-                    hit.set(true);
-                }
-                return relive;
-            });
-            return !hit.get();
+            if (ipRangeBlacklist.isEmpty()) return true;
+            return check(new IPAddress(ip));
+        }
+
+        /**
+         * @param ipAddress 已解析的ip，为null时不在任何网段内
+         * @return 是否通过
+         * @since 1.2.14
+         */
+        public static boolean check(@Nullable IPAddress ipAddress) {
+            if (ipRangeBlacklist.isEmpty() || ipAddress == null) return true;
+            // 前缀树中过期的网段在查找经过时清除，ipRangeBlacklist 中的由 clean() 定时清除，不在请求中复制
+            return ipRangeTrie.find(ipAddress, v -> !v.timeMeta.relive()) == null;
+        }
+
+        private static void clean() {
+            for (IPRangeDeny _ipRange : ipRangeBlacklist) {
+                if (!_ipRange.timeMeta.relive()) continue;
+                // 只移除这一个实例，期间被重新封禁的记录不受影响
+                ipRangeBlacklist.removeIf(o -> o == _ipRange);
+                ipRangeTrie.expire(_ipRange.ipRange, _ipRange);
+            }
         }
 
         public static Set<IPRangeDeny> list() {
-            return Collections.unmodifiableSet(ipRangeBlacklist);
+            return Collections.unmodifiableSet(ipRangeBlacklist.stream().filter(v -> !v.timeMeta.relive())
+                                                       .collect(Collectors.toSet()));
         }
     }
 
@@ -451,17 +522,68 @@ public class Blacklist {
         }
     }
 
+    /**
+     * @param bloomFilterCapacity ip黑名单布隆过滤器的初始容量
+     * @param bloomFilterFpp      ip黑名单布隆过滤器的误判率
+     * @since 1.2.14
+     */
+    public static void init(int bloomFilterCapacity,
+                            double bloomFilterFpp) {
+        ipBlacklistBloomFilter.reset(bloomFilterCapacity, bloomFilterFpp);
+    }
+
+    /**
+     * 定时清理过期的封禁记录，见 {@link AuthzProperties.OtherConfig#getBlacklistCleanPeriod()}
+     *
+     * @since 1.2.14
+     */
+    public static void clean() {
+        IP.clean();
+        IPRangeDeny.clean();
+        User.clean();
+    }
+
     public static Map<String, Object> readAll() {
         HashMap<String, Object> map = new HashMap<>();
         map.put("ipBlacklist", ipBlacklist);
-        map.put("userBlacklist", userBlacklist);
+        map.put("userBlacklist", User.list());
         map.put("ipRangeBlacklist", ipRangeBlacklist);
         return Collections.unmodifiableMap(map);
     }
 
+    static long version() {
+        return version.get();
+    }
+
+    /**
+     * @return 当前所有未过期的封禁记录，每条记录都是一次以结束时间表示的UPDATE操作，可直接通过 {@link #modify(AuthzModifier)} 恢复
+     * @since 1.2.14
+     */
+    static ArrayList<AuthzModifier.BlacklistInfo> snapshot() {
+        ArrayList<AuthzModifier.BlacklistInfo> list = new ArrayList<>();
+        for (IP ip : ipBlacklist) {
+            if (ip.timeMeta.relive()) continue;
+            list.add(_create(AuthzModifier.BlacklistInfo.TYPE.IP, UPDATE).setIp(ip.ip)
+                             .setDate(TimeUtils.format(new Date(ip.timeMeta._end))));
+        }
+        for (IPRangeDeny ipRange : ipRangeBlacklist) {
+            if (ipRange.timeMeta.relive()) continue;
+            list.add(_create(IP_RANGE, UPDATE).setIpRange(ipRange.value)
+                             .setDate(TimeUtils.format(new Date(ipRange.timeMeta._end))));
+        }
+        for (User user : User.list()) {
+            list.add(_create(USER, UPDATE).setUserId(user.userId)
+                             .setDeviceType(user.deviceType)
+                             .setDeviceId(user.deviceId)
+                             .setDate(TimeUtils.format(new Date(user.timeMeta._end))));
+        }
+        return list;
+    }
+
     public static ResponseResult<?> modify(AuthzModifier modifier) throws ParseException {
         AuthzModifier.BlacklistInfo blacklistInfo = modifier.getBlacklistInfo();
         long                        time          = blacklistInfo.getTime();
+        if (blacklistInfo.getOp() == UPDATE || blacklistInfo.getOp() == REMOVE) version.incrementAndGet();
 
         switch (blacklistInfo.getType()) {
             case IP:
@@ -511,7 +633,7 @@ public class Blacklist {
                         User._remove(userId, deviceType, deviceId);
                         break;
                     case READ:
-                        return AuthzResult.SUCCESS.data(userBlacklist);
+                        return AuthzResult.SUCCESS.data(User.list());
                 }
                 break;
         }
@@ -0,0 +1,159 @@
+package cn.omisheep.authz.core.auth.ipf;
+
+import cn.omisheep.authz.AuthzAutoConfiguration;
+import cn.omisheep.authz.core.config.Constants;
+import cn.omisheep.authz.core.msg.AuthzModifier;
+import cn.omisheep.authz.core.util.LogUtils;
+import cn.omisheep.authz.core.util.RedisUtils;
+import cn.omisheep.commons.util.TimeUtils;
+import org.springframework.lang.Nullable;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * 黑名单快照，用于重启后恢复封禁记录
+ * <p>
+ * 快照是一组以结束时间表示的 {@link AuthzModifier.BlacklistInfo} UPDATE操作，启动时一次性读取并在本地应用，不会重新广播。
+ * <p>
+ * 开启redis时整个集群共用一个哈希表，每个封禁对象一个field。发起修改的节点在UPDATE时写入、REMOVE时删除（见 {@link #record}），
+ * 与广播给其他节点的是同一次操作，解除的封禁不会在重启后被其他节点的旧记录恢复。定时任务只清理已经过期的field。
+ * 未开启redis时保存在本地文件中，封禁记录有变化时才重新保存
+ *
+ * @author zhouxinchen[1269670415@qq.com]
+ * @since 1.2.14
+ */
+public class BlacklistSnapshot {
+
+    private BlacklistSnapshot() {
+        throw new UnsupportedOperationException();
+    }
+
+    private static volatile boolean enableRedis;
+    private static volatile Path    file;
+    private static volatile boolean enabled;
+    private static          long    savedVersion = -1;
+
+    /**
+     * 初始化并从快照恢复
+     *
+     * @param enableRedis  是否保存在redis中
+     * @param snapshotFile 未开启redis时的保存文件，为空则不保存
+     * @return 是否开启了快照
+     */
+    public static synchronized boolean init(boolean enableRedis,
+                                            @Nullable String snapshotFile) {
+        BlacklistSnapshot.enableRedis = enableRedis;
+        BlacklistSnapshot.file        = snapshotFile == null || snapshotFile.isEmpty() ? null : Paths.get(
+                snapshotFile);
+        enabled                       = enableRedis || file != null;
+        if (enabled) load();
+        return enabled;
+    }
+
+    /**
+     * 记录本节点发起的封禁修改，开启redis时同步到集群共用的快照。其他节点通过广播收到的修改不需要再记录
+     *
+     * @param blacklistInfo 封禁修改
+     */
+    public static void record(@Nullable AuthzModifier.BlacklistInfo blacklistInfo) {
+        if (!enabled || !enableRedis || blacklistInfo == null || blacklistInfo.getOp() == null) return;
+        try {
+            switch (blacklistInfo.getOp()) {
+                case UPDATE:
+                    Date end = blacklistInfo.getDate() == null
+                               ? new Date(TimeUtils.nowTime() + blacklistInfo.getTime())
+                               : TimeUtils.formatParse(blacklistInfo.getDate());
+                    RedisUtils.Hashes.put(Constants.BLACKLIST_SNAPSHOT_KEY.get(), identity(blacklistInfo),
+                                          new AuthzModifier.BlacklistInfo().setType(blacklistInfo.getType())
+                                                  .setOp(AuthzModifier.BlacklistInfo.OP.UPDATE)
+                                                  .setIp(blacklistInfo.getIp())
+                                                  .setIpRange(blacklistInfo.getIpRange())
+                                                  .setUserId(blacklistInfo.getUserId())
+                                                  .setDeviceType(blacklistInfo.getDeviceType())
+                                                  .setDeviceId(blacklistInfo.getDeviceId())
+                                                  .setDate(TimeUtils.format(end)));
+                    break;
+                case REMOVE:
+                    RedisUtils.Hashes.delete(Constants.BLACKLIST_SNAPSHOT_KEY.get(),
+                                             Collections.singleton(identity(blacklistInfo)));
+                    break;
+                default:
+            }
+        } catch (Exception e) {
+            LogUtils.error("blacklist snapshot record error", e);
+        }
+    }
+
+    /**
+     * 开启redis时清理快照中已经过期的记录，否则在封禁记录有变化时保存快照
+     */
+    public static synchronized void save() {
+        if (!enabled) return;
+        try {
+            if (enableRedis) {
+                Date         now     = new Date();
+                List<String> expired = new ArrayList<>();
+                for (Map.Entry<String, Object> entry : RedisUtils.Hashes.entries(
+                        Constants.BLACKLIST_SNAPSHOT_KEY.get()).entrySet()) {
+                    if (!(entry.getValue() instanceof AuthzModifier.BlacklistInfo)) continue;
+                    Date end = TimeUtils.formatParse(((AuthzModifier.BlacklistInfo) entry.getValue()).getDate());
+                    if (end == null || !end.after(now)) expired.add(entry.getKey());
+                }
+                RedisUtils.Hashes.delete(Constants.BLACKLIST_SNAPSHOT_KEY.get(), expired);
+                return;
+            }
+            long version = Blacklist.version();
+            if (version == savedVersion) return;
+            ArrayList<AuthzModifier.BlacklistInfo> snapshot = Blacklist.snapshot();
+            Path                                   tmp      = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(tmp, AuthzAutoConfiguration.CacheAutoConfiguration.jackson2JsonRedisSerializer.serialize(
+                    snapshot));
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            savedVersion = version;
+        } catch (Exception e) {
+            LogUtils.error("blacklist snapshot save error", e);
+        }
+    }
+
+    /**
+     * 从快照恢复，跳过已经过期的记录
+     */
+    @SuppressWarnings("unchecked")
+    public static synchronized void load() {
+        if (!enabled) return;
+        try {
+            Collection<Object> values;
+            if (enableRedis) {
+                values = RedisUtils.Hashes.entries(Constants.BLACKLIST_SNAPSHOT_KEY.get()).values();
+            } else {
+                if (!Files.exists(file)) return;
+                Object value = AuthzAutoConfiguration.CacheAutoConfiguration.jackson2JsonRedisSerializer.deserialize(
+                        Files.readAllBytes(file));
+                values = value instanceof List ? (List<Object>) value : Collections.emptyList();
+            }
+            Date now = new Date();
+            for (Object value : values) {
+                if (!(value instanceof AuthzModifier.BlacklistInfo)) continue;
+                AuthzModifier.BlacklistInfo blacklistInfo = (AuthzModifier.BlacklistInfo) value;
+                Date                        end           = TimeUtils.formatParse(blacklistInfo.getDate());
+                if (end == null || !end.after(now)) continue;
+                Blacklist.modify(new AuthzModifier().setTarget(AuthzModifier.Target.BLACKLIST)
+                                         .setBlacklistInfo(blacklistInfo));
+            }
+            savedVersion = Blacklist.version();
+        } catch (Exception e) {
+            LogUtils.error("blacklist snapshot load error", e);
+        }
+    }
+
+    private static String identity(AuthzModifier.BlacklistInfo blacklistInfo) {
+        return blacklistInfo.getType() + Constants.SEPARATOR + blacklistInfo.getIp() + Constants.SEPARATOR
+                + blacklistInfo.getIpRange() + Constants.SEPARATOR + blacklistInfo.getUserId() + Constants.SEPARATOR
+                + blacklistInfo.getDeviceType() + Constants.SEPARATOR + blacklistInfo.getDeviceId();
+    }
+
+}
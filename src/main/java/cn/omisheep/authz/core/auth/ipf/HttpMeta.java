@@ -15,6 +15,7 @@ import cn.omisheep.authz.core.tk.AccessToken;
 import cn.omisheep.authz.core.util.HttpUtils;
 import cn.omisheep.authz.core.util.IPUtils;
 import cn.omisheep.authz.core.util.LogUtils;
+import cn.omisheep.authz.support.util.IPAddress;
 import cn.omisheep.commons.util.CollectionUtils;
 import cn.omisheep.commons.util.web.ua.UserAgent;
 import cn.omisheep.commons.util.web.ua.UserAgentParser;
@@ -64,6 +65,11 @@ public class HttpMeta extends BaseHelper {
 
     @JsonIgnore
     private HttpServletRequest          request;
+    /**
+     * 解析后的ip，在过滤器中创建HttpMeta时解析一次，无法解析时为null
+     */
+    @JsonIgnore
+    private IPAddress                   ipAddress;
     @JsonIgnore
     private boolean                     clearCookie         = true;
     @JsonIgnore
@@ -215,10 +221,11 @@ public class HttpMeta extends BaseHelper {
     public HttpMeta(HttpServletRequest request,
                     String api,
                     String path) {
-        this.request = request;
-        this.ip      = IPUtils.getIp(request);
-        this.api     = api;
-        this.path    = path;
+        this.request   = request;
+        this.ip        = IPUtils.getIp(request);
+        this.ipAddress = IPAddress.parse(ip);
+        this.api       = api;
+        this.path      = path;
     }
 
     public boolean isMethod(String method) {
@@ -5,8 +5,10 @@ import cn.omisheep.authz.core.AuthzProperties;
 import cn.omisheep.authz.core.AuthzResult;
 import cn.omisheep.authz.core.callback.RateLimitCallback;
 import cn.omisheep.authz.core.msg.AuthzModifier;
+import cn.omisheep.authz.core.msg.RequestBatchMessage;
 import cn.omisheep.authz.core.msg.RequestMessage;
 import cn.omisheep.authz.core.util.LogUtils;
+import cn.omisheep.commons.util.TimeUtils;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Getter;
 import org.springframework.aop.support.AopUtils;
@@ -22,6 +24,7 @@ import org.springframework.web.util.pattern.PathPatternParser;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 import static cn.omisheep.authz.annotation.RateLimit.CheckType.IP;
 import static cn.omisheep.authz.annotation.RateLimit.CheckType.USER_ID;
@@ -37,6 +40,11 @@ public class Httpd {
 
     private static final PathPatternParser pathPatternParser = new PathPatternParser();
 
+    /**
+     * 由 pathMatcherMap 构建的路由前缀树，请求进来时按路径段查找
+     */
+    private static final PathTrie pathTrie = new PathTrie();
+
     /**
      * 用于保存请求限制的信息
      */
@@ -96,7 +104,9 @@ public class Httpd {
     }
 
     public static void setPathPattern(String pattern) {
-        pathMatcherMap.put(pattern, pathPatternParser.parse(pattern));
+        PathPattern pathPattern = pathPatternParser.parse(pattern);
+        pathMatcherMap.put(pattern, pathPattern);
+        pathTrie.add(pattern, pathPattern);
     }
 
     public static boolean match(String pattern,
@@ -107,49 +117,87 @@ public class Httpd {
     }
 
     public static String getPattern(String path) {
-        for (Map.Entry<String, PathPattern> entry : pathMatcherMap.entrySet()) {
-            if (entry.getValue().matches(PathContainer.parsePath(path))) {
-                return entry.getKey();
-            }
-        }
-        return null;
+        return pathTrie.find(path, pattern -> true);
     }
 
     public static String getPattern(String method,
                                     String path) {
-        for (Map.Entry<String, PathPattern> entry : pathMatcherMap.entrySet()) {
-            if (entry.getValue().matches(PathContainer.parsePath(path))) {
-                ConcurrentHashMap<String, RequestPool> map = _ipRequestPools.get(entry.getKey());
-                if (map == null || map.isEmpty()) return null;
-                if (map.get(method) == null) return null;
-                return entry.getKey();
-            }
-        }
-        return null;
+        return pathTrie.find(path, pattern -> {
+            ConcurrentHashMap<String, RequestPool> map = _ipRequestPools.get(pattern);
+            return map != null && map.get(method) != null;
+        });
+    }
+
+    /**
+     * 移除空闲的限流记录，避免大量不同的ip/userId使内存无限增长。仍在封禁或惩罚期内的记录会被保留
+     *
+     * @param idleTime 最少的空闲时间
+     */
+    public static void clean(long idleTime) {
+        long now = TimeUtils.nowTime();
+        clean(_ipRequestPools, now, idleTime);
+        clean(_userIdRequestPools, now, idleTime);
+    }
+
+    private static void clean(RequestPools requestPools,
+                              long now,
+                              long idleTime) {
+        requestPools.forEach((api, map) -> map.forEach((method, requestPool) -> {
+            if (requestPool.isEmpty()) return;
+            LimitMeta limitMeta = getLimitMetadata(method, api);
+            long      window    = limitMeta == null ? 0 : limitMeta.getWindow();
+            requestPool.forEach((key, requestMeta) -> requestMeta.removeIfIdle(requestPool, key, now, idleTime,
+                                                                               window));
+        }));
     }
 
     public static void receive(RequestMessage requestMessage) {
-        String    api       = requestMessage.getApi();
-        String    method    = requestMessage.getMethod();
-        String    ip        = requestMessage.getIp();
-        long      now       = requestMessage.getNow();
-        Object    userId    = requestMessage.getUserId();
+        receive(requestMessage.getMethod(), requestMessage.getApi(), requestMessage.getIp(),
+                requestMessage.getUserId(), Collections.singletonList(requestMessage.getNow()));
+    }
+
+    /**
+     * 一次处理一批同步过来的请求，同一来源的请求只查找一次限制信息和请求记录
+     *
+     * @param batchMessage 合并后的请求记录
+     * @since 1.2.14
+     */
+    public static void receive(RequestBatchMessage batchMessage) {
+        for (RequestBatchMessage.Entry entry : batchMessage.getEntries()) {
+            receive(entry.getMethod(), entry.getApi(), entry.getIp(), entry.getUserId(), entry.getTimes());
+        }
+    }
+
+    private static void receive(String method,
+                                String api,
+                                String ip,
+                                Object userId,
+                                List<Long> times) {
+        if (times == null || times.isEmpty()) return;
         LimitMeta limitMeta = getLimitMetadata(method, api);
         if (limitMeta == null) return;
         try {
             RateLimit.CheckType checkType = limitMeta.getCheckType();
             if (checkType.equals(USER_ID) && userId == null) return;
-            Httpd.RequestPool ipRequestPool     = _ipRequestPools.get(api).get(method);
-            Httpd.RequestPool userIdRequestPool = _userIdRequestPools.get(api).get(method);
-            RequestMeta requestMeta = checkType.equals(IP) ? ipRequestPool.get(ip) : userIdRequestPool.get(
-                    userId.toString());
+            Httpd.RequestPool requestPool = checkType.equals(IP)
+                                            ? _ipRequestPools.get(api).get(method)
+                                            : _userIdRequestPools.get(api).get(method);
+            String      key         = checkType.equals(IP) ? ip : userId.toString();
+            RequestMeta requestMeta = requestPool.get(key);
+            int         i           = 0;
             if (requestMeta == null) {
-                if (checkType.equals(IP)) {
-                    ipRequestPool.put(ip, new RequestMeta(now, ip, null));
-                } else {
-                    userIdRequestPool.put(userId.toString(), new RequestMeta(now, null, userId));
+                long        first   = times.get(0);
+                RequestMeta newMeta = checkType.equals(IP)
+                                      ? new RequestMeta(first, ip, null, limitMeta)
+                                      : new RequestMeta(first, null, userId, limitMeta);
+                requestMeta = requestPool.putIfAbsent(key, newMeta);
+                if (requestMeta == null) {
+                    requestMeta = newMeta;
+                    i           = 1;
                 }
-            } else {
+            }
+            for (; i < times.size(); i++) {
+                long now = times.get(i);
                 if (!requestMeta.pushRequest(now, limitMeta)) {
                     forbid(now, requestMeta, limitMeta, method, api);
                 }
@@ -183,12 +231,67 @@ public class Httpd {
                               String method,
                               String api) {
         requestMeta.forbidden(method, api, limitMeta);
+        keep(requestMeta, limitMeta, method, api, meta -> meta.forbidden(method, api, limitMeta));
+        forbidAssociated(now, requestMeta, limitMeta, method, api);
+    }
+
+    /**
+     * 集群限流模式下redis中已经记录了封禁，本地按redis给出的解封时间同步封禁状态，关联的接口仍在本地封禁
+     *
+     * @param reliveTime 解封时间
+     * @since 1.2.14
+     */
+    public static void forbid(long now,
+                              RequestMeta requestMeta,
+                              LimitMeta limitMeta,
+                              String method,
+                              String api,
+                              long reliveTime) {
+        requestMeta.forbidden(method, api, limitMeta, reliveTime);
+        keep(requestMeta, limitMeta, method, api, meta -> meta.forbidden(method, api, limitMeta, reliveTime));
+        forbidAssociated(now, requestMeta, limitMeta, method, api);
+    }
+
+    private static void forbidAssociated(long now,
+                                         RequestMeta requestMeta,
+                                         LimitMeta limitMeta,
+                                         String method,
+                                         String api) {
         String ip     = requestMeta.getIp();
         Object userId = requestMeta.getUserId();
         for (Httpd.RequestPool ipPool : associatedIpPools(limitMeta)) {
-            if (!ipPool.containsKey(ip)) {
-                ipPool.put(ip, new RequestMeta(now, ip, userId).forbidden(method, api, limitMeta));
-            } else {ipPool.get(ip).forbidden(method, api, limitMeta);}
+            RequestMeta meta = ipPool.computeIfAbsent(ip, r -> RequestMeta.withoutRequest(now, ip, userId))
+                    .forbidden(method, api, limitMeta);
+            keep(ipPool, ip, meta, m -> m.forbidden(method, api, limitMeta));
+        }
+    }
+
+    private static void keep(RequestMeta requestMeta,
+                             LimitMeta limitMeta,
+                             String method,
+                             String api,
+                             Consumer<RequestMeta> forbid) {
+        boolean     ip   = IP.equals(limitMeta.getCheckType());
+        RequestPool pool = ip ? getIpRequestPools(api, method) : getUserIdRequestPool(api, method);
+        Object      key  = ip ? requestMeta.getIp() : requestMeta.getUserId();
+        if (pool == null || key == null) return;
+        keep(pool, key.toString(), requestMeta, forbid);
+    }
+
+    /**
+     * 封禁之前记录可能刚被 {@link #clean} 移除，此时把已封禁的记录放回记录池，
+     * 期间已经新建了记录时对新记录同样封禁，不丢失封禁
+     */
+    private static void keep(RequestPool pool,
+                             String key,
+                             RequestMeta requestMeta,
+                             Consumer<RequestMeta> forbid) {
+        RequestMeta meta = requestMeta;
+        while (pool.get(key) != meta) {
+            RequestMeta existing = pool.putIfAbsent(key, meta);
+            if (existing == null) return;
+            meta = existing;
+            forbid.accept(meta);
         }
     }
 
@@ -199,7 +302,8 @@ public class Httpd {
         String ip = requestMeta.getIp();
         requestMeta.relive(method, api, limitMeta);
         associatedIpPools(limitMeta).forEach(ipPool -> {
-            if (ipPool.containsKey(ip)) ipPool.get(ip).relive(method, api, limitMeta);
+            RequestMeta meta = ipPool.get(ip);
+            if (meta != null) meta.relive(method, api, limitMeta);
         });
     }
 
@@ -217,7 +321,8 @@ public class Httpd {
                                                         rateLimit.getPunishmentTime().toArray(new String[0]),
                                                         rateLimit.getMinInterval() + "ms",
                                                         rateLimit.getAssociatedPatterns().toArray(new String[0]),
-                                                        rateLimit.getCheckType());
+                                                        rateLimit.getCheckType(),
+                                                        rateLimit.getAlgorithm());
                     _rateLimitMetadata.computeIfAbsent(path, r -> new HashMap<>()).put(method, limitMeta);
                     return AuthzResult.SUCCESS.data("rateLimit", limitMeta);
                 case DEL:
@@ -262,7 +367,8 @@ public class Httpd {
                                        rateLimit.punishmentTime(),
                                        rateLimit.minInterval(),
                                        rateLimit.associatedPatterns(),
-                                       rateLimit.checkType()));
+                                       rateLimit.checkType(),
+                                       rateLimit.algorithm()));
             }
         });
 
@@ -292,7 +398,8 @@ public class Httpd {
                                                     rateLimit.punishmentTime(),
                                                     rateLimit.minInterval(),
                                                     rateLimit.associatedPatterns(),
-                                                    rateLimit.checkType());
+                                                    rateLimit.checkType(),
+                                                    rateLimit.algorithm());
                 methods.forEach(
                         method -> getPatterns(key).forEach(
                                 patternValue -> _rateLimitMetadata.computeIfAbsent(patternValue,
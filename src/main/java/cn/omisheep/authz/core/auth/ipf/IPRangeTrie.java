@@ -0,0 +1,187 @@
+package cn.omisheep.authz.core.auth.ipf;
+
+import cn.omisheep.authz.support.util.IPAddress;
+import cn.omisheep.authz.support.util.IPRange;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * 按地址位构建的二叉前缀树，用于判断ip是否落在某个网段内
+ * <p>
+ * 网段 a.b.c.d/n 存放在从根出发、沿地址高 n 位走到的节点上，
+ * 查找时沿ip的各个位下降，路径上遇到的第一个有效网段即为命中，IPv4最多 32 步，IPv6最多 128 步，与网段数量无关。
+ * IPv4与IPv6各自使用一棵树。写操作加锁，读操作不加锁，过期的网段在查找经过时顺带清除，也可以通过 {@link #expire(IPRange, Object)} 定时清除。
+ * 删除与过期清除后，已经没有值也没有子节点的节点会被逐级摘除，树的大小只与当前的网段有关。
+ * 写法不同但网段相同的记录（如 10.1.2.3/8 与 10.0.0.0/8）落在同一个节点上，节点按 equals 区分保存多个值，各自过期
+ *
+ * @author zhouxinchen[1269670415@qq.com]
+ * @since 1.2.14
+ */
+class IPRangeTrie<V> {
+
+    private final Node<V> ipv4Root = new Node<>();
+    private final Node<V> ipv6Root = new Node<>();
+
+    /**
+     * @param ipRange 网段
+     * @param value   网段对应的值，节点上已有相等(equals)的值时覆盖
+     */
+    synchronized void put(IPRange ipRange,
+                          V value) {
+        IPAddress address = ipRange.getIPAddress();
+        long      high    = high(address);
+        long      low     = address.getLow();
+        Node<V>   node    = root(address);
+        for (int i = 0; i < ipRange.getPrefixLength(); i++) {
+            if (bit(high, low, i) == 0) {
+                if (node.zero == null) node.zero = new Node<>();
+                node = node.zero;
+            } else {
+                if (node.one == null) node.one = new Node<>();
+                node = node.one;
+            }
+        }
+        node.values = node.with(value);
+    }
+
+    /**
+     * @param ipRange 网段
+     * @param value   要删除的值，节点上与之相等(equals)的值会被删除
+     */
+    synchronized void remove(IPRange ipRange,
+                             V value) {
+        IPAddress address = ipRange.getIPAddress();
+        remove(root(address), high(address), address.getLow(), ipRange.getPrefixLength(), 0, value, false);
+    }
+
+    /**
+     * @param ipRange 网段
+     * @param value   要删除的实例，节点上相等但不是同一个实例的值不受影响
+     */
+    synchronized void expire(IPRange ipRange,
+                             V value) {
+        IPAddress address = ipRange.getIPAddress();
+        remove(root(address), high(address), address.getLow(), ipRange.getPrefixLength(), 0, value, true);
+    }
+
+    /**
+     * 删除节点上的值，并在返回途中摘除已经为空的节点
+     *
+     * @param identity 为true时只删除同一个实例，否则删除相等(equals)的值
+     * @return 子树是否已经为空，可以从父节点摘除
+     */
+    private static <V> boolean remove(Node<V> node,
+                                      long high,
+                                      long low,
+                                      int prefix,
+                                      int depth,
+                                      V value,
+                                      boolean identity) {
+        if (depth == prefix) {
+            node.values = node.without(value, identity);
+        } else if (bit(high, low, depth) == 0) {
+            if (node.zero != null && remove(node.zero, high, low, prefix, depth + 1, value, identity)) {
+                node.zero = null;
+            }
+        } else {
+            if (node.one != null && remove(node.one, high, low, prefix, depth + 1, value, identity)) {
+                node.one = null;
+            }
+        }
+        return node.values.length == 0 && node.zero == null && node.one == null;
+    }
+
+    /**
+     * @param address 地址
+     * @param alive   网段是否仍然有效，无效的网段会被清除
+     * @return 包含该地址的有效网段，没有则为null
+     */
+    @SuppressWarnings("unchecked")
+    V find(IPAddress address,
+           Predicate<V> alive) {
+        long    high = high(address);
+        long    low  = address.getLow();
+        int     bits = address.isIPv6() ? 128 : 32;
+        Node<V> node = root(address);
+        for (int i = 0; node != null; i++) {
+            for (Object o : node.values) {
+                V value = (V) o;
+                if (alive.test(value)) return value;
+                expire(address, high, low, i, value);
+            }
+            if (i == bits) break;
+            node = bit(high, low, i) == 0 ? node.zero : node.one;
+        }
+        return null;
+    }
+
+    /**
+     * 从根重新走到深度为depth的节点删除过期的实例，查找时经过的节点可能已经被其他写操作替换或摘除
+     */
+    private synchronized void expire(IPAddress address,
+                                     long high,
+                                     long low,
+                                     int depth,
+                                     V value) {
+        remove(root(address), high, low, depth, 0, value, true);
+    }
+
+    private Node<V> root(IPAddress address) {
+        return address.isIPv6() ? ipv6Root : ipv4Root;
+    }
+
+    /**
+     * IPv4地址放在高64位的最高32位上，与IPv6共用同一套取位逻辑
+     */
+    private static long high(IPAddress address) {
+        return address.isIPv6() ? address.getHigh() : (long) address.intValue() << 32;
+    }
+
+    private static int bit(long high,
+                           long low,
+                           int i) {
+        return (int) (i < 64 ? (high >>> (63 - i)) & 1 : (low >>> (127 - i)) & 1);
+    }
+
+    private static class Node<V> {
+        private static final Object[] EMPTY = new Object[0];
+
+        private volatile Object[] values = EMPTY;
+        private volatile Node<V>  zero;
+        private volatile Node<V>  one;
+
+        /**
+         * 写时复制，读操作拿到的数组不会再被修改
+         */
+        private Object[] with(V value) {
+            Object[] copy = values;
+            for (int i = 0; i < copy.length; i++) {
+                if (copy[i].equals(value)) {
+                    copy    = copy.clone();
+                    copy[i] = value;
+                    return copy;
+                }
+            }
+            copy                  = Arrays.copyOf(copy, copy.length + 1);
+            copy[copy.length - 1] = value;
+            return copy;
+        }
+
+        private Object[] without(V value,
+                                 boolean identity) {
+            Object[] copy = values;
+            for (int i = 0; i < copy.length; i++) {
+                if (identity ? copy[i] == value : copy[i].equals(value)) {
+                    if (copy.length == 1) return EMPTY;
+                    Object[] rest = new Object[copy.length - 1];
+                    System.arraycopy(copy, 0, rest, 0, i);
+                    System.arraycopy(copy, i + 1, rest, i, copy.length - i - 1);
+                    return rest;
+                }
+            }
+            return copy;
+        }
+    }
+
+}
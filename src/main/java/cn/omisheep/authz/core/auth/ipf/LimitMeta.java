@@ -26,6 +26,8 @@ public class LimitMeta {
     private final long                    minInterval;
     @Getter
     private final RateLimit.CheckType     checkType;
+    @Getter
+    private final RateLimit.Algorithm     algorithm;
     private final List<AssociatedPattern> associatedPatterns;
     private final List<Long>              punishmentTime = new ArrayList<>();
 
@@ -35,9 +37,21 @@ public class LimitMeta {
                      String minInterval,
                      String[] associatedPatterns,
                      RateLimit.CheckType checkType) {
+        this(window, maxRequests, punishmentTime, minInterval, associatedPatterns, checkType,
+             RateLimit.Algorithm.SLIDING_WINDOW);
+    }
+
+    public LimitMeta(String window,
+                     int maxRequests,
+                     String[] punishmentTime,
+                     String minInterval,
+                     String[] associatedPatterns,
+                     RateLimit.CheckType checkType,
+                     RateLimit.Algorithm algorithm) {
         this.window      = TimeUtils.parseTimeValue(window);
         this.maxRequests = maxRequests;
         this.checkType   = checkType;
+        this.algorithm   = algorithm != null ? algorithm : RateLimit.Algorithm.SLIDING_WINDOW;
         Arrays.stream(punishmentTime).forEach(val -> this.punishmentTime.add(TimeUtils.parseTimeValue(val)));
         Collections.sort(this.punishmentTime);
         this.minInterval = TimeUtils.parseTimeValue(minInterval);
@@ -0,0 +1,126 @@
+package cn.omisheep.authz.core.auth.ipf;
+
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPattern;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * 按路径段构建的路由前缀树，用于根据请求路径快速定位对应的 pattern
+ * <p>
+ * 字面量段走精确子节点，{@code {id}}、{@code *.html} 这类单段通配走通配子节点，
+ * {@code **}、{@code {*path}} 挂在所在节点上匹配剩余的所有段。
+ * 查找时只沿着可能命中的分支下降，最终由 {@link PathPattern} 对候选项做一次确认，
+ * 因此结果与逐个 pattern 匹配一致，但复杂度只与路径深度相关。
+ *
+ * @author zhouxinchen
+ * @since 1.2.14
+ */
+class PathTrie {
+
+    private final Node root = new Node();
+
+    void add(String pattern,
+             PathPattern pathPattern) {
+        Node     node     = root;
+        String[] segments = pattern.split("/");
+        for (String segment : segments) {
+            if (segment.isEmpty()) continue;
+            if (isCatchAll(segment)) {
+                node.catchAll = insert(node.catchAll, pathPattern);
+                return;
+            }
+            node = isLiteral(segment)
+                   ? node.literals.computeIfAbsent(segment, r -> new Node())
+                   : (node.wildcard != null ? node.wildcard : (node.wildcard = new Node()));
+        }
+        node.terminals = insert(node.terminals, pathPattern);
+    }
+
+    /**
+     * @param path      请求路径，只解析一次
+     * @param predicate 对命中的 pattern 的额外过滤条件
+     * @return 最具体的匹配 pattern，没有则为 null
+     */
+    String find(String path,
+                Predicate<String> predicate) {
+        PathContainer               pathContainer = PathContainer.parsePath(path);
+        List<PathContainer.Element> elements      = pathContainer.elements();
+        ArrayList<String>           segments      = new ArrayList<>(elements.size());
+        for (PathContainer.Element element : elements) {
+            if (element instanceof PathContainer.PathSegment) {
+                String value = ((PathContainer.PathSegment) element).valueToMatch();
+                if (!value.isEmpty()) segments.add(value);
+            }
+        }
+        return find(root, segments, 0, pathContainer, predicate);
+    }
+
+    private static String find(Node node,
+                               List<String> segments,
+                               int index,
+                               PathContainer pathContainer,
+                               Predicate<String> predicate) {
+        if (index == segments.size()) {
+            String pattern = match(node.terminals, pathContainer, predicate);
+            if (pattern != null) return pattern;
+        } else {
+            Node literal = node.literals.get(segments.get(index));
+            if (literal != null) {
+                String pattern = find(literal, segments, index + 1, pathContainer, predicate);
+                if (pattern != null) return pattern;
+            }
+            if (node.wildcard != null) {
+                String pattern = find(node.wildcard, segments, index + 1, pathContainer, predicate);
+                if (pattern != null) return pattern;
+            }
+        }
+        return match(node.catchAll, pathContainer, predicate);
+    }
+
+    private static String match(PathPattern[] candidates,
+                                PathContainer pathContainer,
+                                Predicate<String> predicate) {
+        if (candidates == null) return null;
+        for (PathPattern candidate : candidates) {
+            if (candidate.matches(pathContainer) && predicate.test(candidate.getPatternString())) {
+                return candidate.getPatternString();
+            }
+        }
+        return null;
+    }
+
+    private static PathPattern[] insert(PathPattern[] candidates,
+                                        PathPattern pathPattern) {
+        if (candidates == null) return new PathPattern[]{pathPattern};
+        for (PathPattern candidate : candidates) {
+            if (candidate.getPatternString().equals(pathPattern.getPatternString())) return candidates;
+        }
+        PathPattern[] arr = new PathPattern[candidates.length + 1];
+        System.arraycopy(candidates, 0, arr, 0, candidates.length);
+        arr[candidates.length] = pathPattern;
+        Arrays.sort(arr, PathPattern.SPECIFICITY_COMPARATOR);
+        return arr;
+    }
+
+    private static boolean isCatchAll(String segment) {
+        return segment.equals("**") || segment.startsWith("{*");
+    }
+
+    private static boolean isLiteral(String segment) {
+        return segment.indexOf('{') == -1 && segment.indexOf('*') == -1 && segment.indexOf('?') == -1;
+    }
+
+    private static class Node {
+        private final Map<String, Node> literals = new HashMap<>();
+        private       Node              wildcard;
+        private       PathPattern[]     terminals;
+        private       PathPattern[]     catchAll;
+    }
+
+}
@@ -0,0 +1,202 @@
+package cn.omisheep.authz.core.auth.ipf;
+
+import cn.omisheep.authz.annotation.RateLimit;
+import cn.omisheep.authz.core.config.Constants;
+import cn.omisheep.authz.core.msg.Message;
+import cn.omisheep.authz.core.util.LogUtils;
+import cn.omisheep.authz.core.util.RedisUtils;
+import cn.omisheep.commons.util.TimeUtils;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于redis的集群限流，每次检查只需一次往返，由lua脚本原子地完成计数与判断，
+ * 所有节点共享同一份计数，不再依赖 {@link cn.omisheep.authz.core.msg.RequestMessage} 广播同步
+ * <p>
+ * 三种算法的脚本与 {@link RequestMeta} 中的本地实现判断结果一致：
+ * 滑动窗口使用有序集合保存窗口内最近 maxRequests 次请求的时间，
+ * 令牌桶保存剩余令牌数和上次补充的时间，GCRA保存理论到达时间(tat)，并都保存最近一次请求时间用于检查最小请求间隔。
+ * <p>
+ * 封禁状态与计数保存在同一个slot的另一个key中(解封时间和惩罚等级)，在同一个脚本中检查和升级，
+ * 一个节点上的封禁对所有节点生效。脚本使用redis的时间，不受各节点时钟偏差的影响。
+ * redis不可用时返回null，由调用方退回本地限流
+ *
+ * @author zhouxinchen[1269670415@qq.com]
+ * @since 1.2.14
+ */
+public class RedisRateLimiter {
+
+    private RedisRateLimiter() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * 访问成功
+     */
+    public static final long ALLOWED  = 1;
+    /**
+     * 访问失败，但没有配置惩罚时间，不封禁
+     */
+    public static final long REJECTED = 0;
+
+    /**
+     * 取redis的时间(ms)，ARGV[1]不为空时使用传入的时间(仅用于测试)。
+     * 封禁期间直接拒绝，不计数；超过一个窗口没有再被封禁时惩罚等级归零。
+     * reject(first) 从 ARGV[first] 开始读取升序的惩罚时间，封禁后清空计数，返回 -惩罚时间
+     */
+    private static final String BAN =
+            "if redis.replicate_commands then pcall(redis.replicate_commands) end\n" +
+                    "local now = tonumber(ARGV[1])\n" +
+                    "if not now then\n" +
+                    "  local time = redis.call('TIME')\n" +
+                    "  now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)\n" +
+                    "end\n" +
+                    "local window = tonumber(ARGV[2])\n" +
+                    "local ban = redis.call('HMGET', KEYS[2], 'relive', 'level')\n" +
+                    "local relive = tonumber(ban[1]) or 0\n" +
+                    "if now < relive then return now - relive end\n" +
+                    "local function reject(first)\n" +
+                    "  if #ARGV < first then return 0 end\n" +
+                    "  local level = tonumber(ban[2]) or 0\n" +
+                    "  if now - relive > window then level = 0 end\n" +
+                    "  level = level + 1\n" +
+                    "  local punishment = tonumber(ARGV[math.min(first + level - 1, #ARGV)])\n" +
+                    "  redis.call('DEL', KEYS[1])\n" +
+                    "  redis.call('HSET', KEYS[2], 'relive', now + punishment, 'level', level)\n" +
+                    "  redis.call('PEXPIRE', KEYS[2], punishment + math.max(window, 0) + 1)\n" +
+                    "  return -punishment\n" +
+                    "end\n";
+
+    /**
+     * KEYS[1]: key, KEYS[2]: banKey
+     * ARGV: now, window, maxRequests, minInterval, member, punishmentTime...
+     */
+    static final RedisScript<Long> SLIDING_WINDOW = new DefaultRedisScript<>(
+            BAN +
+                    "local key = KEYS[1]\n" +
+                    "local max = math.max(1, tonumber(ARGV[3]))\n" +
+                    "local minInterval = tonumber(ARGV[4])\n" +
+                    "local last = redis.call('ZREVRANGE', key, 0, 0, 'WITHSCORES')\n" +
+                    "redis.call('ZREMRANGEBYSCORE', key, '-inf', now - window)\n" +
+                    "local count = redis.call('ZCARD', key)\n" +
+                    "redis.call('ZADD', key, now, ARGV[5])\n" +
+                    "redis.call('ZREMRANGEBYRANK', key, 0, -(max + 1))\n" +
+                    "redis.call('PEXPIRE', key, math.max(window, minInterval, 1))\n" +
+                    "if minInterval > 0 and #last > 0 and now - tonumber(last[2]) < minInterval then return reject(6) end\n" +
+                    "if count < max then return 1 end\n" +
+                    "return reject(6)", Long.class);
+
+    /**
+     * KEYS[1]: key, KEYS[2]: banKey
+     * ARGV: now, window, maxRequests, minInterval, punishmentTime...
+     */
+    static final RedisScript<Long> GCRA = new DefaultRedisScript<>(
+            BAN +
+                    "local key = KEYS[1]\n" +
+                    "local burst = math.max(1, tonumber(ARGV[3]))\n" +
+                    "local minInterval = tonumber(ARGV[4])\n" +
+                    "local v = redis.call('HMGET', key, 'tat', 'last')\n" +
+                    "local tat = tonumber(v[1]) or 0\n" +
+                    "local last = tonumber(v[2])\n" +
+                    "redis.call('HSET', key, 'last', math.max(last or 0, now))\n" +
+                    "local emission = math.max(1, math.floor(window / burst))\n" +
+                    "local tolerance = emission * (burst - 1)\n" +
+                    "local t = math.max(tat, now)\n" +
+                    "local allowed = t - now <= tolerance\n" +
+                    "if minInterval > 0 and last and math.abs(now - last) < minInterval then allowed = false end\n" +
+                    "if allowed then\n" +
+                    "  t = t + emission\n" +
+                    "  redis.call('HSET', key, 'tat', t)\n" +
+                    "end\n" +
+                    "redis.call('PEXPIRE', key, math.max(t - now, minInterval, 1))\n" +
+                    "if allowed then return 1 end\n" +
+                    "return reject(5)", Long.class);
+
+    /**
+     * KEYS[1]: key, KEYS[2]: banKey
+     * ARGV: now, window, maxRequests, minInterval, punishmentTime...
+     * 容量为 maxRequests，每 window 时间补满，状态在补满后过期，与满桶等价
+     */
+    static final RedisScript<Long> TOKEN_BUCKET = new DefaultRedisScript<>(
+            BAN +
+                    "local key = KEYS[1]\n" +
+                    "local capacity = math.max(1, tonumber(ARGV[3]))\n" +
+                    "local minInterval = tonumber(ARGV[4])\n" +
+                    "local v = redis.call('HMGET', key, 'tokens', 'refill', 'last')\n" +
+                    "local tokens = tonumber(v[1])\n" +
+                    "local refill = tonumber(v[2])\n" +
+                    "local last = tonumber(v[3])\n" +
+                    "redis.call('HSET', key, 'last', math.max(last or 0, now))\n" +
+                    "redis.call('PEXPIRE', key, math.max(window, minInterval, 1))\n" +
+                    "if minInterval > 0 and last and math.abs(now - last) < minInterval then return reject(5) end\n" +
+                    "if not refill or not tokens or window <= 0 then\n" +
+                    "  tokens = capacity\n" +
+                    "  refill = now\n" +
+                    "elseif now > refill then\n" +
+                    "  tokens = math.min(capacity, tokens + (now - refill) * capacity / window)\n" +
+                    "  refill = now\n" +
+                    "end\n" +
+                    "local allowed = tokens >= 1\n" +
+                    "if allowed then tokens = tokens - 1 end\n" +
+                    "redis.call('HSET', key, 'tokens', string.format('%.17g', tokens), 'refill', refill)\n" +
+                    "if allowed then return 1 end\n" +
+                    "return reject(5)", Long.class);
+
+    private static final long FALLBACK_WARN_INTERVAL = 60000;
+
+    private static final AtomicLong sequence     = new AtomicLong();
+    private static final AtomicLong lastWarnTime = new AtomicLong();
+
+    /**
+     * @param method    method
+     * @param api       api
+     * @param target    ip 或 userId
+     * @param limitMeta 限制信息
+     * @return {@link #ALLOWED} 访问成功，{@link #REJECTED} 访问失败，负数表示已被封禁，绝对值为剩余的封禁时间(ms)，
+     * redis不可用时为null
+     */
+    public static Long request(String method,
+                               String api,
+                               String target,
+                               LimitMeta limitMeta) {
+        // 计数和封禁状态需要在同一个slot中
+        String key = Constants.RATE_LIMIT_KEY_PREFIX.get() + "{" + method + Constants.SEPARATOR + api
+                + Constants.SEPARATOR + limitMeta.getCheckType().getVal() + Constants.SEPARATOR + target + "}";
+        List<String> keys = Arrays.asList(key, key + Constants.SEPARATOR + "ban");
+        List<Object> args = new ArrayList<>();
+        // 为空时使用redis的时间
+        args.add("");
+        args.add(limitMeta.getWindow());
+        args.add(limitMeta.getMaxRequests());
+        args.add(limitMeta.getMinInterval());
+        RedisScript<Long> script;
+        if (limitMeta.getAlgorithm() == RateLimit.Algorithm.SLIDING_WINDOW) {
+            // 同一毫秒内的请求需要不同的member
+            args.add(Message.uuid + Constants.SEPARATOR + sequence.incrementAndGet());
+            script = SLIDING_WINDOW;
+        } else {
+            script = limitMeta.getAlgorithm() == RateLimit.Algorithm.TOKEN_BUCKET ? TOKEN_BUCKET : GCRA;
+        }
+        args.addAll(limitMeta.getPunishmentTime());
+        Long result = RedisUtils.execute(script, keys, args.toArray());
+        if (result == null) warnFallback(method, api);
+        return result;
+    }
+
+    /**
+     * redis不可用时退回本地限流，每分钟最多提示一次
+     */
+    private static void warnFallback(String method,
+                                     String api) {
+        long now  = TimeUtils.nowTime();
+        long last = lastWarnTime.get();
+        if (now - last < FALLBACK_WARN_INTERVAL || !lastWarnTime.compareAndSet(last, now)) return;
+        LogUtils.warn("redis限流脚本执行失败，退回本地限流。 method: [{}], api: [{}]", method, api);
+    }
+
+}
@@ -1,34 +1,54 @@
 package cn.omisheep.authz.core.auth.ipf;
 
+import cn.omisheep.authz.annotation.RateLimit;
 import cn.omisheep.authz.core.callback.RateLimitCallback;
 import cn.omisheep.commons.util.TimeUtils;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Getter;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.concurrent.locks.StampedLock;
 
 /**
+ * 同一个 ip / userId 的请求会被多个servlet线程并发访问，状态的修改都在 {@link #lock} 的写锁中完成，
+ * 读取则使用乐观读，不会阻塞请求线程
+ *
  * @author zhouxinchen[1269670415@qq.com]
  * @since 1.0.0
  */
 public class RequestMeta {
     @Getter
-    private final  String            ip;
+    private final    String            ip;
     @Getter
-    private final  Object            userId;
+    private final    Object            userId;
     @Getter
-    private        boolean           ban;
-    private        int               punishmentLevel;
-    private        long              reliveTime;
-    private        long              lastRequestTime;
-    private        long              sinceLastTime;
-    private final  LinkedList<Long>  requestTimeList = new LinkedList<>();
-    private static RateLimitCallback callback;
+    private volatile boolean           ban;
+    private          int               punishmentLevel;
+    private volatile long              reliveTime;
+    private volatile long              lastRequestTime;
+    private volatile long              sinceLastTime;
+    /**
+     * 请求时间的环形缓冲区，容量为 maxRequests，按时间先后从 head 开始依次存放，仅滑动窗口使用
+     */
+    private          long[]            requestTimes;
+    private          int               head;
+    private          int               count;
+    /**
+     * GCRA的理论到达时间，为0时表示没有记录
+     */
+    private          long              tat;
+    /**
+     * 令牌桶剩余的令牌数和上次补充的时间，refillTime为0时表示桶是满的
+     */
+    private          double            tokens;
+    private          long              refillTime;
+    private final    StampedLock       lock = new StampedLock();
+    private static   RateLimitCallback callback;
 
     protected static void setCallback(RateLimitCallback callback) {
         RequestMeta.callback = callback;
@@ -36,17 +56,41 @@ public class RequestMeta {
 
     @JsonInclude(JsonInclude.Include.NON_NULL)
     public Date getReliveTime() {
-        return ban ? new Date(reliveTime) : null;
+        long    stamp = lock.tryOptimisticRead();
+        boolean _ban  = ban;
+        long    _time = reliveTime;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                _ban  = ban;
+                _time = reliveTime;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return _ban ? new Date(_time) : null;
     }
 
     @JsonInclude(JsonInclude.Include.NON_EMPTY)
     public List<Date> getRequestTimeList() {
-        return requestTimeList.stream().map(Date::new).collect(Collectors.toList());
+        long stamp = lock.readLock();
+        try {
+            ArrayList<Date> list = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) list.add(new Date(at(i)));
+            return list;
+        } finally {
+            lock.unlockRead(stamp);
+        }
     }
 
     public void setLastRequestTime(long lastRequestTime) {
-        this.sinceLastTime   = lastRequestTime - this.lastRequestTime;
-        this.lastRequestTime = lastRequestTime;
+        long stamp = lock.writeLock();
+        try {
+            this.sinceLastTime   = lastRequestTime - this.lastRequestTime;
+            this.lastRequestTime = lastRequestTime;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
     }
 
     public Date getLastRequestTime() {
@@ -58,17 +102,94 @@ public class RequestMeta {
                        Object userId) {
         this.ip     = ip;
         this.userId = userId;
-        request(now, 1, 0, 0);
+        doRequest(now, 1, 0, 0);
+    }
+
+    public RequestMeta(long now,
+                       String ip,
+                       Object userId,
+                       LimitMeta limitMeta) {
+        this.ip     = ip;
+        this.userId = userId;
+        doRequest(now, limitMeta);
+    }
+
+    private RequestMeta(String ip,
+                        Object userId,
+                        long now) {
+        this.ip              = ip;
+        this.userId          = userId;
+        this.lastRequestTime = now;
+    }
+
+    /**
+     * 只保存封禁状态、不记录请求的RequestMeta，不会分配滑动窗口的缓冲区，
+     * 之后按哪种算法请求就只初始化哪种算法的状态
+     *
+     * @param now    nowMills
+     * @param ip     ip
+     * @param userId userId
+     * @return RequestMeta
+     * @since 1.2.14
+     */
+    public static RequestMeta withoutRequest(long now,
+                                             String ip,
+                                             Object userId) {
+        return new RequestMeta(ip, userId, now);
     }
 
     public boolean enableRelive(long now) {
         return reliveTime <= now;
     }
 
+    /**
+     * 长时间没有请求、窗口已空，并且封禁和惩罚等级都已过期时，该记录与新建的记录没有区别，可以被移除
+     *
+     * @param now      nowMills
+     * @param idleTime 最少的空闲时间
+     * @param window   时间窗口
+     * @return 是否可以移除
+     */
+    public boolean isIdle(long now,
+                          long idleTime,
+                          long window) {
+        long sinceLast = now - lastRequestTime;
+        return sinceLast >= idleTime && sinceLast > window && now - reliveTime > window;
+    }
+
+    /**
+     * 在写锁中判断是否空闲并从记录池中移除，与封禁互斥。移除之后才到达的封禁由 {@link Httpd} 把记录放回记录池
+     *
+     * @param pool     所在的记录池
+     * @param key      记录池中的key
+     * @param now      nowMills
+     * @param idleTime 最少的空闲时间
+     * @param window   时间窗口
+     * @return 是否已移除
+     */
+    boolean removeIfIdle(Map<String, RequestMeta> pool,
+                         String key,
+                         long now,
+                         long idleTime,
+                         long window) {
+        long stamp = lock.writeLock();
+        try {
+            return isIdle(now, idleTime, window) && pool.remove(key, this);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
     public void relive(String method,
                        String api,
                        LimitMeta limitMeta) {
-        ban = false;
+        long stamp = lock.writeLock();
+        try {
+            if (!ban) return;
+            ban = false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
         callback.relive(method, api, ip, userId, limitMeta);
     }
 
@@ -78,52 +199,206 @@ public class RequestMeta {
         long       nowTime        = TimeUtils.nowTime();
         List<Long> punishmentTime = limitMeta.getPunishmentTime();
         if (punishmentTime == null) return this;
-        // 惩罚升级
-        punishmentLevel++;
-        if (punishmentLevel <= punishmentTime.size()) {
-            reliveTime = punishmentTime.get(punishmentLevel - 1) + nowTime;
-        } else {
-            reliveTime = punishmentTime.get(punishmentTime.size() - 1) + nowTime;
+        long _reliveTime;
+        long stamp = lock.writeLock();
+        try {
+            // 惩罚升级
+            punishmentLevel++;
+            if (punishmentLevel <= punishmentTime.size()) {
+                reliveTime = punishmentTime.get(punishmentLevel - 1) + nowTime;
+            } else {
+                reliveTime = punishmentTime.get(punishmentTime.size() - 1) + nowTime;
+            }
+            head        = 0;
+            count       = 0;
+            tat         = 0;
+            refillTime  = 0;
+            ban         = true;
+            _reliveTime = reliveTime;
+        } finally {
+            lock.unlockWrite(stamp);
         }
-        requestTimeList.clear();
-        ban = true;
-        if (callback != null) callback.forbid(method, api, ip, userId, limitMeta, new Date(reliveTime));
+        if (callback != null) callback.forbid(method, api, ip, userId, limitMeta, new Date(_reliveTime));
         return this;
     }
 
+    /**
+     * 用于接收其他节点同步过来的请求，时间可能早于本地最近一次的请求，此时按时间顺序插入
+     *
+     * @param now         nowMills
+     * @param maxRequests 请求限制最大次数
+     * @param window      时间窗口
+     * @param minInterval 最小请求间隔时间
+     * @return 访问是否成功
+     */
     public boolean pushRequest(long now,
                                int maxRequests,
                                long window,
                                long minInterval) {
-        if (requestTimeList.isEmpty() || requestTimeList.getLast() < now) {
-            return request(now, maxRequests, window, minInterval);
+        long stamp = lock.writeLock();
+        try {
+            return doPushRequest(now, maxRequests, window, minInterval);
+        } finally {
+            lock.unlockWrite(stamp);
         }
+    }
 
-        for (int i = 0; i < requestTimeList.size(); i++) {
-            if (requestTimeList.get(i) >= now) {
-                requestTimeList.add(i, now);
-                break;
-            }
+    private boolean doPushRequest(long now,
+                                  int maxRequests,
+                                  long window,
+                                  long minInterval) {
+        ensureCapacity(maxRequests);
+        if (count == 0 || at(count - 1) < now) {
+            return doRequest(now, maxRequests, window, minInterval);
         }
 
-        int size = requestTimeList.size();
-        if (minInterval > 0 && size >= 2) {
-            if (requestTimeList.get(size - 1) - requestTimeList.get(size - 2) > minInterval) {
-                return false;
-            }
+        boolean full  = count == requestTimes.length;
+        long    first = at(0);
+        if (full && now < first) {
+            // 比缓冲区内所有记录都早，不再保留
+            return at(count - 1) - now >= window;
+        }
+        if (full) {
+            head = (head + 1) % requestTimes.length;
+            count--;
         }
 
-        if (size > maxRequests) {
-            Long first = requestTimeList.getFirst();
-            return requestTimeList.getLast() - first >= window;
+        int i = count;
+        while (i > 0 && at(i - 1) > now) {
+            set(i, at(i - 1));
+            i--;
+        }
+        set(i, now);
+        count++;
+
+        if (minInterval > 0 && ((i > 0 && now - at(i - 1) < minInterval)
+                || (i + 1 < count && at(i + 1) - now < minInterval))) {
+            return false;
         }
-        return true;
-    }
 
+        return !full || at(count - 1) - first >= window;
+    }
 
     public boolean pushRequest(long now,
                                LimitMeta limitMeta) {
-        return pushRequest(now, limitMeta.getMaxRequests(), limitMeta.getWindow(), limitMeta.getMinInterval());
+        if (limitMeta.getAlgorithm() == RateLimit.Algorithm.SLIDING_WINDOW) {
+            return pushRequest(now, limitMeta.getMaxRequests(), limitMeta.getWindow(), limitMeta.getMinInterval());
+        }
+        // 令牌桶和GCRA本身不依赖请求的先后顺序
+        return request(now, limitMeta);
+    }
+
+    /**
+     * 按照 limitMeta 配置的限流算法进行一次请求
+     *
+     * @param now       nowMills
+     * @param limitMeta 限制信息
+     * @return 访问是否成功
+     */
+    public boolean request(long now,
+                           LimitMeta limitMeta) {
+        long stamp = lock.writeLock();
+        try {
+            return doRequest(now, limitMeta);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private boolean doRequest(long now,
+                              LimitMeta limitMeta) {
+        switch (limitMeta.getAlgorithm()) {
+            case TOKEN_BUCKET:
+                return doTokenBucket(now, limitMeta.getMaxRequests(), limitMeta.getWindow(),
+                                     limitMeta.getMinInterval());
+            case GCRA:
+                return doGcra(now, limitMeta.getMaxRequests(), limitMeta.getWindow(), limitMeta.getMinInterval());
+            default:
+                return doRequest(now, limitMeta.getMaxRequests(), limitMeta.getWindow(), limitMeta.getMinInterval());
+        }
+    }
+
+    /**
+     * GCRA：每次请求使理论到达时间(tat)后移 window / maxRequests，
+     * 当 tat 超前当前时间的部分大于允许的突发量时拒绝
+     */
+    private boolean doGcra(long now,
+                           int maxRequests,
+                           long window,
+                           long minInterval) {
+        if (!beforeRequest(now, window, minInterval, tat > 0)) return false;
+        int  burst     = Math.max(1, maxRequests);
+        long emission  = Math.max(1, window / burst);
+        long tolerance = emission * (burst - 1);
+        long _tat      = Math.max(tat, now);
+        if (_tat - now > tolerance) return false;
+        tat = _tat + emission;
+        return true;
+    }
+
+    /**
+     * 令牌桶：容量为 maxRequests，每 window 时间补满
+     */
+    private boolean doTokenBucket(long now,
+                                  int maxRequests,
+                                  long window,
+                                  long minInterval) {
+        if (!beforeRequest(now, window, minInterval, refillTime > 0)) return false;
+        int capacity = Math.max(1, maxRequests);
+        if (refillTime == 0 || window <= 0) {
+            tokens     = capacity;
+            refillTime = now;
+        } else if (now > refillTime) {
+            tokens     = Math.min(capacity, tokens + (now - refillTime) * capacity / (double) window);
+            refillTime = now;
+        }
+        if (tokens < 1) return false;
+        tokens--;
+        return true;
+    }
+
+    /**
+     * 按给定的解封时间封禁，不升级惩罚等级。集群限流模式下惩罚等级由redis维护，本地只保存封禁状态
+     *
+     * @param reliveTime 解封时间
+     * @return this
+     * @since 1.2.14
+     */
+    public RequestMeta forbidden(String method,
+                                 String api,
+                                 LimitMeta limitMeta,
+                                 long reliveTime) {
+        long stamp = lock.writeLock();
+        try {
+            this.reliveTime = reliveTime;
+            head            = 0;
+            count           = 0;
+            tat             = 0;
+            refillTime      = 0;
+            ban             = true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (callback != null) callback.forbid(method, api, ip, userId, limitMeta, new Date(reliveTime));
+        return this;
+    }
+
+    /**
+     * 更新最近的请求时间，并检查最小请求间隔
+     *
+     * @return 请求间隔是否满足
+     */
+    private boolean beforeRequest(long now,
+                                  long window,
+                                  long minInterval,
+                                  boolean hasLast) {
+        // 过了一个周期后，惩罚等级归零
+        if (now - reliveTime > window) punishmentLevel = 0;
+        long lastSecond = lastRequestTime;
+        sinceLastTime   = now - lastSecond;
+        lastRequestTime = Math.max(lastSecond, now);
+        // 请求间隔太短，封禁
+        return minInterval <= 0 || !hasLast || Math.abs(now - lastSecond) >= minInterval;
     }
 
     /**
@@ -137,34 +412,74 @@ public class RequestMeta {
                            int maxRequests,
                            long window,
                            long minInterval) {
+        long stamp = lock.writeLock();
+        try {
+            return doRequest(now, maxRequests, window, minInterval);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private boolean doRequest(long now,
+                              int maxRequests,
+                              long window,
+                              long minInterval) {
         // 过了一个周期后，惩罚等级归零
         if (now - reliveTime > window) punishmentLevel = 0;
+        ensureCapacity(maxRequests);
 
-        Long lastSecond = null;
-        if (!requestTimeList.isEmpty()) {
-            lastSecond    = requestTimeList.getLast();
+        boolean hasLast    = count > 0;
+        long    lastSecond = 0;
+        if (hasLast) {
+            lastSecond    = at(count - 1);
             sinceLastTime = now - lastSecond;
         }
         lastRequestTime = now;
 
-        requestTimeList.removeIf(time -> (now - time) > window);
-        requestTimeList.offer(now);
-        Long lastFirst = requestTimeList.getLast();
+        // 缓冲区已满时，最早的一条即为窗口内第 maxRequests + 1 次请求之前的那一次
+        boolean full  = count == requestTimes.length;
+        long    first = full ? at(0) : 0;
+        if (full) {
+            requestTimes[head] = now;
+            head               = (head + 1) % requestTimes.length;
+        } else {
+            set(count++, now);
+        }
 
-        if (minInterval > 0 && lastSecond != null) {
-            if (lastFirst - lastSecond < minInterval) {
+        if (minInterval > 0 && hasLast) {
+            if (now - lastSecond < minInterval) {
                 return false; // 请求间隔太短，封禁
             }
         }
 
-        while (requestTimeList.size() - 1 > maxRequests) requestTimeList.pollFirst();
+        return !full || now - first >= window;
+    }
 
-        if (requestTimeList.size() > maxRequests) {
-            Long first = requestTimeList.getFirst();
-            return lastFirst - first >= window;
-        }
+    private long at(int i) {
+        return requestTimes[(head + i) % requestTimes.length];
+    }
 
-        return true;
+    private void set(int i,
+                     long time) {
+        requestTimes[(head + i) % requestTimes.length] = time;
+    }
+
+    /**
+     * 限制规则被修改后，按新的 maxRequests 调整缓冲区大小，保留最近的记录
+     */
+    private void ensureCapacity(int maxRequests) {
+        int capacity = Math.max(1, maxRequests);
+        if (requestTimes == null) {
+            requestTimes = new long[capacity];
+            return;
+        }
+        if (requestTimes.length == capacity) return;
+        long[] arr  = new long[capacity];
+        int    keep = Math.min(count, capacity);
+        for (int i = 0; i < keep; i++) arr[i] = at(count - keep + i);
+        requestTimes = arr;
+        head         = 0;
+        count        = keep;
     }
 
     public String sinceLastTime() {
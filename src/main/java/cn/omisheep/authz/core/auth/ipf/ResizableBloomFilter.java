@@ -0,0 +1,99 @@
+package cn.omisheep.authz.core.auth.ipf;
+
+import orestes.bloomfilter.CountingBloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+
+import java.util.Collection;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 可扩容的计数布隆过滤器
+ * <p>
+ * 元素数量超过预期容量后误判率会迅速上升，此时按当前元素数量的两倍（不小于初始容量）从数据源重建过滤器，
+ * 重建同时也会清除重复添加留下的计数残留。
+ * 数据源的修改需要通过 {@link #add(String, BooleanSupplier)}、{@link #remove(String, BooleanSupplier)} 在同一个锁内完成，
+ * 保证过滤器中的计数与数据源一致，不会减去重建时已经不在数据源中的元素。读操作不加锁
+ *
+ * @author zhouxinchen[1269670415@qq.com]
+ * @since 1.2.14
+ */
+class ResizableBloomFilter {
+
+    private final Supplier<? extends Collection<String>> source;
+
+    private volatile CountingBloomFilter<String> filter;
+    private          int                         initialCapacity;
+    private          int                         capacity;
+    private          double                      fpp;
+    private          int                         count;
+
+    /**
+     * @param capacity 预期元素数量
+     * @param fpp      误判率
+     * @param source   当前的全部元素，重建时使用
+     */
+    ResizableBloomFilter(int capacity,
+                         double fpp,
+                         Supplier<? extends Collection<String>> source) {
+        this.source = source;
+        reset(capacity, fpp);
+    }
+
+    /**
+     * 按新的容量与误判率重建
+     *
+     * @param capacity 预期元素数量
+     * @param fpp      误判率
+     */
+    synchronized void reset(int capacity,
+                            double fpp) {
+        this.initialCapacity = Math.max(1, capacity);
+        this.capacity        = this.initialCapacity;
+        this.fpp             = fpp;
+        rebuild();
+    }
+
+    boolean contains(String element) {
+        return filter.contains(element);
+    }
+
+    /**
+     * @param element 元素
+     * @param added   在锁内向数据源添加元素，返回是否为新添加的元素
+     */
+    synchronized void add(String element,
+                          BooleanSupplier added) {
+        if (!added.getAsBoolean()) return;
+        filter.add(element);
+        if (++count > capacity) {
+            capacity = Math.max(initialCapacity, source.get().size() * 2);
+            rebuild();
+        }
+    }
+
+    /**
+     * @param element 元素
+     * @param removed 在锁内从数据源移除元素，返回是否确实移除了，只有确实移除时才减去计数
+     */
+    synchronized void remove(String element,
+                             BooleanSupplier removed) {
+        if (!removed.getAsBoolean()) return;
+        filter.remove(element);
+        count--;
+    }
+
+    synchronized int capacity() {
+        return capacity;
+    }
+
+    private void rebuild() {
+        CountingBloomFilter<String> newFilter = new FilterBuilder(capacity, fpp).countingBits(8)
+                .buildCountingBloomFilter();
+        Collection<String> elements = source.get();
+        for (String element : elements) newFilter.add(element);
+        count  = elements.size();
+        filter = newFilter;
+    }
+
+}
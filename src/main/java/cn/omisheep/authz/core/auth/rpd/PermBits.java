@@ -0,0 +1,141 @@
+package cn.omisheep.authz.core.auth.rpd;
+
+import org.springframework.lang.Nullable;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 角色、权限名称的整数编号与位集运算
+ * <p>
+ * 规则中出现的每个名称在编译时分配一个编号，{@link Meta} 中 OR-of-AND 形式的 {@code Set<Set<String>>}
+ * 编译为 {@code long[][]}，每一组对应一个位集。用户的角色、权限同样转换为位集后，
+ * 判断某一组是否为其子集只需逐字做与运算。规则中未出现的名称不分配编号，转换用户位集时直接忽略，
+ * 它们不会影响任何子集判断
+ *
+ * @author zhouxinchen[1269670415@qq.com]
+ * @since 1.2.14
+ */
+public final class PermBits {
+
+    private static final NameIndex ROLES       = new NameIndex();
+    private static final NameIndex PERMISSIONS = new NameIndex();
+
+    private PermBits() {
+        throw new UnsupportedOperationException();
+    }
+
+    public static NameIndex roles() {
+        return ROLES;
+    }
+
+    public static NameIndex permissions() {
+        return PERMISSIONS;
+    }
+
+    /**
+     * 与 {@link cn.omisheep.commons.util.CollectionUtils#containsSub(Set, Collection)} 语义一致
+     *
+     * @param groups 编译后的规则组
+     * @param bits   用户的位集
+     * @return 是否存在某一组为bits的子集，任一参数为null时返回false
+     */
+    public static boolean containsSub(@Nullable long[][] groups,
+                                      @Nullable long[] bits) {
+        if (groups == null || bits == null) return false;
+        for (long[] group : groups) {
+            if (isSubset(group, bits)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return a | b，为null的一方视为空集，两者都为null时返回null
+     */
+    public static long[] or(@Nullable long[] a,
+                            @Nullable long[] b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        long[] big   = a.length >= b.length ? a : b;
+        long[] small = big == a ? b : a;
+        long[] r     = big.clone();
+        for (int i = 0; i < small.length; i++) r[i] |= small[i];
+        return r;
+    }
+
+    private static boolean isSubset(long[] group,
+                                    long[] bits) {
+        for (int i = 0; i < group.length; i++) {
+            long word = i < bits.length ? bits[i] : 0L;
+            if ((group[i] & ~word) != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 名称到编号的映射，只增不减
+     */
+    public static final class NameIndex {
+
+        private final ConcurrentHashMap<String, Integer> ids  = new ConcurrentHashMap<>();
+        private final AtomicInteger                      next = new AtomicInteger();
+
+        private NameIndex() {
+        }
+
+        int intern(String name) {
+            return ids.computeIfAbsent(name, k -> next.getAndIncrement());
+        }
+
+        public int size() {
+            return next.get();
+        }
+
+        /**
+         * @param names 名称
+         * @return 位集，names为null时返回null，未分配编号的名称被忽略
+         */
+        public long[] bits(@Nullable Collection<String> names) {
+            if (names == null) return null;
+            long[] bits = new long[(size() + 63) >>> 6];
+            for (String name : names) {
+                if (name == null) continue;
+                Integer id = ids.get(name);
+                if (id == null) continue;
+                bits = set(bits, id);
+            }
+            return bits;
+        }
+
+        /**
+         * @param groups OR-of-AND 规则
+         * @return 每组一个位集，groups为空时返回null
+         */
+        long[][] compile(@Nullable Set<Set<String>> groups) {
+            if (groups == null || groups.isEmpty()) return null;
+            long[][] compiled = new long[groups.size()][];
+            int      i        = 0;
+            for (Set<String> group : groups) {
+                long[] bits = new long[0];
+                for (String name : group) bits = set(bits, intern(name));
+                compiled[i++] = bits;
+            }
+            return compiled;
+        }
+
+        private static long[] set(long[] bits,
+                                  int id) {
+            int word = id >>> 6;
+            if (word >= bits.length) {
+                long[] grown = new long[word + 1];
+                System.arraycopy(bits, 0, grown, 0, bits.length);
+                bits = grown;
+            }
+            bits[word] |= 1L << id;
+            return bits;
+        }
+    }
+
+}
@@ -21,12 +21,15 @@ public class PermRolesMeta implements Non {
     Meta roles;
     Meta permissions;
 
+    private transient volatile Compiled compiled;
+
     @Override
     public boolean non() {
         return (roles == null || roles.non()) && (permissions == null || permissions.non());
     }
 
     public PermRolesMeta clear() {
+        this.compiled    = null;
         this.roles       = null;
         this.permissions = null;
         return this;
@@ -66,6 +69,7 @@ public class PermRolesMeta implements Non {
     }
 
     public void setRequireRoles(Set<Set<String>> requireRoles) {
+        this.compiled = null;
         if (requireRoles == null || requireRoles.isEmpty()) {
             if (this.roles != null) this.roles.require = null;
         } else {
@@ -80,6 +84,7 @@ public class PermRolesMeta implements Non {
     }
 
     public void setExcludeRoles(Set<Set<String>> excludeRoles) {
+        this.compiled = null;
         if (excludeRoles == null || excludeRoles.isEmpty()) {
             if (this.roles != null) this.roles.exclude = null;
         } else {
@@ -94,6 +99,7 @@ public class PermRolesMeta implements Non {
     }
 
     public void setRequirePermissions(Set<Set<String>> requirePermissions) {
+        this.compiled = null;
         if (requirePermissions == null || requirePermissions.isEmpty()) {
             if (this.permissions != null) this.permissions.require = null;
         } else {
@@ -108,6 +114,7 @@ public class PermRolesMeta implements Non {
     }
 
     public void setExcludePermissions(Set<Set<String>> excludePermissions) {
+        this.compiled = null;
         if (excludePermissions == null || excludePermissions.isEmpty()) {
             if (this.permissions != null) this.permissions.exclude = null;
         } else {
@@ -161,6 +168,7 @@ public class PermRolesMeta implements Non {
 
     public void setRoles(Set<Set<String>> require,
                          Set<Set<String>> exclude) {
+        this.compiled = null;
         if ((require == null || require.isEmpty()) && (exclude == null || exclude.isEmpty())) {
             this.roles = null;
             return;
@@ -176,6 +184,7 @@ public class PermRolesMeta implements Non {
 
     public void setPermissions(Set<Set<String>> require,
                                Set<Set<String>> exclude) {
+        this.compiled = null;
         if ((require == null || require.isEmpty()) && (exclude == null || exclude.isEmpty())) {
             this.permissions = null;
             return;
@@ -186,6 +195,7 @@ public class PermRolesMeta implements Non {
 
     public PermRolesMeta merge(PermRolesMeta other) {
         if (other == null) return this;
+        this.compiled = null;
         if (permissions == null) {
             setExcludePermissions(other.getExcludePermissions());
             setRequirePermissions(other.getRequirePermissions());
@@ -207,6 +217,49 @@ public class PermRolesMeta implements Non {
         return this;
     }
 
+    /**
+     * 编译为位集形式，结果会被缓存，通过本类的方法修改后失效。
+     * 直接修改 {@link #getRoles()}、{@link #getPermissions()} 返回的 {@link Meta} 不会使缓存失效
+     *
+     * @return 编译后的规则
+     * @since 1.2.14
+     */
+    public Compiled compile() {
+        Compiled c = compiled;
+        if (c == null) {
+            c        = new Compiled(this);
+            compiled = c;
+        }
+        return c;
+    }
+
+    /**
+     * 位集形式的规则，每个数组元素对应原规则中的一组，见 {@link PermBits}
+     *
+     * @since 1.2.14
+     */
+    public static final class Compiled {
+        public final long[][] requireRoles;
+        public final long[][] excludeRoles;
+        public final long[][] requirePermissions;
+        public final long[][] excludePermissions;
+
+        private Compiled(PermRolesMeta meta) {
+            this.requireRoles       = PermBits.roles().compile(meta.getRequireRoles());
+            this.excludeRoles       = PermBits.roles().compile(meta.getExcludeRoles());
+            this.requirePermissions = PermBits.permissions().compile(meta.getRequirePermissions());
+            this.excludePermissions = PermBits.permissions().compile(meta.getExcludePermissions());
+        }
+
+        public boolean hasRoles() {
+            return requireRoles != null || excludeRoles != null;
+        }
+
+        public boolean hasPermissions() {
+            return requirePermissions != null || excludePermissions != null;
+        }
+    }
+
     @Override
     public String toString() {
         return (roles != null ? "( role : " + roles + " )" : "") +
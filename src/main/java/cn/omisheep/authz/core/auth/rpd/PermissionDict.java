@@ -118,32 +118,35 @@ public class PermissionDict {
      */
     private static final Set<IPRange> _globalDeny = new HashSet<>();
 
+    /**
+     * 编译后的全局ip范围
+     */
+    private static volatile IPRangeMeta _globalIPRange = new IPRangeMeta().compile();
+
     // ----------------------------------------- unModify ----------------------------------------- //
 
+    /*
+     * 运行时可修改的元数据以不可变快照的形式发布，读取时无需加锁，
+     * 写操作在锁内修改上面的工作副本后，只重新生成被修改的那一项并替换快照
+     */
+
     @Getter
-    private static final Map<String, Set<String>>                             certificatedMetadata           = Collections.unmodifiableMap(
-            _certificatedMetadata);
+    private static volatile Map<String, Set<String>>                             certificatedMetadata           = Collections.emptyMap();
     @Getter
-    private static final Set<String>                                          controllerCertificatedMetadata = Collections.unmodifiableSet(
-            _certificatedControllerMetadata);
+    private static volatile Set<String>                                          controllerCertificatedMetadata = Collections.emptySet();
     @Getter
-    private static final Map<String, Map<String, PermRolesMeta>>              rolePermission                 = Collections.unmodifiableMap(
-            _authzMetadata);
+    private static volatile Map<String, Map<String, PermRolesMeta>>              rolePermission                 = Collections.emptyMap();
     @Getter
-    private static final Map<String, PermRolesMeta>                           controllerRolePermission       = Collections.unmodifiableMap(
-            _authzControllerMetadata);
+    private static volatile Map<String, PermRolesMeta>                           controllerRolePermission       = Collections.emptyMap();
     @Getter
-    private static final Map<String, Map<String, Map<String, ParamMetadata>>> paramPermission                = Collections.unmodifiableMap(
-            _authzParamMetadata);
+    private static volatile Map<String, Map<String, Map<String, ParamMetadata>>> paramPermission                = Collections.emptyMap();
     @Getter
-    private static final Map<String, Model>                                   authzResourcesModel            = Collections.unmodifiableMap(
-            _authzResourcesModel);
+    private static volatile Map<String, List<DataPermRolesMeta>>                 dataPermission                 = Collections.emptyMap();
     @Getter
-    private static final Map<String, List<DataPermRolesMeta>>                 dataPermission                 = Collections.unmodifiableMap(
-            _dataPermMetadata);
+    private static volatile Map<String, Map<String, FieldDataPermRolesMeta>>     fieldsData                     = Collections.emptyMap();
     @Getter
-    private static final Map<String, Map<String, FieldDataPermRolesMeta>>     fieldsData                     = Collections.unmodifiableMap(
-            _fieldMetadata);
+    private static final Map<String, Model>                                   authzResourcesModel            = Collections.unmodifiableMap(
+            _authzResourcesModel);
     @Getter
     private static final Map<String, ArgsMeta>                                args                           = Collections.unmodifiableMap(
             _argsMetadata);
@@ -164,6 +167,111 @@ public class PermissionDict {
         return PermissionDict._supportNative;
     }
 
+    private static volatile boolean published = false;
+
+    /**
+     * 由工作副本生成新的不可变快照并替换，调用方需持有锁或处于初始化阶段
+     *
+     * @since 1.2.14
+     */
+    private static void publish() {
+        published                      = true;
+        certificatedMetadata           = copy(_certificatedMetadata, PermissionDict::copySet);
+        controllerCertificatedMetadata = copySet(_certificatedControllerMetadata);
+        rolePermission                 = copy(_authzMetadata, v -> copy(v, PermissionDict::compiled));
+        controllerRolePermission       = copy(_authzControllerMetadata, PermissionDict::compiled);
+        paramPermission                = copy(_authzParamMetadata, PermissionDict::copyParams);
+        dataPermission                 = copy(_dataPermMetadata, PermissionDict::copyList);
+        fieldsData                     = copy(_fieldMetadata, v -> copy(v, m -> m));
+    }
+
+    private static void publishApi(String api) {
+        certificatedMetadata = replace(certificatedMetadata, api, _certificatedMetadata.get(api),
+                                       PermissionDict::copySet);
+        rolePermission       = replace(rolePermission, api, _authzMetadata.get(api),
+                                       v -> copy(v, PermissionDict::compiled));
+    }
+
+    private static void publishController(String controller) {
+        controllerCertificatedMetadata = copySet(_certificatedControllerMetadata);
+        controllerRolePermission       = replace(controllerRolePermission, controller,
+                                                 _authzControllerMetadata.get(controller), PermissionDict::compiled);
+    }
+
+    private static void publishParam(String api) {
+        paramPermission = replace(paramPermission, api, _authzParamMetadata.get(api), PermissionDict::copyParams);
+    }
+
+    private static void publishData(String className) {
+        dataPermission = replace(dataPermission, className, _dataPermMetadata.get(className), PermissionDict::copyList);
+        fieldsData     = replace(fieldsData, className, _fieldMetadata.get(className), v -> copy(v, m -> m));
+    }
+
+    /**
+     * 发布前编译为位集，请求时无需再编译
+     */
+    private static PermRolesMeta compiled(PermRolesMeta meta) {
+        meta.compile();
+        return meta;
+    }
+
+    private static <V, R> Map<String, R> copy(Map<String, V> map,
+                                              java.util.function.Function<V, R> valueCopier) {
+        HashMap<String, R> copy = new HashMap<>(Math.max(16, (int) (map.size() / .75f) + 1));
+        map.forEach((k, v) -> copy.put(k, v == null ? null : valueCopier.apply(v)));
+        return Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * @param snapshot 旧快照
+     * @param key      被修改的key
+     * @param value    工作副本中的新值，为null时删除
+     * @return 只替换了key对应值的新快照
+     */
+    private static <V, R> Map<String, R> replace(Map<String, R> snapshot,
+                                                 String key,
+                                                 V value,
+                                                 java.util.function.Function<V, R> valueCopier) {
+        HashMap<String, R> copy = new HashMap<>(snapshot);
+        if (value == null) {
+            copy.remove(key);
+        } else {
+            copy.put(key, valueCopier.apply(value));
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+
+    private static <T> Set<T> copySet(Set<T> set) {
+        return Collections.unmodifiableSet(new HashSet<>(set));
+    }
+
+    private static <T> List<T> copyList(List<T> list) {
+        return Collections.unmodifiableList(new ArrayList<>(list));
+    }
+
+    /**
+     * ParamMetadata可修改，快照中保存独立的副本
+     */
+    private static Map<String, Map<String, ParamMetadata>> copyParams(Map<String, Map<String, ParamMetadata>> params) {
+        return copy(params, m -> copy(m, p -> ParamMetadata.of(p.getClz(), p.getParamType(),
+                                                                p.getParamMetaList() == null ? null
+                                                                                             : copyList(p.getParamMetaList()))));
+    }
+
+    private static boolean isRead(AuthzModifier authzModifier) {
+        return !AuthzModifier.Target.LOGIN.equals(authzModifier.getTarget())
+                && (authzModifier.getOperate() == AuthzModifier.Operate.GET
+                || authzModifier.getOperate() == AuthzModifier.Operate.READ);
+    }
+
+    /**
+     * @return 由 globalAllow 与 globalDeny 编译而成的ip范围
+     * @since 1.2.14
+     */
+    public static IPRangeMeta getGlobalIPRange() {
+        return PermissionDict._globalIPRange;
+    }
+
     // ----------------------------------------- func ----------------------------------------- //
 
     public static String getControllerBeanName(String typeName) {
@@ -174,15 +282,28 @@ public class PermissionDict {
                                 String method,
                                 String name,
                                 ParamMetadata paramMetadata) {
-        _authzParamMetadata.computeIfAbsent(api, r -> new HashMap<>())
-                .computeIfAbsent(method, r -> new HashMap<>())
-                .computeIfAbsent(name, r -> paramMetadata)
-                .setParamMetaList(paramMetadata.getParamMetaList());
+        lock.lock();
+        try {
+            _authzParamMetadata.computeIfAbsent(api, r -> new HashMap<>())
+                    .computeIfAbsent(method, r -> new HashMap<>())
+                    .computeIfAbsent(name, r -> paramMetadata)
+                    .setParamMetaList(paramMetadata.getParamMetaList());
+            if (published) publishParam(api);
+        } finally {
+            lock.unlock();
+        }
     }
 
     public static void putParam(String api,
                                 String method) {
-        _authzParamMetadata.computeIfAbsent(api, r -> new HashMap<>()).computeIfAbsent(method, r -> new HashMap<>());
+        lock.lock();
+        try {
+            _authzParamMetadata.computeIfAbsent(api, r -> new HashMap<>())
+                    .computeIfAbsent(method, r -> new HashMap<>());
+            if (published) publishParam(api);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Nullable
@@ -334,21 +455,17 @@ public class PermissionDict {
                         return AuthzResult.SUCCESS.data("auth", build).data("hasAuth", !build.non());
                     }
 
+                    // 替换而不是原地修改，已发布的快照中的对象保持不变
                     if (build != null) {
                         _authzMetadata.computeIfAbsent(api, r -> new HashMap<>())
-                                .computeIfAbsent(authzModifier.getMethod(), r -> new PermRolesMeta())
-                                .clear()
-                                .merge(build);
+                                .put(authzModifier.getMethod(), new PermRolesMeta().merge(build));
                     }
 
                     Map<String, PermRolesMeta> metaMap = _authzMetadata.get(api);
                     if (metaMap != null) {
                         PermRolesMeta permRolesMeta = metaMap.get(method);
-                        if (permRolesMeta != null) {
-                            if (build == null) permRolesMeta.clear();
-                            if (permRolesMeta.non()) {
-                                metaMap.remove(method);
-                            }
+                        if (permRolesMeta != null && (build == null || permRolesMeta.non())) {
+                            metaMap.remove(method);
                         }
                         if (metaMap.isEmpty()) _authzMetadata.remove(api);
                     }
@@ -366,9 +483,8 @@ public class PermissionDict {
                         return AuthzResult.SUCCESS.data("auth", null).data("hasAuth", false);
                     }
 
-                    _authzMetadata.get(api).get(method).clear();
-                    if (_authzMetadata.get(api).get(method).non()) {
-                        _authzMetadata.get(api).remove(method);
+                    if (_authzMetadata.get(api).remove(method) == null) {
+                        return AuthzResult.FAIL;
                     }
                     if (_authzMetadata.get(api).isEmpty()) {
                         _authzMetadata.remove(api);
@@ -396,7 +512,17 @@ public class PermissionDict {
         } catch (Exception e) {
             return AuthzResult.FAIL;
         } finally {
-            lock.unlock();
+            try {
+                if (!isRead(authzModifier)) {
+                    if (authzModifier.getController() != null) {
+                        publishController(authzModifier.getController());
+                    } else {
+                        publishApi(api);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
         }
     }
 
@@ -421,8 +547,9 @@ public class PermissionDict {
                                     .setResources(authzModifier.getResources())
                                     .merge(build);
                             if (!meta.non()) {
-                                paramMetadata.setParamMetaList(new ArrayList<>());
-                                paramMetadata.getParamMetaList().add(meta);
+                                List<ParamPermRolesMeta> list = new ArrayList<>();
+                                list.add(meta);
+                                paramMetadata.setParamMetaList(list);
                                 return AuthzResult.SUCCESS.data(meta);
                             } else {
                                 return AuthzResult.FAIL.data();
@@ -436,18 +563,19 @@ public class PermissionDict {
                     ParamPermRolesMeta meta = new ParamPermRolesMeta().merge(build)
                             .setRange(authzModifier.getRange())
                             .setResources(authzModifier.getResources());
+                    // 在副本上修改后整体替换，已发布的快照仍引用旧列表
+                    List<ParamPermRolesMeta> list = new ArrayList<>(paramMetadata.getParamMetaList());
                     if (meta.non()) {
-                        paramMetadata.getParamMetaList().remove(index);
-                        if (paramMetadata.getParamMetaList().isEmpty()) {
-                            paramMetadata.setParamMetaList(null);
-                        }
+                        list.remove(index);
+                        paramMetadata.setParamMetaList(list.isEmpty() ? null : list);
                         return AuthzResult.FAIL.data();
                     } else {
-                        if (paramMetadata.getParamMetaList().size() <= index) {
-                            paramMetadata.getParamMetaList().add(meta);
+                        if (list.size() <= index) {
+                            list.add(meta);
                         } else {
-                            paramMetadata.getParamMetaList().set(index, meta);
+                            list.set(index, meta);
                         }
+                        paramMetadata.setParamMetaList(list);
                     }
                     return AuthzResult.SUCCESS.data(meta);
                 }
@@ -457,8 +585,9 @@ public class PermissionDict {
                     if (paramMetadata.getParamMetaList() == null || paramMetadata.getParamMetaList().size() <= index) {
                         return AuthzResult.SUCCESS;
                     }
-                    paramMetadata.getParamMetaList().remove(index);
-                    if (paramMetadata.getParamMetaList().isEmpty()) paramMetadata.setParamMetaList(null);
+                    List<ParamPermRolesMeta> list = new ArrayList<>(paramMetadata.getParamMetaList());
+                    list.remove(index);
+                    paramMetadata.setParamMetaList(list.isEmpty() ? null : list);
                     return AuthzResult.SUCCESS;
                 }
             }
@@ -467,7 +596,11 @@ public class PermissionDict {
         } catch (Exception e) {
             return AuthzResult.FAIL;
         } finally {
-            lock.unlock();
+            try {
+                if (!isRead(authzModifier)) publishParam(authzModifier.getApi());
+            } finally {
+                lock.unlock();
+            }
         }
     }
 
@@ -504,8 +637,13 @@ public class PermissionDict {
                     case UPDATE:
                         if (authzModifier.getIndex() == null) return AuthzResult.FAIL;
                         if (_dataPermMetadata.get(className) == null) return AuthzResult.FAIL;
-                        DataPermRolesMeta old_data_mata = _dataPermMetadata.get(className)
-                                .get(authzModifier.getIndex());
+                        // 复制一份修改后替换，已发布的快照中的对象保持不变
+                        DataPermRolesMeta origin = _dataPermMetadata.get(className).get(authzModifier.getIndex());
+                        DataPermRolesMeta old_data_mata = new DataPermRolesMeta().setCondition(origin.getCondition())
+                                .setRule(origin.getRule())
+                                .setArgsMap(origin.getArgsMap());
+                        old_data_mata.setRoles(origin.roles);
+                        old_data_mata.setPermissions(origin.permissions);
                         DataPermRolesMeta new_data_mata = null;
 
                         if (authzModifier.getCondition() != null) {
@@ -528,6 +666,7 @@ public class PermissionDict {
                         if (authzModifier.getArgsMap() != null) {
                             old_data_mata.setArgsMap(authzModifier.getArgsMap());
                         }
+                        _dataPermMetadata.get(className).set(authzModifier.getIndex(), old_data_mata);
                         break;
                     case DEL:
                     case DELETE:
@@ -546,7 +685,8 @@ public class PermissionDict {
                     default:
                         return AuthzResult.FAIL;
                 }
-                return dataPermission.get(className);
+                // 返回副本，工作副本只能在锁内修改
+                return copyList(_dataPermMetadata.get(className));
             } else {
                 switch (authzModifier.getOperate()) {
                     case ADD: {
@@ -561,16 +701,23 @@ public class PermissionDict {
                         if (authzModifier.getFieldName() == null) return AuthzResult.FAIL;
                         PermRolesMeta          build     = authzModifier.build();
                         FieldDataPermRolesMeta fieldData = FieldDataPermRolesMeta.of(className, build);
-                        FieldDataPermRolesMeta fd = _fieldMetadata.computeIfAbsent(className, r -> new HashMap<>())
-                                .computeIfAbsent(authzModifier.getFieldName(),
-                                                 r -> new FieldDataPermRolesMeta(className));
+                        Map<String, FieldDataPermRolesMeta> fields = _fieldMetadata.computeIfAbsent(className,
+                                                                                                     r -> new HashMap<>());
+                        FieldDataPermRolesMeta origin = fields.get(authzModifier.getFieldName());
+                        FieldDataPermRolesMeta fd     = new FieldDataPermRolesMeta(className);
+                        if (origin != null) {
+                            fd.setPermissions(origin.getPermissions());
+                            fd.setRoles(origin.getRoles());
+                        }
                         if (fieldData.getPermissions() != null) fd.setPermissions(fieldData.getPermissions());
                         if (fieldData.getRoles() != null) fd.setRoles(fieldData.getRoles());
+                        fields.put(authzModifier.getFieldName(), fd);
                     }
 
                     case READ:
                     case GET: {
-                        return fieldsData.get(authzModifier.getFieldName());
+                        Map<String, FieldDataPermRolesMeta> fields = _fieldMetadata.get(className);
+                        return fields == null ? null : copy(fields, m -> m);
                     }
 
                     case DELETE:
@@ -588,7 +735,11 @@ public class PermissionDict {
         } catch (Exception e) {
             return AuthzResult.FAIL;
         } finally {
-            lock.unlock();
+            try {
+                if (!isRead(authzModifier)) publishData(authzModifier.getClassName());
+            } finally {
+                lock.unlock();
+            }
         }
     }
 
@@ -621,8 +772,14 @@ public class PermissionDict {
             }
         }
 
-        _fieldMetadata.putAll(fieldMetadata);
-        _dataPermMetadata.putAll(map);
+        lock.lock();
+        try {
+            _fieldMetadata.putAll(fieldMetadata);
+            _dataPermMetadata.putAll(map);
+            if (published) publish();
+        } finally {
+            lock.unlock();
+        }
         _argsMetadata.putAll(args);
     }
 
@@ -739,6 +896,7 @@ public class PermissionDict {
             }
             if (ipRangeMeta.getDeny() != null && !ipRangeMeta.getDeny()
                     .isEmpty() || ipRangeMeta.getAllow() != null && !ipRangeMeta.getAllow().isEmpty()) {
+                ipRangeMeta.compile();
                 mtds.forEach(method -> patterns.forEach(
                         patternValue -> _ipRangeMeta.computeIfAbsent(patternValue, r -> new HashMap<>())
                                 .put(method, ipRangeMeta)));
@@ -803,8 +961,18 @@ public class PermissionDict {
 
         _globalAllow.addAll(IPRangeMeta.parse(AuthzAppVersion.properties.getGlobalIpRange().getAllow()));
         _globalDeny.addAll(IPRangeMeta.parse(AuthzAppVersion.properties.getGlobalIpRange().getDeny()));
+        _globalIPRange = new IPRangeMeta().setAllow(new HashSet<>(_globalAllow))
+                .setDeny(new HashSet<>(_globalDeny))
+                .compile();
         _supportNative = AuthzAppVersion.properties.getGlobalIpRange().isSupportNative();
 
+        lock.lock();
+        try {
+            publish();
+        } finally {
+            lock.unlock();
+        }
+
         if (AuthzAppVersion.properties.getCache().isEnableRedis()) {
             Async.run(() -> {
                 List<Set<String>> toBeLoadedRolesKeys = RedisUtils.Obj.get(toBeLoadedRoles.stream()
@@ -180,6 +180,24 @@ public interface Cache {
                  @Nullable E element,
                  long ms);
 
+    /**
+     * 写入后执行afterWrite，双层缓存中在值写入redis之后、发送同步消息之前执行
+     *
+     * @param key        键
+     * @param element    值
+     * @param ms         毫秒，为-1时将继承之前的key的ttl ,  {@link Cache#INFINITE} 为永久存在
+     * @param afterWrite 写入后执行
+     * @param <E>        值的类型
+     * @since 1.2.14
+     */
+    default <E> void set(@NonNull String key,
+                         @Nullable E element,
+                         long ms,
+                         @NonNull Runnable afterWrite) {
+        set(key, element, ms);
+        afterWrite.run();
+    }
+
     /**
      * 批量插入，时间为永久
      *
@@ -199,6 +217,18 @@ public interface Cache {
         set(key, element, ms);
     }
 
+    /**
+     * 批量插入且不广播，开启redis时一次写入
+     *
+     * @param elements 键值
+     * @param ms       毫秒，{@link Cache#INFINITE} 为永久存在
+     * @since 1.2.14
+     */
+    default void setSneaky(@NonNull Map<String, ?> elements,
+                           long ms) {
+        elements.forEach((k, v) -> setSneaky(k, v, ms));
+    }
+
     /**
      * 注意，在这里添加缓存时，如果原key存在过期时间，当再次添加同key的值时，不会清空之前的ttl
      *
@@ -43,6 +43,11 @@ public class L2Cache implements Cache {
         );
         Long cacheMaximumSize = properties.getCache().getCacheMaximumSize();
         if (cacheMaximumSize != null) caffeine.maximumSize(cacheMaximumSize);
+        // 读取时不再访问redis，其他节点的修改通过CacheMessage同步，setSneaky写入的值靠refreshAfterWrite与redis对齐
+        String refreshAfterWriteTime = properties.getCache().getRefreshAfterWriteTime();
+        if (refreshAfterWriteTime != null && TimeUtils.parseTimeValue(refreshAfterWriteTime) > 0) {
+            caffeine.refreshAfterWrite(TimeUtils.parseTimeValue(refreshAfterWriteTime), TimeUnit.MILLISECONDS);
+        }
         cache = caffeine.build(new CacheLoader<String, CacheItem>() {
             @Override
             public @Nullable CacheItem load(@NonNull String key) {
@@ -97,7 +102,9 @@ public class L2Cache implements Cache {
 
     @Override
     public boolean notKey(@NonNull String key) {
-        return cache.get(key) == null;
+        // 批量读取时不存在的key会留下值为null的占位
+        CacheItem item = cache.get(key);
+        return item == null || item.value == null;
     }
 
     @Override
@@ -127,8 +134,30 @@ public class L2Cache implements Cache {
     public <E> void set(@NonNull String key,
                         @Nullable E element,
                         long ttl) {
-        setSneaky(key, element, ttl);
-        Async.run(() -> RedisUtils.publish(CacheMessage.CHANNEL, CacheMessage.write(key)));
+        set(key, element, ttl, () -> {});
+    }
+
+    @Override
+    public <E> void set(@NonNull String key,
+                        @Nullable E element,
+                        long ttl,
+                        @NonNull Runnable afterWrite) {
+        if (ttl < -1 || ttl == 0) return;
+        try {
+            CacheItem item = new CacheItem(ttl, element);
+            // 写入redis之后再发送消息，否则其他节点可能在写入前读到旧值
+            Async.run(() -> {
+                write(key, item, ttl);
+                try {
+                    afterWrite.run();
+                } finally {
+                    RedisUtils.publish(CacheMessage.CHANNEL, CacheMessage.write(key));
+                }
+            });
+            cache.put(key, item);
+        } catch (Exception e) {
+            LogUtils.error(e);
+        }
     }
 
     @Override
@@ -165,23 +194,28 @@ public class L2Cache implements Cache {
         if (ms < -1 || ms == 0) return;
         try {
             CacheItem item = new CacheItem(ms, element);
-            Async.run(() -> {
-                removePatterns(key);
-                if (ms == Cache.INFINITE) {
-                    RedisUtils.Obj.update(key, item);
-                } else {
-                    RedisUtils.Obj.set(key, item, ms);
-                }
-            });
+            Async.run(() -> write(key, item, ms));
             cache.put(key, item);
         } catch (Exception e) {
             LogUtils.error(e);
         }
     }
 
+    @Override
+    public void setSneaky(@NonNull Map<String, ?> elements,
+                          long ms) {
+        if (elements.isEmpty() || ms < -1 || ms == 0) return;
+        HashMap<String, CacheItem> items = new HashMap<>();
+        elements.forEach((k, v) -> items.put(k, new CacheItem(ms, v)));
+        cache.putAll(items);
+        Async.run(() -> {
+            removePatterns(items.keySet());
+            RedisUtils.Obj.set(items, ms);
+        });
+    }
+
     @Override
     public @Nullable Object get(String key) {
-        cache.refresh(key);
         CacheItem item = cache.get(key);
         return item != null ? item.value : null;
     }
@@ -190,10 +224,7 @@ public class L2Cache implements Cache {
     public @NonNull Map<String, Object> get(Set<String> keys) {
         HashMap<String, Object> map = new HashMap<>();
         if (keys.isEmpty()) return map;
-        cache.getAll(keys).forEach((k, v) -> {
-            cache.refresh(k);
-            map.put(k, v.value);
-        });
+        cache.getAll(keys).forEach((k, v) -> map.put(k, v.value));
         return map;
     }
 
@@ -204,7 +235,6 @@ public class L2Cache implements Cache {
         if (keys.isEmpty()) return map;
         Map<String, CacheItem> items = cache.getAll(keys);
         items.forEach((k, v) -> {
-            cache.refresh(k);
             if (v.value == null) {
                 map.put(k, null);
             } else {
@@ -297,6 +327,17 @@ public class L2Cache implements Cache {
         return Collections.unmodifiableMap(cache.asMap());
     }
 
+    private void write(String key,
+                       CacheItem item,
+                       long ms) {
+        removePatterns(key);
+        if (ms == Cache.INFINITE) {
+            RedisUtils.Obj.update(key, item);
+        } else {
+            RedisUtils.Obj.set(key, item, ms);
+        }
+    }
+
     private void removePatterns(String key) {
         List<String> list = KeyMatchUtils.matchPatterns(key, keyPatterns);
         list.forEach(keyPatterns::remove);
@@ -0,0 +1,146 @@
+package cn.omisheep.authz.core.cache.library;
+
+import cn.omisheep.authz.core.auth.PermLibrary;
+import cn.omisheep.authz.core.auth.rpd.PermBits;
+import cn.omisheep.authz.core.cache.Cache;
+import cn.omisheep.authz.core.config.Constants;
+import cn.omisheep.authz.core.helper.BaseHelper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.*;
+
+/**
+ * 角色集合到权限集合的展开结果缓存
+ * <p>
+ * 以排序后的角色集合为键，保存合并后的权限集合、每个角色的权限位集，
+ * 以及计算时各角色在缓存中对应的 {@link Cache.CacheItem}。
+ * 命中时逐个比较这些CacheItem是否仍是缓存中的同一个对象，任一角色的缓存被重新写入、删除、过期或由其他节点同步后都会重新计算，
+ * 因此无需额外的失效通知。角色没有对应缓存项时（如未开启缓存代理）不做缓存，每次都重新计算。
+ * 规则中新增了权限名称时位集的编号范围会变大，此时同样重新计算
+ *
+ * @author zhouxinchen[1269670415@qq.com]
+ * @since 1.2.14
+ */
+@SuppressWarnings("rawtypes")
+public class RolePermissionsMemo extends BaseHelper {
+
+    private static final int MAXIMUM_SIZE = 1024;
+
+    private final PermLibrary permLibrary;
+
+    private final com.github.benmanes.caffeine.cache.Cache<List<String>, Expansion> memo = Caffeine.newBuilder()
+            .maximumSize(MAXIMUM_SIZE)
+            .build();
+
+    public RolePermissionsMemo(PermLibrary permLibrary) {
+        this.permLibrary = permLibrary;
+    }
+
+    /**
+     * @param roles 用户的角色
+     * @return 展开后的权限
+     */
+    public Expansion expand(Collection<String> roles) {
+        if (roles == null || roles.isEmpty()) return Expansion.EMPTY;
+        List<String> key = new ArrayList<>(roles);
+        Collections.sort(key);
+
+        Map<String, Cache.CacheItem> rawMap = cache != null ? cache.asRawMap() : null;
+        Expansion                    cached = memo.getIfPresent(key);
+        if (cached != null && rawMap != null && cached.isValid(key, rawMap)) return cached;
+
+        // 先记录缓存项再计算，计算期间发生的变化会在下次命中时被发现
+        Cache.CacheItem[] sources   = rawMap != null ? sources(key, rawMap) : null;
+        int               indexSize = PermBits.permissions().size();
+
+        HashSet<String> permissions = new HashSet<>();
+        long[][]        roleBits    = new long[key.size()][];
+        long[]          bits        = new long[0];
+        for (int i = 0; i < key.size(); i++) {
+            Collection<String> permissionsByRole = permLibrary.getPermissionsByRole(key.get(i));
+            if (permissionsByRole == null) continue;
+            permissions.addAll(permissionsByRole);
+            roleBits[i] = PermBits.permissions().bits(permissionsByRole);
+            bits        = PermBits.or(bits, roleBits[i]);
+        }
+
+        Expansion expansion = new Expansion(Collections.unmodifiableSet(permissions), roleBits, bits, sources,
+                                            indexSize);
+        if (sources != null) memo.put(key, expansion);
+        return expansion;
+    }
+
+    /**
+     * @return 各角色当前的缓存项，有角色没有缓存项时返回null
+     */
+    private static Cache.CacheItem[] sources(List<String> roles,
+                                             Map<String, Cache.CacheItem> rawMap) {
+        Cache.CacheItem[] sources = new Cache.CacheItem[roles.size()];
+        for (int i = 0; i < roles.size(); i++) {
+            Cache.CacheItem item = rawMap.get(Constants.PERMISSIONS_BY_ROLE_KEY_PREFIX.get() + roles.get(i));
+            if (item == null) return null;
+            sources[i] = item;
+        }
+        return sources;
+    }
+
+    /**
+     * 一组角色展开后的权限
+     */
+    public static final class Expansion {
+
+        private static final Expansion EMPTY = new Expansion(Collections.emptySet(), new long[0][], new long[0],
+                                                             new Cache.CacheItem[0], 0);
+
+        private final Set<String>       permissions;
+        private final long[][]          roleBits;
+        private final long[]            bits;
+        private final Cache.CacheItem[] sources;
+        private final int               indexSize;
+
+        private Expansion(Set<String> permissions,
+                          long[][] roleBits,
+                          long[] bits,
+                          Cache.CacheItem[] sources,
+                          int indexSize) {
+            this.permissions = permissions;
+            this.roleBits    = roleBits;
+            this.bits        = bits;
+            this.sources     = sources;
+            this.indexSize   = indexSize;
+        }
+
+        /**
+         * @return 所有角色的权限合集，不可修改
+         */
+        public Set<String> getPermissions() {
+            return permissions;
+        }
+
+        /**
+         * @return 每个角色的权限位集，角色没有权限时对应元素为null
+         */
+        public long[][] getRoleBits() {
+            return roleBits;
+        }
+
+        /**
+         * @return 所有角色的权限位集合集
+         */
+        public long[] getBits() {
+            return bits;
+        }
+
+        private boolean isValid(List<String> roles,
+                                Map<String, Cache.CacheItem> rawMap) {
+            if (indexSize != PermBits.permissions().size()) return false;
+            for (int i = 0; i < roles.size(); i++) {
+                if (rawMap.get(Constants.PERMISSIONS_BY_ROLE_KEY_PREFIX.get() + roles.get(i)) != sources[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+}
@@ -6,16 +6,23 @@ import cn.omisheep.authz.core.AuthzVersion;
 import cn.omisheep.authz.core.auth.DefaultPermLibrary;
 import cn.omisheep.authz.core.auth.PermLibrary;
 import cn.omisheep.authz.core.auth.deviced.UserDevicesDict;
+import cn.omisheep.authz.core.auth.deviced.UserDevicesDictByCache;
+import cn.omisheep.authz.core.auth.ipf.Blacklist;
+import cn.omisheep.authz.core.auth.ipf.BlacklistSnapshot;
 import cn.omisheep.authz.core.auth.ipf.Httpd;
 import cn.omisheep.authz.core.auth.rpd.PermissionDict;
 import cn.omisheep.authz.core.cache.Cache;
 import cn.omisheep.authz.core.codec.AuthzRSAManager;
 import cn.omisheep.authz.core.msg.Message;
+import cn.omisheep.authz.core.msg.RequestMessageBatcher;
 import cn.omisheep.authz.core.oauth.OpenAuthDict;
 import cn.omisheep.authz.core.oauth.OpenAuthLibrary;
 import cn.omisheep.authz.core.schema.ModelParser;
+import cn.omisheep.authz.core.tk.AccessTokenCache;
 import cn.omisheep.authz.core.util.LogUtils;
+import cn.omisheep.commons.util.Async;
 import cn.omisheep.commons.util.TaskBuilder;
+import cn.omisheep.commons.util.TimeUtils;
 import lombok.SneakyThrows;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
@@ -100,6 +107,48 @@ public class AuCoreInitialization implements ApplicationContextAware {
             TaskBuilder.schedule(Pelcron::GC, properties.getSys().getGcPeriod());
         }
 
+        String requestPoolCleanPeriod = properties.getSys().getRequestPoolCleanPeriod();
+        if (requestPoolCleanPeriod != null && TimeUtils.parseTimeValue(requestPoolCleanPeriod) > 0) {
+            String requestPoolIdleTime = properties.getSys().getRequestPoolIdleTime();
+            long   idleTime            = requestPoolIdleTime != null && TimeUtils.parseTimeValue(requestPoolIdleTime) > 0
+                                         ? TimeUtils.parseTimeValue(requestPoolIdleTime)
+                                         : TimeUtils.parseTimeValue(requestPoolCleanPeriod);
+            TaskBuilder.schedule(() -> Httpd.clean(idleTime), requestPoolCleanPeriod);
+        }
+
+        Blacklist.init(properties.getSys().getBlacklistBloomFilterCapacity(),
+                       properties.getSys().getBlacklistBloomFilterFpp());
+        String blacklistCleanPeriod = properties.getSys().getBlacklistCleanPeriod();
+        if (blacklistCleanPeriod != null && TimeUtils.parseTimeValue(blacklistCleanPeriod) > 0) {
+            TaskBuilder.schedule(Blacklist::clean, blacklistCleanPeriod);
+        }
+
+        String blacklistSnapshotPeriod = properties.getSys().getBlacklistSnapshotPeriod();
+        if (blacklistSnapshotPeriod != null && TimeUtils.parseTimeValue(blacklistSnapshotPeriod) > 0
+                && BlacklistSnapshot.init(properties.getCache().isEnableRedis(),
+                                          properties.getSys().getBlacklistSnapshotFile())) {
+            TaskBuilder.schedule(BlacklistSnapshot::save, blacklistSnapshotPeriod);
+        }
+
+        AccessTokenCache.init(properties.getToken().getParsedCacheMaximumSize(),
+                              properties.getToken().getParsedCacheExpireTime());
+
+        AuthzProperties.CacheConfig cacheConfig = properties.getCache();
+        if (userDevicesDict instanceof UserDevicesDictByCache) {
+            UserDevicesDictByCache userDevicesDictByCache = (UserDevicesDictByCache) userDevicesDict;
+            if (cacheConfig.isEnableRedis()) Async.run(userDevicesDictByCache::initDeviceIndex);
+            String flushPeriod = cacheConfig.getRequestDetailsFlushPeriod();
+            if (flushPeriod == null || TimeUtils.parseTimeValue(flushPeriod) <= 0) {
+                flushPeriod = cacheConfig.getRequestDetailsWriteInterval();
+            }
+            if (flushPeriod != null && TimeUtils.parseTimeValue(flushPeriod) > 0) {
+                TaskBuilder.schedule(userDevicesDictByCache::flushRequests, flushPeriod);
+            }
+        }
+        if (cacheConfig.isEnableRedis() && !cacheConfig.isEnableRedisRateLimit()) {
+            RequestMessageBatcher.init(cacheConfig.getRequestBatchSize(), cacheConfig.getRequestBatchPeriod());
+        }
+
         openAuthLibrary.init();
         AuthzAppVersion.USER_ID_TYPE = ModelParser.getUserIdType(permLibrary);
         try {
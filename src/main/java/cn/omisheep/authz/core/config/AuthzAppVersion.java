@@ -147,6 +147,11 @@ public class AuthzAppVersion {
 
         _values.put("USER_DEVICE_KEY_PREFIX", "authz:" + APP_NAME.get() + ":user:device:");
         _values.put("USER_REQUEST_KEY_PREFIX", "authz:" + APP_NAME.get() + ":user:request:");
+        _values.put("USER_DEVICE_INDEX_KEY_PREFIX", "authz:" + APP_NAME.get() + ":user:devices:");
+        _values.put("USER_DEVICE_INDEX_MIGRATED_KEY", "authz:" + APP_NAME.get() + ":user:devices:migrated");
+        _values.put("USER_ACTIVE_INDEX_KEY", "authz:" + APP_NAME.get() + ":user:active");
+        // 所有桶共用一个hash tag，落在同一个slot中，集群下才能用一次PFCOUNT合并
+        _values.put("USER_ACTIVE_COUNTER_KEY_PREFIX", "authz:{" + APP_NAME.get() + ":user:active:count}:");
 
         _values.put("OAUTH_USER_DEVICE_KEY_PREFIX", "authz:" + APP_NAME.get() + ":oauth:user:device:");
 
@@ -159,8 +164,12 @@ public class AuthzAppVersion {
         _values.put("CLINT_PREFIX", "authz:" + APP_NAME.get() + ":oauth:client:");
         _values.put("AUTHORIZE_CODE_PREFIX", "authz:" + APP_NAME.get() + ":oauth:code:");
 
+        _values.put("RATE_LIMIT_KEY_PREFIX", "authz:" + APP_NAME.get() + ":rateLimit:");
+
         _values.put("DASHBOARD_KEY_PREFIX", "authz:" + APP_NAME.get() + ":dashboard:");
 
+        _values.put("BLACKLIST_SNAPSHOT_KEY", "authz:" + APP_NAME.get() + ":blacklist:snapshot");
+
         return null;
     };
 
@@ -44,9 +44,17 @@ public interface Constants {
             "USER_DEVICE_KEY_PREFIX");
     Supplier<String> OAUTH_USER_DEVICE_KEY_PREFIX = () -> AuthzAppVersion.values.get(
             "OAUTH_USER_DEVICE_KEY_PREFIX");
+    Supplier<String> USER_DEVICE_INDEX_KEY_PREFIX = () -> AuthzAppVersion.values.get(
+            "USER_DEVICE_INDEX_KEY_PREFIX");
+    Supplier<String> USER_DEVICE_INDEX_MIGRATED_KEY = () -> AuthzAppVersion.values.get(
+            "USER_DEVICE_INDEX_MIGRATED_KEY");
 
-    Supplier<String> USER_REQUEST_KEY_PREFIX = () -> AuthzAppVersion.values.get(
+    Supplier<String> USER_REQUEST_KEY_PREFIX        = () -> AuthzAppVersion.values.get(
             "USER_REQUEST_KEY_PREFIX");
+    Supplier<String> USER_ACTIVE_INDEX_KEY          = () -> AuthzAppVersion.values.get(
+            "USER_ACTIVE_INDEX_KEY");
+    Supplier<String> USER_ACTIVE_COUNTER_KEY_PREFIX = () -> AuthzAppVersion.values.get(
+            "USER_ACTIVE_COUNTER_KEY_PREFIX");
 
     Supplier<String> ROLES_BY_USER_KEY_PREFIX       = () -> AuthzAppVersion.values.get(
             "ROLES_BY_USER_KEY_PREFIX");
@@ -58,9 +66,15 @@ public interface Constants {
     Supplier<String> AUTHORIZE_CODE_PREFIX = () -> AuthzAppVersion.values.get(
             "AUTHORIZE_CODE_PREFIX");
 
+    Supplier<String> RATE_LIMIT_KEY_PREFIX = () -> AuthzAppVersion.values.get(
+            "RATE_LIMIT_KEY_PREFIX");
+
     Supplier<String> DASHBOARD_KEY_PREFIX = () -> AuthzAppVersion.values.get(
             "DASHBOARD_KEY_PREFIX");
 
+    Supplier<String> BLACKLIST_SNAPSHOT_KEY = () -> AuthzAppVersion.values.get(
+            "BLACKLIST_SNAPSHOT_KEY");
+
     String USER_REQUEST   = "USER_REQUEST";
     String CONNECT_PREFIX = "authz:connect:";
 
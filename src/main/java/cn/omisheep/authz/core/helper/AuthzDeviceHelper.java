@@ -69,6 +69,28 @@ public class AuthzDeviceHelper extends BaseHelper {
         return getActiveDevices(ms).stream().map(DeviceDetails::getUserId).distinct().collect(Collectors.toList());
     }
 
+    /**
+     * 所有【在线/活跃】用户数量的近似值
+     *
+     * @param time 时间间隔
+     * @return 用户数量的近似值
+     * @since 1.2.14
+     */
+    public static int getApproximateNumberOfActiveUser(@NonNull String time) {
+        return getApproximateNumberOfActiveUser(TimeUtils.parseTimeValue(time));
+    }
+
+    /**
+     * 所有【在线/活跃】用户数量的近似值
+     *
+     * @param ms 时间间隔(ms)
+     * @return 用户数量的近似值
+     * @since 1.2.14
+     */
+    public static int getApproximateNumberOfActiveUser(long ms) {
+        return userDevicesDict.countActiveUsersApproximately(ms);
+    }
+
     /**
      * 判断某个用户是否【在线/活跃】
      *
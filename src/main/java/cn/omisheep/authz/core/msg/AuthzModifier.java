@@ -69,6 +69,7 @@ public class AuthzModifier {
         private long                minInterval;
         private List<String>        associatedPatterns = new ArrayList<>();
         private RateLimit.CheckType checkType;
+        private RateLimit.Algorithm algorithm;
     }
 
     @Data
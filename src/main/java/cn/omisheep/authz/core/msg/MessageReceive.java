@@ -35,6 +35,12 @@ public class MessageReceive {
                 LogUtils.debug("RequestMessage time: {} message: {}", TimeUtils.nowTime(), message);
                 Httpd.receive(message);
             }
+        } else if (oo instanceof RequestBatchMessage) {
+            RequestBatchMessage message = (RequestBatchMessage) oo;
+            if (!RequestBatchMessage.ignore(message)) {
+                LogUtils.debug("RequestBatchMessage time: {} message: {}", TimeUtils.nowTime(), message);
+                Httpd.receive(message);
+            }
         } else if (oo instanceof VersionMessage) {
             VersionMessage message = (VersionMessage) oo;
             if (!VersionMessage.ignore(message)) {
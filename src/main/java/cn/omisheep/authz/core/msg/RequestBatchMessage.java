@@ -0,0 +1,47 @@
+package cn.omisheep.authz.core.msg;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一段时间内合并发送的请求记录，method、api、ip、userId 相同的请求合并为一条，只记录各自的请求时间
+ *
+ * @author zhouxinchen[1269670415@qq.com]
+ * @since 1.2.14
+ */
+@Data
+@Accessors(chain = true)
+public class RequestBatchMessage implements Message {
+
+    private String      id       = Message.uuid;
+    private String      context  = RequestMessage.CHANNEL;
+    private List<Entry> entries  = new ArrayList<>();
+
+    public static boolean ignore(RequestBatchMessage message) {
+        return message == null || Message.uuid.equals(message.getId()) || !message.context.equals(
+                RequestMessage.CHANNEL);
+    }
+
+    @Data
+    @Accessors(chain = true)
+    public static class Entry {
+        private String     method;
+        private String     api;
+        private String     ip;
+        private Object     userId;
+        private List<Long> times = new ArrayList<>();
+
+        public Entry() {
+        }
+
+        public Entry(RequestMessage message) {
+            this.method = message.getMethod();
+            this.api    = message.getApi();
+            this.ip     = message.getIp();
+            this.userId = message.getUserId();
+        }
+    }
+}
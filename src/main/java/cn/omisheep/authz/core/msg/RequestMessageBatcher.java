@@ -0,0 +1,133 @@
+package cn.omisheep.authz.core.msg;
+
+import cn.omisheep.authz.core.config.Constants;
+import cn.omisheep.authz.core.util.LogUtils;
+import cn.omisheep.authz.core.util.RedisUtils;
+import cn.omisheep.commons.util.Async;
+import cn.omisheep.commons.util.TaskBuilder;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 请求记录的同步不再逐条发布，而是先放入缓冲队列，
+ * 每隔 requestBatchPeriod 或积累到 requestBatchSize 条时合并为一条 {@link RequestBatchMessage} 发布。
+ * 队列最多保存 requestBatchSize * {@value #MAX_PENDING_BATCHES} 条，发布阻塞导致队列已满时新的记录会被丢弃并计数
+ *
+ * @author zhouxinchen[1269670415@qq.com]
+ * @since 1.2.14
+ */
+public class RequestMessageBatcher {
+
+    private RequestMessageBatcher() {
+        throw new UnsupportedOperationException();
+    }
+
+    static final int MAX_PENDING_BATCHES = 64;
+
+    private static final    ConcurrentLinkedQueue<RequestMessage> queue      = new ConcurrentLinkedQueue<>();
+    private static final    AtomicInteger                         size       = new AtomicInteger();
+    private static final    AtomicBoolean                         flushing   = new AtomicBoolean();
+    private static final    AtomicLong                            dropped    = new AtomicLong();
+    private static final    AtomicLong                            reported   = new AtomicLong();
+    private static volatile int                                   batchSize  = 1;
+    private static volatile int                                   maxPending = MAX_PENDING_BATCHES;
+    private static          ScheduledFuture<?>                    scheduledFuture;
+
+    /**
+     * 重复调用时取消之前的定时发布
+     *
+     * @param batchSize 每批最多合并的条数，不大于1时逐条发布
+     * @param period    定时发布的周期
+     */
+    public static synchronized void init(int batchSize,
+                                         String period) {
+        cancel();
+        RequestMessageBatcher.batchSize  = batchSize;
+        RequestMessageBatcher.maxPending = Math.max(1, batchSize) * MAX_PENDING_BATCHES;
+        if (batchSize > 1) scheduledFuture = TaskBuilder.schedule(RequestMessageBatcher::flush, period);
+    }
+
+    /**
+     * 取消定时发布，并丢弃还未发布的记录，恢复为逐条发布
+     */
+    static synchronized void shutdown() {
+        cancel();
+        batchSize  = 1;
+        maxPending = MAX_PENDING_BATCHES;
+        while (queue.poll() != null) size.decrementAndGet();
+    }
+
+    private static void cancel() {
+        if (scheduledFuture != null) {
+            scheduledFuture.cancel(false);
+            scheduledFuture = null;
+        }
+    }
+
+    public static void publish(RequestMessage message) {
+        if (batchSize <= 1) {
+            Async.run(() -> RedisUtils.publish(RequestMessage.CHANNEL, message));
+            return;
+        }
+        int pending = size.incrementAndGet();
+        if (pending > maxPending) {
+            size.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        queue.offer(message);
+        if (pending >= batchSize && !flushing.get()) {
+            Async.run(RequestMessageBatcher::flush);
+        }
+    }
+
+    /**
+     * @return 因队列已满而丢弃的请求记录总数
+     */
+    public static long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public static void flush() {
+        if (!flushing.compareAndSet(false, true)) return;
+        try {
+            long total = dropped.get();
+            long last  = reported.getAndSet(total);
+            if (total > last) LogUtils.warn("请求同步队列已满，丢弃了 {} 条请求记录", total - last);
+            RequestBatchMessage batch;
+            while ((batch = drain(batchSize)) != null) {
+                RedisUtils.publish(RequestMessage.CHANNEL, batch);
+            }
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    /**
+     * 取出至多 max 条记录，相同来源的请求合并为一条
+     *
+     * @param max 最多取出的条数
+     * @return 合并后的消息，队列为空时为null
+     */
+    static RequestBatchMessage drain(int max) {
+        LinkedHashMap<String, RequestBatchMessage.Entry> entries = new LinkedHashMap<>();
+        RequestMessage                                   message;
+        for (int i = 0; i < max && (message = queue.poll()) != null; i++) {
+            size.decrementAndGet();
+            String key = message.getMethod() + Constants.BLANK + message.getApi() + Constants.BLANK
+                    + message.getIp() + Constants.BLANK + message.getUserId();
+            RequestMessage m = message;
+            entries.computeIfAbsent(key, k -> new RequestBatchMessage.Entry(m)).getTimes().add(message.getNow());
+        }
+        if (entries.isEmpty()) return null;
+        RequestBatchMessage batch = new RequestBatchMessage();
+        batch.getEntries().addAll(entries.values());
+        return batch;
+    }
+
+}
@@ -3,9 +3,10 @@ package cn.omisheep.authz.core.slot;
 import cn.omisheep.authz.core.ExceptionStatus;
 import cn.omisheep.authz.core.auth.PermLibrary;
 import cn.omisheep.authz.core.auth.ipf.HttpMeta;
+import cn.omisheep.authz.core.auth.rpd.PermBits;
 import cn.omisheep.authz.core.auth.rpd.PermRolesMeta;
 import cn.omisheep.authz.core.auth.rpd.PermissionDict;
-import cn.omisheep.commons.util.CollectionUtils;
+import cn.omisheep.authz.core.cache.library.RolePermissionsMemo;
 import org.springframework.web.method.HandlerMethod;
 
 import java.util.*;
@@ -21,10 +22,10 @@ import static cn.omisheep.authz.core.util.LogUtils.logs;
 @Order(300)
 public class APIPermSlot implements Slot {
 
-    private final PermLibrary permLibrary;
+    private final RolePermissionsMemo rolePermissionsMemo;
 
     public APIPermSlot(PermLibrary permLibrary) {
-        this.permLibrary = permLibrary;
+        this.rolePermissionsMemo = new RolePermissionsMemo(permLibrary);
     }
 
     @Override
@@ -46,37 +47,34 @@ public class APIPermSlot implements Slot {
                           Error error,
                           HttpMeta httpMeta) {
         if (permRolesMeta == null || permRolesMeta.non()) return true;
+        PermRolesMeta.Compiled compiled = permRolesMeta.compile();
 
-        Set<String> roles = null;
-        if (!CollectionUtils.isEmpty(permRolesMeta.getRequireRoles())
-                || !CollectionUtils.isEmpty(permRolesMeta.getExcludeRoles())) {
-            roles = httpMeta.getRoles();
-            if (!CollectionUtils.containsSub(permRolesMeta.getRequireRoles(), roles)
-                    || CollectionUtils.containsSub(permRolesMeta.getExcludeRoles(), roles)) {
+        if (compiled.hasRoles()) {
+            long[] roles = PermBits.roles().bits(httpMeta.getRoles());
+            if (!PermBits.containsSub(compiled.requireRoles, roles)
+                    || PermBits.containsSub(compiled.excludeRoles, roles)) {
                 logs("Forbid : permissions exception", httpMeta, permRolesMeta);
                 error.error(ExceptionStatus.PERM_EXCEPTION);
                 return false;
             }
         }
 
-        if (!CollectionUtils.isEmpty(permRolesMeta.getRequirePermissions())
-                || !CollectionUtils.isEmpty(permRolesMeta.getExcludePermissions())) {
-            HashSet<String> perms = new HashSet<>(); // 用户所拥有的权限
-            for (String role : Optional.ofNullable(httpMeta.getRoles()).orElse(new HashSet<>())) {
-                Collection<String> permissionsByRole = permLibrary.getPermissionsByRole(role);
-                if (permissionsByRole != null) perms.addAll(permissionsByRole);
-                if (CollectionUtils.containsSub(permRolesMeta.getExcludePermissions(), permissionsByRole)) {
+        if (compiled.hasPermissions()) {
+            // 用户所拥有的权限，相同的角色组合只展开一次
+            RolePermissionsMemo.Expansion expansion = rolePermissionsMemo.expand(httpMeta.getRoles());
+            for (long[] bits : expansion.getRoleBits()) {
+                if (PermBits.containsSub(compiled.excludePermissions, bits)) {
                     logs("Forbid : permissions exception", httpMeta, permRolesMeta);
                     error.error(ExceptionStatus.PERM_EXCEPTION);
                     return false;
                 }
             }
-            if (!CollectionUtils.containsSub(permRolesMeta.getRequirePermissions(), perms)) {
+            if (!PermBits.containsSub(compiled.requirePermissions, expansion.getBits())) {
                 logs("Forbid : permissions exception", httpMeta, permRolesMeta);
                 error.error(ExceptionStatus.PERM_EXCEPTION);
                 return false;
             }
-            httpMeta.setPermissions(perms);
+            httpMeta.setPermissions(expansion.getPermissions());
         }
 
         return true;
@@ -17,7 +17,7 @@ public class BlacklistSlot implements Slot {
     public void chain(HttpMeta httpMeta,
                       HandlerMethod handler,
                       Error error) {
-        boolean check = Blacklist.check(httpMeta.getIp(), httpMeta.getToken());
+        boolean check = Blacklist.check(httpMeta.getIp(), httpMeta.getIpAddress(), httpMeta.getToken());
         if (check) return;
         String ip         = httpMeta.getIp();
         String method     = httpMeta.getMethod();
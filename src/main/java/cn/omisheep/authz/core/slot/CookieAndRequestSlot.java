@@ -7,6 +7,7 @@ import cn.omisheep.authz.core.TokenException;
 import cn.omisheep.authz.core.auth.PermLibrary;
 import cn.omisheep.authz.core.auth.deviced.UserDevicesDict;
 import cn.omisheep.authz.core.auth.ipf.HttpMeta;
+import cn.omisheep.authz.core.tk.AccessTokenCache;
 import cn.omisheep.authz.core.tk.TokenHelper;
 import cn.omisheep.authz.core.util.HttpUtils;
 import io.jsonwebtoken.Claims;
@@ -97,7 +98,7 @@ public class CookieAndRequestSlot implements Slot {
         if (tokenValue == null) return;
 
         try {
-            httpMeta.setToken(TokenHelper.parseAccessToken(tokenValue));
+            httpMeta.setToken(AccessTokenCache.parse(tokenValue));
         } catch (Exception e) {
             TokenHelper.clearCookie();
             if (!httpMeta.isRequireLogin()) {
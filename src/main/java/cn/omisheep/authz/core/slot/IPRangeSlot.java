@@ -29,14 +29,12 @@ public class IPRangeSlot implements Slot {
                     return;
                 }
             }
-            if (!isPermittedRequest(httpMeta.getIp(), PermissionDict.getGlobalAllow(),
-                                    PermissionDict.getGlobalDeny())) {
+            if (!PermissionDict.getGlobalIPRange().isPermitted(httpMeta.getIpAddress())) {
                 error.error(ExceptionStatus.PERM_EXCEPTION);
                 return;
             }
             IPRangeMeta ipRangeMeta = PermissionDict.getIPRange().get(httpMeta.getApi()).get(httpMeta.getMethod());
-            if (ipRangeMeta != null && !isPermittedRequest(httpMeta.getIp(), ipRangeMeta.getAllow(),
-                                                           ipRangeMeta.getDeny())) {
+            if (ipRangeMeta != null && !ipRangeMeta.isPermitted(httpMeta.getIpAddress())) {
                 error.error(ExceptionStatus.PERM_EXCEPTION);
                 return;
             }
@@ -49,14 +47,27 @@ public class IPRangeSlot implements Slot {
     public boolean isPermittedRequest(String remoteAddress,
                                       Set<IPRange> allowList,
                                       Set<IPRange> denyList) {
-        boolean ipV6 = remoteAddress.indexOf(':') != -1;
-
-        if (ipV6) {
-            return (denyList.size() == 0 && allowList.size() == 0);
+        if (denyList.size() == 0 && allowList.size() == 0) {
+            return true;
         }
+        return isPermittedRequest(new IPAddress(remoteAddress), allowList, denyList);
+    }
 
-        IPAddress ipAddress = new IPAddress(remoteAddress);
+    /**
+     * @param ipAddress 已解析的ip，为null时不在任何网段内
+     * @since 1.2.14
+     */
+    public boolean isPermittedRequest(IPAddress ipAddress,
+                                      Set<IPRange> allowList,
+                                      Set<IPRange> denyList) {
+        if (denyList.size() == 0 && allowList.size() == 0) {
+            return true;
+        }
+        if (ipAddress == null) {
+            return allowList.size() == 0;
+        }
 
+        // IPv4与IPv6均参与匹配，IPv6地址只会命中IPv6网段
         for (IPRange range : denyList) {
             if (range.isIPAddressInRange(ipAddress)) {
                 return false;
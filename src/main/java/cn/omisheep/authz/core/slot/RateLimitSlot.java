@@ -7,10 +7,10 @@ import cn.omisheep.authz.core.LogLevel;
 import cn.omisheep.authz.core.auth.ipf.HttpMeta;
 import cn.omisheep.authz.core.auth.ipf.Httpd;
 import cn.omisheep.authz.core.auth.ipf.LimitMeta;
+import cn.omisheep.authz.core.auth.ipf.RedisRateLimiter;
 import cn.omisheep.authz.core.auth.ipf.RequestMeta;
 import cn.omisheep.authz.core.msg.RequestMessage;
-import cn.omisheep.authz.core.util.RedisUtils;
-import cn.omisheep.commons.util.Async;
+import cn.omisheep.authz.core.msg.RequestMessageBatcher;
 import org.springframework.web.method.HandlerMethod;
 
 import static cn.omisheep.authz.annotation.RateLimit.CheckType.IP;
@@ -57,9 +57,10 @@ public class RateLimitSlot implements Slot {
             return;
         }
 
-        if (properties.getCache().isEnableRedis()) {
-            RequestMessage requestMessage = new RequestMessage(method, api, ip, userId, now);
-            Async.run(() -> RedisUtils.publish(RequestMessage.CHANNEL, requestMessage));
+        // 集群限流模式下计数和封禁由redis统一维护，不再广播请求
+        boolean distributed = properties.getCache().isEnableRedis() && properties.getCache().isEnableRedisRateLimit();
+        if (properties.getCache().isEnableRedis() && !distributed) {
+            RequestMessageBatcher.publish(new RequestMessage(method, api, ip, userId, now));
         }
 
         RateLimit.CheckType checkType = limitMeta.getCheckType();
@@ -76,7 +77,28 @@ public class RateLimitSlot implements Slot {
 
         RequestMeta requestMeta = checkType.equals(IP) ? ipRequestPool.get(ip) : userIdRequestPool.get(
                 userId.toString());
-        if (requestMeta != null && requestMeta.isBan()) {
+        if (requestMeta == null && distributed) {
+            // 本地只保存从redis同步的封禁状态
+            RequestMeta newMeta = checkType.equals(IP)
+                                  ? RequestMeta.withoutRequest(now, ip, null)
+                                  : RequestMeta.withoutRequest(now, null, userId);
+            requestMeta = checkType.equals(IP)
+                          ? ipRequestPool.putIfAbsent(ip, newMeta)
+                          : userIdRequestPool.putIfAbsent(userId.toString(), newMeta);
+            if (requestMeta == null) requestMeta = newMeta;
+        } else if (requestMeta == null) {
+            // 并发的首次请求只有一个能放入，其余的按普通请求计数
+            requestMeta = checkType.equals(IP)
+                          ? ipRequestPool.putIfAbsent(ip, new RequestMeta(now, ip, null, limitMeta))
+                          : userIdRequestPool.putIfAbsent(userId.toString(), new RequestMeta(now, null, userId, limitMeta));
+            if (requestMeta == null) {
+                httpMeta.log(LogLevel.INFO,
+                             "「普通访问(首次)」\t method: [{}], api: [{}] , path: [{}] ,  ip : [{}] , clientId : [{}] , userId : [{}] , deviceType: [{}] , deviceId: [{}] ",
+                             method, api, path, ip, clientId, userId, deviceType, deviceId);
+                return;
+            }
+        }
+        if (requestMeta.isBan()) {
             if (!requestMeta.enableRelive(now)) {
                 httpMeta.log(LogLevel.WARN,
                              "「请求频繁、{}封锁(拒绝)」\t method: [{}], api: [{}] , path: [{}] , 距上次访问: [{}] , ip : [{}] , clientId : [{}] , userId : [{}] , deviceType: [{}] , deviceId: [{}] ",
@@ -93,32 +115,45 @@ public class RateLimitSlot implements Slot {
                 Httpd.relive(requestMeta, limitMeta, method, api);
             }
         }
-        if (requestMeta == null) {
-            if (checkType.equals(IP)) {
-                ipRequestPool.put(ip, new RequestMeta(now, ip, null));
-            } else {
-                userIdRequestPool.put(userId.toString(), new RequestMeta(now, null, userId));
-            }
+        if (request(distributed, requestMeta, now, limitMeta, method, api)) {
             httpMeta.log(LogLevel.INFO,
-                         "「普通访问(首次)」\t method: [{}], api: [{}] , path: [{}] ,  ip : [{}] , clientId : [{}] , userId : [{}] , deviceType: [{}] , deviceId: [{}] ",
-                         method, api, path, ip, clientId, userId, deviceType, deviceId);
+                         "「普通访问(正常)」\t method: [{}], api: [{}] , path: [{}] , 距上次访问: [{}] , ip : [{}] , clientId : [{}] , userId : [{}] , deviceType: [{}] , deviceId: [{}] ",
+                         method, api, path, requestMeta.sinceLastTime(), ip, clientId, userId, deviceType,
+                         deviceId);
         } else {
-            if (requestMeta.request(now, limitMeta.getMaxRequests(), limitMeta.getWindow(),
-                                    limitMeta.getMinInterval())) {
-                httpMeta.log(LogLevel.INFO,
-                             "「普通访问(正常)」\t method: [{}], api: [{}] , path: [{}] , 距上次访问: [{}] , ip : [{}] , clientId : [{}] , userId : [{}] , deviceType: [{}] , deviceId: [{}] ",
-                             method, api, path, requestMeta.sinceLastTime(), ip, clientId, userId, deviceType,
-                             deviceId);
-            } else {
-                Httpd.forbid(now, requestMeta, limitMeta, method, api);
-                httpMeta.log(LogLevel.WARN,
-                             "「请求频繁、{}封锁(封禁)」\t method: [{}], api: [{}] , path: [{}] , 距上次访问: [{}] , ip : [{}] , clientId : [{}] , userId : [{}] , deviceType: [{}] , deviceId: [{}] ",
-                             checkType, method, api, path, requestMeta.sinceLastTime(), ip, clientId, userId,
-                             deviceType, deviceId);
-                error.error(ExceptionStatus.REQUEST_REPEAT);
-            }
+            httpMeta.log(LogLevel.WARN,
+                         "「请求频繁、{}封锁(封禁)」\t method: [{}], api: [{}] , path: [{}] , 距上次访问: [{}] , ip : [{}] , clientId : [{}] , userId : [{}] , deviceType: [{}] , deviceId: [{}] ",
+                         checkType, method, api, path, requestMeta.sinceLastTime(), ip, clientId, userId,
+                         deviceType, deviceId);
+            error.error(ExceptionStatus.REQUEST_REPEAT);
         }
 
     }
 
+    /**
+     * 访问失败时封禁。集群限流模式下计数和封禁都由redis维护，本地只同步redis给出的封禁状态
+     */
+    private boolean request(boolean distributed,
+                            RequestMeta requestMeta,
+                            long now,
+                            LimitMeta limitMeta,
+                            String method,
+                            String api) {
+        if (distributed) {
+            String target = limitMeta.getCheckType().equals(IP)
+                            ? requestMeta.getIp()
+                            : String.valueOf(requestMeta.getUserId());
+            Long result = RedisRateLimiter.request(method, api, target, limitMeta);
+            if (result != null) {
+                requestMeta.setLastRequestTime(now);
+                if (result < 0) Httpd.forbid(now, requestMeta, limitMeta, method, api, now - result);
+                return result == RedisRateLimiter.ALLOWED;
+            }
+            // redis不可用时退回本地限流
+        }
+        if (requestMeta.request(now, limitMeta)) return true;
+        Httpd.forbid(now, requestMeta, limitMeta, method, api);
+        return false;
+    }
+
 }
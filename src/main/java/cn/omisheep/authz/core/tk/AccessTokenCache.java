@@ -0,0 +1,118 @@
+package cn.omisheep.authz.core.tk;
+
+import cn.omisheep.authz.core.TokenException;
+import cn.omisheep.commons.util.TimeUtils;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 已验证的accessToken缓存，key为token字符串。同一个token反复请求时省去验签、解压和反序列化
+ * <p>
+ * 存活时间不超过 maxTtl 且不超过token本身的过期时间。缓存只代替解析，登录状态仍由后续的检查负责。
+ * 同时维护登录标识(tid)到token字符串的索引，退出登录时按tid直接移除，不需要遍历整个缓存
+ *
+ * @author zhouxinchen[1269670415@qq.com]
+ * @since 1.2.14
+ */
+public class AccessTokenCache {
+
+    private AccessTokenCache() {
+        throw new UnsupportedOperationException();
+    }
+
+    private static volatile Cache<String, AccessToken>           cache;
+    private static final    ConcurrentHashMap<String, Set<String>> index = new ConcurrentHashMap<>();
+
+    /**
+     * @param maximumSize 最大缓存数，不大于0时关闭
+     * @param maxTtl      最长存活时间，单位 ms|s|m|h|d
+     */
+    public static void init(long maximumSize,
+                            String maxTtl) {
+        index.clear();
+        if (maximumSize <= 0) {
+            cache = null;
+            return;
+        }
+        long ttl = TimeUnit.MILLISECONDS.toNanos(TimeUtils.parseTimeValue(maxTtl));
+        cache = Caffeine.newBuilder().maximumSize(maximumSize).executor(Runnable::run).removalListener(
+                (String key, AccessToken value, RemovalCause cause) -> unindex(key, value)
+        ).expireAfter(new Expiry<String, AccessToken>() {
+            @Override
+            public long expireAfterCreate(@NonNull String key,
+                                          @NonNull AccessToken value,
+                                          long currentTime) {
+                long remaining = TimeUnit.MILLISECONDS.toNanos(value.getExpiresAt() - TimeUtils.nowTime());
+                return Math.max(0, Math.min(ttl, remaining));
+            }
+
+            @Override
+            public long expireAfterUpdate(@NonNull String key,
+                                          @NonNull AccessToken value,
+                                          long currentTime,
+                                          long currentDuration) {
+                return expireAfterCreate(key, value, currentTime);
+            }
+
+            @Override
+            public long expireAfterRead(@NonNull String key,
+                                        @NonNull AccessToken value,
+                                        long currentTime,
+                                        long currentDuration) {
+                return currentDuration;
+            }
+        }).build();
+    }
+
+    /**
+     * 优先从缓存中获取，未命中时解析并放入缓存，解析失败的token不缓存
+     *
+     * @param accessToken accessToken
+     * @return AccessToken
+     * @throws TokenException e
+     */
+    public static AccessToken parse(String accessToken) throws TokenException {
+        Cache<String, AccessToken> _cache = cache;
+        if (_cache == null || accessToken == null) return TokenHelper.parseAccessToken(accessToken);
+        AccessToken token = _cache.getIfPresent(accessToken);
+        if (token != null) return token;
+        token = TokenHelper.parseAccessToken(accessToken);
+        if (token.getId() != null) {
+            index.computeIfAbsent(token.getId(), k -> ConcurrentHashMap.newKeySet()).add(accessToken);
+        }
+        _cache.put(accessToken, token);
+        return token;
+    }
+
+    private static void unindex(String key,
+                                AccessToken value) {
+        if (key == null || value == null || value.getId() == null) return;
+        Cache<String, AccessToken> _cache = cache;
+        // 同一个token被移除后又重新放入时保留索引
+        if (_cache != null && _cache.asMap().containsKey(key)) return;
+        index.computeIfPresent(value.getId(), (k, v) -> {
+            v.remove(key);
+            return v.isEmpty() ? null : v;
+        });
+    }
+
+    /**
+     * 移除登录标识为tid的缓存
+     *
+     * @param tid 登录标识
+     */
+    public static void invalidate(String tid) {
+        Cache<String, AccessToken> _cache = cache;
+        if (_cache == null || tid == null) return;
+        Set<String> keys = index.remove(tid);
+        if (keys != null) _cache.invalidateAll(keys);
+    }
+
+}
@@ -51,6 +51,11 @@ public class TokenHelper extends BaseHelper {
     private static final CompressionAlgorithm   codec = GZIP;
     private static final int                tokenIdBits;
 
+    /**
+     * JwtParser是线程安全的，key在启动后不会改变，只需构建一次
+     */
+    private static final JwtParser jwtParser;
+
 
     private TokenHelper() {
         throw new UnsupportedOperationException();
@@ -74,6 +79,10 @@ public class TokenHelper extends BaseHelper {
             alg       = HS256;
         }
 
+        JwtParserBuilder jwtParserBuilder = Jwts.parser();
+        if (secretKey != null) jwtParserBuilder.verifyWith(secretKey);
+        jwtParser = jwtParserBuilder.build();
+
         cookieName  = properties.getToken().getCookieName();
         accessTime  = TimeUtils.parseTimeValue(token.getAccessTime());
         refreshTime = TimeUtils.parseTimeValue(token.getRefreshTime());
@@ -299,9 +308,7 @@ public class TokenHelper extends BaseHelper {
 
     private static Claims parseToken(String val) {
         if (val == null || val.equals("")) return null;
-        JwtParserBuilder jwtParserBuilder = Jwts.parser();
-        if (hasKey()) jwtParserBuilder.verifyWith(secretKey);
-        return jwtParserBuilder.build().parseSignedClaims(val).getPayload();
+        return jwtParser.parseSignedClaims(val).getPayload();
     }
 
     /**
@@ -14,11 +14,17 @@ import org.springframework.data.redis.connection.jedis.JedisClusterConnection;
 import org.springframework.data.redis.connection.jedis.JedisConnection;
 import org.springframework.data.redis.connection.lettuce.LettuceClusterConnection;
 import org.springframework.data.redis.connection.lettuce.LettuceConnection;
+import org.springframework.data.redis.connection.zset.Tuple;
 import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
@@ -116,6 +122,32 @@ public class RedisUtils {
         }
     }
 
+    /**
+     * 通过pipeline批量读取剩余存活时间
+     *
+     * @param keys keys
+     * @return key及其剩余存活时间（毫秒），-1为不过期，已经不存在或读取失败的key不包含在内
+     * @since 1.2.14
+     */
+    public static Map<String, Long> pTtl(Collection<String> keys) {
+        HashMap<String, Long> map = new HashMap<>();
+        if (keys == null || keys.isEmpty()) return map;
+        try {
+            ArrayList<String> list = new ArrayList<>(keys);
+            List<Object> ttls = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String key : list) connection.keyCommands().pTtl(bytes(key));
+                return null;
+            });
+            for (int i = 0; i < list.size() && i < ttls.size(); i++) {
+                Object ttl = ttls.get(i);
+                if (ttl instanceof Long && (Long) ttl != -2) map.put(list.get(i), (Long) ttl);
+            }
+        } catch (Exception e) {
+            // skip
+        }
+        return map;
+    }
+
     public static boolean hasKey(String key) {
         try {
             Boolean bool = redisTemplate.hasKey(key);
@@ -135,6 +167,27 @@ public class RedisUtils {
         }
     }
 
+    /**
+     * 执行lua脚本，参数统一按字符串序列化，便于脚本中使用 tonumber
+     *
+     * @param script 脚本
+     * @param keys   KEYS
+     * @param args   ARGV
+     * @return 脚本返回的整数，redis不可用时为null
+     * @since 1.2.14
+     */
+    public static Long execute(RedisScript<Long> script,
+                               List<String> keys,
+                               Object... args) {
+        try {
+            Object[] argv = new Object[args.length];
+            for (int i = 0; i < args.length; i++) argv[i] = String.valueOf(args[i]);
+            return redisTemplate.execute(script, RedisSerializer.string(), LONG_SERIALIZER, keys, argv);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     // ================================ redisTemplate ================================ //
 
     public static class Obj {
@@ -165,6 +218,33 @@ public class RedisUtils {
             }
         }
 
+        /**
+         * 通过pipeline批量写入并设置过期时间
+         *
+         * @param map 键值
+         * @param ms  毫秒，不大于0时不过期
+         * @since 1.2.14
+         */
+        public static void set(Map<String, ?> map,
+                               long ms) {
+            if (map == null || map.isEmpty()) return;
+            if (ms <= 0) {
+                set(map);
+                return;
+            }
+            try {
+                RedisSerializer keySerializer   = redisTemplate.getKeySerializer();
+                RedisSerializer valueSerializer = redisTemplate.getValueSerializer();
+                redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    map.forEach((k, v) -> connection.pSetEx(keySerializer.serialize(k), ms,
+                                                            valueSerializer.serialize(v)));
+                    return null;
+                });
+            } catch (Exception e) {
+                // skip
+            }
+        }
+
         public static Object get(String key) {
             try {
                 return redisTemplate.opsForValue().get(key);
@@ -245,6 +325,26 @@ public class RedisUtils {
 
         }
 
+        /**
+         * 逐个key判断是否存在，每次只访问一个key，在集群中不会跨slot
+         *
+         * @param keys keys
+         * @return 确认不存在的key，出错的key视为存在
+         * @since 1.2.14
+         */
+        public static Set<String> absent(Collection<String> keys) {
+            HashSet<String> absent = new HashSet<>();
+            if (keys == null) return absent;
+            for (String key : keys) {
+                try {
+                    if (Boolean.FALSE.equals(redisTemplate.hasKey(key))) absent.add(key);
+                } catch (Exception e) {
+                    // skip
+                }
+            }
+            return absent;
+        }
+
         public static void update(String key,
                                   Object value) {
             try {
@@ -256,8 +356,251 @@ public class RedisUtils {
 
     }
 
+    /**
+     * 字符串集合，成员不经过json序列化，直接按字符串保存
+     *
+     * @since 1.2.14
+     */
+    public static class Sets {
+
+        /**
+         * KEYS[1]: key
+         * ARGV: ms, members...
+         * 添加成员，并把过期时间延长到不小于ms，ms为-1时不过期
+         */
+        private static final RedisScript<Long> ADD = new DefaultRedisScript<>(
+                "local unpack = unpack or table.unpack\n" +
+                        "local existed = redis.call('EXISTS', KEYS[1])\n" +
+                        "redis.call('SADD', KEYS[1], unpack(ARGV, 2))\n" +
+                        "local ms = tonumber(ARGV[1])\n" +
+                        "if ms < 0 then\n" +
+                        "  redis.call('PERSIST', KEYS[1])\n" +
+                        "else\n" +
+                        "  local pttl = redis.call('PTTL', KEYS[1])\n" +
+                        "  if existed == 0 or (pttl >= 0 and pttl < ms) then redis.call('PEXPIRE', KEYS[1], ms) end\n" +
+                        "end\n" +
+                        "return 1", Long.class);
+
+        public static void add(String key,
+                               long ms,
+                               Collection<String> members) {
+            if (members == null || members.isEmpty()) return;
+            Object[] args = new Object[members.size() + 1];
+            args[0] = ms;
+            int i = 1;
+            for (String member : members) args[i++] = member;
+            execute(ADD, Collections.singletonList(key), args);
+        }
+
+        public static void remove(String key,
+                                  Collection<String> members) {
+            if (members == null || members.isEmpty()) return;
+            try {
+                byte[][] values = members.stream().map(RedisUtils::bytes).toArray(byte[][]::new);
+                redisTemplate.execute((RedisCallback<Long>) connection -> connection.sRem(bytes(key), values));
+            } catch (Exception e) {
+                // skip
+            }
+        }
+
+        public static Set<String> members(String key) {
+            try {
+                Set<byte[]> members = redisTemplate.execute(
+                        (RedisCallback<Set<byte[]>>) connection -> connection.sMembers(bytes(key)));
+                if (members == null) return new HashSet<>();
+                HashSet<String> set = new HashSet<>();
+                for (byte[] member : members) set.add(new String(member, StandardCharsets.UTF_8));
+                return set;
+            } catch (Exception e) {
+                return new HashSet<>();
+            }
+        }
+    }
+
+    /**
+     * 哈希表，field按字符串保存，value经过json序列化
+     *
+     * @since 1.2.14
+     */
+    public static class Hashes {
+
+        public static void put(String key,
+                               String field,
+                               Object value) {
+            try {
+                redisTemplate.opsForHash().put(key, field, value);
+            } catch (Exception e) {
+                // skip
+            }
+        }
+
+        public static void delete(String key,
+                                  Collection<String> fields) {
+            if (fields == null || fields.isEmpty()) return;
+            try {
+                redisTemplate.opsForHash().delete(key, fields.toArray());
+            } catch (Exception e) {
+                // skip
+            }
+        }
+
+        public static Map<String, Object> entries(String key) {
+            try {
+                Map<Object, Object> entries = redisTemplate.opsForHash().entries(key);
+                HashMap<String, Object> map = new HashMap<>();
+                entries.forEach((k, v) -> map.put(String.valueOf(k), v));
+                return map;
+            } catch (Exception e) {
+                return new HashMap<>();
+            }
+        }
+    }
+
+    public static class ZSets {
+
+        private static final int BATCH_SIZE = 1000;
+
+        /**
+         * KEYS[1]: key
+         * ARGV: min, score, member, score, member...
+         * 添加成员，并删除分数小于min的成员。已有成员的分数只增不减，与本地索引保持一致，
+         * 避免较晚写入的旧分数覆盖其他节点写入的新分数（不依赖redis 6.2的ZADD GT）
+         */
+        private static final RedisScript<Long> ADD = new DefaultRedisScript<>(
+                "for i = 2, #ARGV, 2 do\n" +
+                        "  local score = redis.call('ZSCORE', KEYS[1], ARGV[i + 1])\n" +
+                        "  if not score or tonumber(score) < tonumber(ARGV[i]) then\n" +
+                        "    redis.call('ZADD', KEYS[1], ARGV[i], ARGV[i + 1])\n" +
+                        "  end\n" +
+                        "end\n" +
+                        "redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', '(' .. ARGV[1])\n" +
+                        "return 1", Long.class);
+
+        /**
+         * @param key    key
+         * @param scores 成员及其分数
+         * @param min    分数小于min的成员会被删除
+         */
+        public static void add(String key,
+                               Map<String, Long> scores,
+                               long min) {
+            if (scores == null || scores.isEmpty()) return;
+            ArrayList<Object> args = new ArrayList<>();
+            for (Map.Entry<String, Long> entry : scores.entrySet()) {
+                if (args.isEmpty()) args.add(min);
+                args.add(entry.getValue());
+                args.add(entry.getKey());
+                if (args.size() > BATCH_SIZE * 2) {
+                    execute(ADD, Collections.singletonList(key), args.toArray());
+                    args.clear();
+                }
+            }
+            if (!args.isEmpty()) execute(ADD, Collections.singletonList(key), args.toArray());
+        }
+
+        /**
+         * @param key key
+         * @param min 最小分数（包含）
+         * @return 分数不小于min的成员及其分数
+         */
+        public static Map<String, Long> rangeByScoreWithScores(String key,
+                                                               long min) {
+            try {
+                Set<Tuple> tuples = redisTemplate.execute(
+                        (RedisCallback<Set<Tuple>>) connection -> connection.zRangeByScoreWithScores(
+                                bytes(key), min, Double.POSITIVE_INFINITY));
+                if (tuples == null) return new HashMap<>();
+                HashMap<String, Long> map = new HashMap<>();
+                for (Tuple tuple : tuples) {
+                    map.put(new String(tuple.getValue(), StandardCharsets.UTF_8), tuple.getScore().longValue());
+                }
+                return map;
+            } catch (Exception e) {
+                return new HashMap<>();
+            }
+        }
+
+        /**
+         * @param key     key
+         * @param members 成员
+         * @return 存在的成员及其分数
+         */
+        public static Map<String, Long> scores(String key,
+                                               Collection<String> members) {
+            HashMap<String, Long> map = new HashMap<>();
+            if (members == null || members.isEmpty()) return map;
+            try {
+                List<String> list = new ArrayList<>(members);
+                byte[][]     raw  = new byte[list.size()][];
+                for (int i = 0; i < raw.length; i++) raw[i] = bytes(list.get(i));
+                List<Double> scores = redisTemplate.execute(
+                        (RedisCallback<List<Double>>) connection -> connection.zMScore(bytes(key), raw));
+                if (scores == null) return map;
+                for (int i = 0; i < scores.size(); i++) {
+                    Double score = scores.get(i);
+                    if (score != null) map.put(list.get(i), score.longValue());
+                }
+                return map;
+            } catch (Exception e) {
+                return map;
+            }
+        }
+    }
+
+    public static class HyperLogLogs {
+
+        private static final int BATCH_SIZE = 1000;
+
+        /**
+         * KEYS[1]: key
+         * ARGV: ms, members...
+         * 添加成员，并把过期时间设置为ms
+         */
+        private static final RedisScript<Long> ADD = new DefaultRedisScript<>(
+                "local unpack = unpack or table.unpack\n" +
+                        "redis.call('PFADD', KEYS[1], unpack(ARGV, 2))\n" +
+                        "redis.call('PEXPIRE', KEYS[1], ARGV[1])\n" +
+                        "return 1", Long.class);
+
+        public static void add(String key,
+                               long ms,
+                               Collection<String> members) {
+            if (members == null || members.isEmpty()) return;
+            ArrayList<Object> args = new ArrayList<>();
+            for (String member : members) {
+                if (args.isEmpty()) args.add(ms);
+                args.add(member);
+                if (args.size() > BATCH_SIZE) {
+                    execute(ADD, Collections.singletonList(key), args.toArray());
+                    args.clear();
+                }
+            }
+            if (!args.isEmpty()) execute(ADD, Collections.singletonList(key), args.toArray());
+        }
+
+        /**
+         * @param keys keys
+         * @return 所有key合并后的基数估计
+         */
+        public static long count(Collection<String> keys) {
+            if (keys == null || keys.isEmpty()) return 0;
+            try {
+                byte[][] values = keys.stream().map(RedisUtils::bytes).toArray(byte[][]::new);
+                Long count = redisTemplate.execute((RedisCallback<Long>) connection -> connection.pfCount(values));
+                return count == null ? 0 : count;
+            } catch (Exception e) {
+                return 0;
+            }
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
     private static final RedisTemplate<String, Object> redisTemplate;
     private static final int                           SCAN_COUNT;
+    private static final RedisSerializer<Long>         LONG_SERIALIZER = new GenericToStringSerializer<>(Long.class);
 
     static {
         redisTemplate = AuthzContext.getBean("authzRedisTemplate", RedisTemplate.class);
@@ -276,9 +276,8 @@ public class SupportServlet extends HttpServlet {
     }
 
     private boolean isPermittedRequest(String remoteAddress) {
-        boolean ipV6 = remoteAddress != null && remoteAddress.indexOf(':') != -1;
-        if (ipV6) {
-            return "0:0:0:0:0:0:0:1".equals(remoteAddress) || (denyList.size() == 0 && allowList.size() == 0);
+        if ("0:0:0:0:0:0:0:1".equals(remoteAddress) || (denyList.size() == 0 && allowList.size() == 0)) {
+            return true;
         }
         IPAddress ipAddress = new IPAddress(remoteAddress);
         for (IPRange range : denyList) {
@@ -38,9 +38,9 @@ public class DeviceApiSupport implements ApiSupport {
         }
     }
 
-    @Get(value = "/active-users-count", desc = "当前在线用户数量")
+    @Get(value = "/active-users-count", desc = "当前在线用户数量（近似值）")
     public ResponseResult<Integer> activeUsersCount(@Param("time") String time) {
-        return AuthzResult.SUCCESS.data(AuHelper.getNumberOfActiveUser(time));
+        return AuthzResult.SUCCESS.data(AuHelper.getApproximateNumberOfActiveUser(time));
     }
 
     @Get(value = "/active-users", desc = "当前所有在线用户的详细设备信息")
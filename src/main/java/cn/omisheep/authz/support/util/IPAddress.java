@@ -2,8 +2,6 @@ package cn.omisheep.authz.support.util;
 
 import cn.omisheep.authz.core.util.LogUtils;
 
-import java.util.NoSuchElementException;
-
 /**
  * @author zhouxinchen[1269670415@qq.com]
  * @since 1.2.0
@@ -11,13 +9,21 @@ import java.util.NoSuchElementException;
 public class IPAddress implements Cloneable {
 
     /** IP address */
-    protected int    ipAddress = 0;
-    protected String ipAddressStr;
+    protected int     ipAddress = 0;
+    protected String  ipAddressStr;
+    /** IPv6 address, the high and low 64 bits */
+    protected boolean ipv6;
+    protected long    high;
+    protected long    low;
 
     public IPAddress(String ipAddressStr) {
         try {
             this.ipAddressStr = ipAddressStr;
-            ipAddress         = parseIPAddress(ipAddressStr);
+            if (ipAddressStr != null && ipAddressStr.indexOf(':') != -1) {
+                parseIPv6Address(ipAddressStr);
+            } else {
+                ipAddress = parseIPAddress(ipAddressStr);
+            }
         } catch (Exception e) {
             LogUtils.error(e);
         }
@@ -27,6 +33,41 @@ public class IPAddress implements Cloneable {
         ipAddress = address;
     }
 
+    /**
+     * Parse an IPv4 or IPv6 address without logging invalid input.
+     *
+     * @param ipAddressStr The IP address.
+     * @return The parsed IP address, <code>null</code> if it is invalid.
+     * @since 1.2.14
+     */
+    public static IPAddress parse(String ipAddressStr) {
+        if (ipAddressStr == null || ipAddressStr.isEmpty()) return null;
+        IPAddress ipAddress = new IPAddress(0);
+        try {
+            if (ipAddressStr.indexOf(':') != -1) {
+                ipAddress.parseIPv6Address(ipAddressStr);
+            } else {
+                ipAddress.parseIPAddress(ipAddressStr);
+            }
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        ipAddress.ipAddressStr = ipAddressStr;
+        return ipAddress;
+    }
+
+    /**
+     * @param high the high 64 bits of an IPv6 address
+     * @param low  the low 64 bits of an IPv6 address
+     * @since 1.2.14
+     */
+    public IPAddress(long high,
+                     long low) {
+        this.ipv6 = true;
+        this.high = high;
+        this.low  = low;
+    }
+
     // -------------------------------------------------------------------------
 
     /**
@@ -40,6 +81,48 @@ public class IPAddress implements Cloneable {
 
     // -------------------------------------------------------------------------
 
+    /**
+     * Return the 32 bits integer value of the IP address in network byte order, the first number of the
+     * decimal-dotted notation being the most significant byte.
+     *
+     * @return The IP address as an integer.
+     * @since 1.2.14
+     */
+    public final int intValue() {
+        return Integer.reverseBytes(ipAddress);
+    }
+
+    // -------------------------------------------------------------------------
+
+    /**
+     * Check if the IP address is an IPv6 address. IPv4-mapped IPv6 addresses (::ffff:xxx.xxx.xxx.xxx) are stored as
+     * IPv4 addresses.
+     *
+     * @return Return <code>true</code> if the encapsulated IP address is an IPv6 address.
+     * @since 1.2.14
+     */
+    public final boolean isIPv6() {
+        return ipv6;
+    }
+
+    /**
+     * @return The high 64 bits of the IPv6 address.
+     * @since 1.2.14
+     */
+    public final long getHigh() {
+        return high;
+    }
+
+    /**
+     * @return The low 64 bits of the IPv6 address.
+     * @since 1.2.14
+     */
+    public final long getLow() {
+        return low;
+    }
+
+    // -------------------------------------------------------------------------
+
     /**
      * Return the string representation of the IP Address following the common decimal-dotted notation xxx.xxx.xxx.xxx.
      *
@@ -49,6 +132,15 @@ public class IPAddress implements Cloneable {
         StringBuilder result = new StringBuilder();
         int           temp;
 
+        if (ipv6) {
+            for (int i = 0; i < 8; i++) {
+                if (i > 0) result.append(':');
+                long word = i < 4 ? high : low;
+                result.append(Long.toHexString((word >>> (48 - (i % 4) * 16)) & 0xFFFF));
+            }
+            return result.toString();
+        }
+
         temp = ipAddress & 0x000000FF;
         result.append(temp);
         result.append(".");
@@ -76,7 +168,7 @@ public class IPAddress implements Cloneable {
      * returne <code>false</code>.
      */
     public final boolean isClassA() {
-        return (ipAddress & 0x00000001) == 0;
+        return !ipv6 && (ipAddress & 0x00000001) == 0;
     }
 
     // -------------------------------------------------------------------------
@@ -88,7 +180,7 @@ public class IPAddress implements Cloneable {
      * returne <code>false</code>.
      */
     public final boolean isClassB() {
-        return (ipAddress & 0x00000003) == 1;
+        return !ipv6 && (ipAddress & 0x00000003) == 1;
     }
 
     // -------------------------------------------------------------------------
@@ -100,7 +192,7 @@ public class IPAddress implements Cloneable {
      * returne <code>false</code>.
      */
     public final boolean isClassC() {
-        return (ipAddress & 0x00000007) == 3;
+        return !ipv6 && (ipAddress & 0x00000007) == 3;
     }
 
     // -------------------------------------------------------------------------
@@ -112,67 +204,143 @@ public class IPAddress implements Cloneable {
      * @return Return the 32 bits integer representation of the IP address.
      */
     final int parseIPAddress(String ipAddressStr) {
-        int result = 0;
-
         if (ipAddressStr == null) {
             throw new IllegalArgumentException();
         }
+        long result = parseIPv4(ipAddressStr, 0, ipAddressStr.length());
+        if (result == -1) {
+            throw new IllegalArgumentException("Invalid IP Address [" + ipAddressStr + "]");
+        }
+        ipAddress = (int) result;
+        return ipAddress;
+    }
 
-        try {
-            String tmp = ipAddressStr;
-
-            // get the 3 first numbers
-            int offset = 0;
-            for (int i = 0; i < 3; i++) {
-
-                // get the position of the first dot
-                int index = tmp.indexOf('.');
-
-                // if there is not a dot then the ip string representation is
-                // not compliant to the decimal-dotted notation.
-                if (index != -1) {
-
-                    // get the number before the dot and convert it into
-                    // an integer.
-                    String numberStr = tmp.substring(0, index);
-                    int    number    = Integer.parseInt(numberStr);
-                    if ((number < 0) || (number > 255)) {
-                        throw new IllegalArgumentException("Invalid IP Address [" + ipAddressStr + "]");
-                    }
-
-                    result += number << offset;
-                    offset += 8;
-                    tmp = tmp.substring(index + 1);
-                } else {
-                    throw new IllegalArgumentException("Invalid IP Address [" + ipAddressStr + "]");
-                }
+    /**
+     * Parse the decimal-dotted notation between <code>from</code> and <code>to</code> without creating substrings.
+     *
+     * @return Return the 32 bits integer representation of the IP address as an unsigned value, -1 if it is invalid.
+     */
+    private static long parseIPv4(String str,
+                                  int from,
+                                  int to) {
+        long result = 0;
+        int number = -1;
+        int offset = 0;
+        for (int i = from; i < to; i++) {
+            char c = str.charAt(i);
+            if (c >= '0' && c <= '9') {
+                number = number == -1 ? c - '0' : number * 10 + (c - '0');
+                if (number > 255) return -1;
+            } else if (c == '.' && number != -1 && offset < 24) {
+                result += (long) number << offset;
+                offset += 8;
+                number = -1;
+            } else {
+                return -1;
             }
+        }
+        if (number == -1 || offset != 24) return -1;
+        return result + ((long) number << offset);
+    }
 
-            // the remaining part of the string should be the last number.
-            if (tmp.length() > 0) {
-                int number = Integer.parseInt(tmp);
-                if ((number < 0) || (number > 255)) {
-                    throw new IllegalArgumentException("Invalid IP Address [" + ipAddressStr + "]");
-                }
+    // -------------------------------------------------------------------------
 
-                result += number << offset;
-                ipAddress = result;
+    /**
+     * Parse an IPv6 address, "::" compression, an embedded IPv4 tail and a zone id (%eth0) are supported.
+     * IPv4-mapped addresses are stored as IPv4 addresses.
+     *
+     * @param ipAddressStr The IPv6 address.
+     * @since 1.2.14
+     */
+    final void parseIPv6Address(String ipAddressStr) {
+        int from = 0;
+        int to   = ipAddressStr.length();
+        if (ipAddressStr.charAt(0) == '[' && ipAddressStr.charAt(to - 1) == ']') {
+            from++;
+            to--;
+        }
+        int zone = ipAddressStr.indexOf('%', from);
+        if (zone != -1 && zone < to) to = zone;
+
+        // 压缩符号前后的分组分别按128位累加，最后把前半部分左移补齐
+        long    headHigh = 0, headLow = 0, tailHigh = 0, tailLow = 0;
+        int     headGroups = 0, tailGroups = 0;
+        boolean compressed = false;
+        int     i          = from;
+        if (to - from >= 2 && ipAddressStr.charAt(from) == ':' && ipAddressStr.charAt(from + 1) == ':') {
+            compressed = true;
+            i += 2;
+        }
+        while (i < to) {
+            int end = i;
+            while (end < to && ipAddressStr.charAt(end) != ':') end++;
+            if (end == i) throw new IllegalArgumentException("Invalid IP Address [" + ipAddressStr + "]");
+            int groups;
+            int value;
+            long ipv4 = end == to ? parseIPv4(ipAddressStr, i, end) : -1;
+            if (ipv4 != -1) {
+                groups = 2;
+                value  = Integer.reverseBytes((int) ipv4);
             } else {
-                throw new IllegalArgumentException("Invalid IP Address [" + ipAddressStr + "]");
+                if (end - i > 4) throw new IllegalArgumentException("Invalid IP Address [" + ipAddressStr + "]");
+                groups = 1;
+                value  = 0;
+                for (int j = i; j < end; j++) {
+                    int digit = Character.digit(ipAddressStr.charAt(j), 16);
+                    if (digit == -1) throw new IllegalArgumentException("Invalid IP Address [" + ipAddressStr + "]");
+                    value = (value << 4) | digit;
+                }
+            }
+            for (int g = groups - 1; g >= 0; g--) {
+                long group = (value >>> (g * 16)) & 0xFFFF;
+                if (compressed) {
+                    tailHigh = (tailHigh << 16) | (tailLow >>> 48);
+                    tailLow  = (tailLow << 16) | group;
+                    tailGroups++;
+                } else {
+                    headHigh = (headHigh << 16) | (headLow >>> 48);
+                    headLow  = (headLow << 16) | group;
+                    headGroups++;
+                }
+            }
+            if (end == to) break;
+            if (end + 1 < to && ipAddressStr.charAt(end + 1) == ':') {
+                if (compressed) throw new IllegalArgumentException("Invalid IP Address [" + ipAddressStr + "]");
+                compressed = true;
+                i          = end + 2;
+            } else {
+                i = end + 1;
+                if (i == to) throw new IllegalArgumentException("Invalid IP Address [" + ipAddressStr + "]");
             }
-        } catch (NoSuchElementException | NumberFormatException ex) {
-            throw new IllegalArgumentException("Invalid IP Address [" + ipAddressStr + "]", ex);
         }
-
-        return result;
+        int groups = headGroups + tailGroups;
+        if (groups > 8 || (!compressed && groups != 8) || (compressed && groups == 8)) {
+            throw new IllegalArgumentException("Invalid IP Address [" + ipAddressStr + "]");
+        }
+        for (int g = headGroups; g < 8; g++) {
+            headHigh = (headHigh << 16) | (headLow >>> 48);
+            headLow  = headLow << 16;
+        }
+        long _high = headHigh | tailHigh;
+        long _low  = headLow | tailLow;
+        if (_high == 0 && (_low >>> 32) == 0xFFFFL) {
+            ipAddress = Integer.reverseBytes((int) _low);
+            return;
+        }
+        ipv6 = true;
+        high = _high;
+        low  = _low;
     }
 
     public int hashCode() {
+        if (ipv6) return Long.hashCode(high) * 31 + Long.hashCode(low);
         return this.ipAddress;
     }
 
     public boolean equals(Object another) {
-        return another instanceof IPAddress && ipAddress == ((IPAddress) another).ipAddress;
+        if (!(another instanceof IPAddress)) return false;
+        IPAddress that = (IPAddress) another;
+        return ipv6 == that.ipv6 && ipAddress == that.ipAddress && high == that.high && low == that.low;
     }
 
     @Override
@@ -56,6 +56,19 @@ public class IPRange {
 
     // -------------------------------------------------------------------------
 
+    /**
+     * Return the number of leading bits an address must share with the encapsulated IP address to be in range.
+     *
+     * @return The prefix length, 32 (128 for IPv6) if the range is a single IP address.
+     * @since 1.2.14
+     */
+    public final int getPrefixLength() {
+        if (ipSubnetMask != null) return extendedNetworkPrefix;
+        return ipAddress.isIPv6() ? 128 : 32;
+    }
+
+    // -------------------------------------------------------------------------
+
     /**
      * Convert the IP Range into a string representation.
      *
@@ -93,12 +106,17 @@ public class IPRange {
         try {
             if (subnetStr != null) {
                 extendedNetworkPrefix = Integer.parseInt(subnetStr);
-                if ((extendedNetworkPrefix < 0) || (extendedNetworkPrefix > 32)) {
+                if ((extendedNetworkPrefix < 0) || (extendedNetworkPrefix > (ipAddress.isIPv6() ? 128 : 32))) {
                     throw new IllegalArgumentException("Invalid IP range [" + range + "]");
                 }
-                ipSubnetMask = computeMaskFromNetworkPrefix(extendedNetworkPrefix);
+                ipSubnetMask = ipAddress.isIPv6()
+                               ? computeIPv6MaskFromNetworkPrefix(extendedNetworkPrefix)
+                               : computeMaskFromNetworkPrefix(extendedNetworkPrefix);
             }
         } catch (NumberFormatException ex) {
+            if (ipAddress.isIPv6()) {
+                throw new IllegalArgumentException("Invalid IP range [" + range + "]", ex);
+            }
 
             // the remaining part is not a valid decimal value.
             // Check if it's a decimal-dotted notation.
@@ -184,8 +202,24 @@ public class IPRange {
 
     // -------------------------------------------------------------------------
 
+    /**
+     * Convert a extended network prefix integer into an IPv6 mask.
+     *
+     * @param prefix The network prefix number, 0 to 128.
+     * @return Return the IPv6 mask corresponding to the extended network prefix.
+     * @since 1.2.14
+     */
+    private static IPAddress computeIPv6MaskFromNetworkPrefix(int prefix) {
+        long high = prefix == 0 ? 0 : prefix >= 64 ? -1L : -1L << (64 - prefix);
+        long low  = prefix <= 64 ? 0 : prefix == 128 ? -1L : -1L << (128 - prefix);
+        return new IPAddress(high, low);
+    }
+
+    // -------------------------------------------------------------------------
+
     /**
      * Check if the specified IP address is in the encapsulated range.
+     * An IPv4 address is never in an IPv6 range and vice versa.
      *
      * @param address The IP address to be tested.
      * @return Return <code>true</code> if the specified IP address is in the encapsulated IP range, otherwise return
@@ -195,6 +229,13 @@ public class IPRange {
         if (ipSubnetMask == null) {
             return this.ipAddress.equals(address);
         }
+        if (address.ipv6 != ipAddress.ipv6) {
+            return false;
+        }
+        if (ipAddress.ipv6) {
+            return (address.high & ipSubnetMask.high) == (ipAddress.high & ipSubnetMask.high)
+                    && (address.low & ipSubnetMask.low) == (ipAddress.low & ipSubnetMask.low);
+        }
 
         int result1 = address.ipAddress & ipSubnetMask.ipAddress;
         int result2 = ipAddress.ipAddress & ipSubnetMask.ipAddress;
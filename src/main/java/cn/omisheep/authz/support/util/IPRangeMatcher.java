@@ -0,0 +1,148 @@
+package cn.omisheep.authz.support.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 由一组 {@link IPRange} 编译成的有序区间表
+ * <p>
+ * 每个网段转换为 [起始地址, 结束地址] 的闭区间，按起始地址排序并合并重叠部分，
+ * 匹配时二分查找最后一个起始地址不大于目标地址的区间，复杂度 O(log n)。
+ * IPv4与IPv6分别编译，地址按无符号数比较
+ *
+ * @author zhouxinchen[1269670415@qq.com]
+ * @since 1.2.14
+ */
+public final class IPRangeMatcher {
+
+    private static final IPRangeMatcher EMPTY = new IPRangeMatcher(Intervals.EMPTY, Intervals.EMPTY);
+
+    private final Intervals ipv4;
+    private final Intervals ipv6;
+
+    private IPRangeMatcher(Intervals ipv4,
+                           Intervals ipv6) {
+        this.ipv4 = ipv4;
+        this.ipv6 = ipv6;
+    }
+
+    /**
+     * @param ranges 网段，可以为null
+     * @return 编译后的匹配器
+     */
+    public static IPRangeMatcher compile(Collection<IPRange> ranges) {
+        if (ranges == null || ranges.isEmpty()) return EMPTY;
+        List<long[]> v4 = new ArrayList<>();
+        List<long[]> v6 = new ArrayList<>();
+        for (IPRange range : ranges) {
+            IPAddress address = range.getIPAddress();
+            int       prefix  = range.getPrefixLength();
+            if (address.isIPv6()) {
+                long hostHigh = prefix >= 64 ? 0 : -1L >>> prefix;
+                long hostLow  = prefix >= 128 ? 0 : prefix <= 64 ? -1L : -1L >>> (prefix - 64);
+                v6.add(new long[]{address.getHigh() & ~hostHigh, address.getLow() & ~hostLow,
+                        address.getHigh() | hostHigh, address.getLow() | hostLow});
+            } else {
+                long value = address.intValue() & 0xFFFFFFFFL;
+                long host  = (1L << (32 - prefix)) - 1;
+                v4.add(new long[]{0, value & ~host, 0, value | host});
+            }
+        }
+        return new IPRangeMatcher(Intervals.of(v4), Intervals.of(v6));
+    }
+
+    public boolean isEmpty() {
+        return ipv4.size() == 0 && ipv6.size() == 0;
+    }
+
+    /**
+     * @param address 地址，为null时返回false
+     * @return 地址是否落在任一网段内
+     */
+    public boolean matches(IPAddress address) {
+        if (address == null) return false;
+        if (address.isIPv6()) return ipv6.contains(address.getHigh(), address.getLow());
+        return ipv4.contains(0, address.intValue() & 0xFFFFFFFFL);
+    }
+
+    private static int compare(long high1,
+                               long low1,
+                               long high2,
+                               long low2) {
+        int c = Long.compareUnsigned(high1, high2);
+        return c != 0 ? c : Long.compareUnsigned(low1, low2);
+    }
+
+    /**
+     * 按起始地址排序、互不重叠的闭区间，128位地址拆成高低两个long
+     */
+    private static final class Intervals {
+
+        private static final Intervals EMPTY = new Intervals(new long[0], new long[0], new long[0], new long[0]);
+
+        private final long[] startHigh;
+        private final long[] startLow;
+        private final long[] endHigh;
+        private final long[] endLow;
+
+        private Intervals(long[] startHigh,
+                          long[] startLow,
+                          long[] endHigh,
+                          long[] endLow) {
+            this.startHigh = startHigh;
+            this.startLow  = startLow;
+            this.endHigh   = endHigh;
+            this.endLow    = endLow;
+        }
+
+        private static Intervals of(List<long[]> intervals) {
+            if (intervals.isEmpty()) return EMPTY;
+            intervals.sort((a, b) -> compare(a[0], a[1], b[0], b[1]));
+            List<long[]> merged = new ArrayList<>();
+            long[]       last   = null;
+            for (long[] interval : intervals) {
+                if (last != null && compare(interval[0], interval[1], last[2], last[3]) <= 0) {
+                    if (compare(interval[2], interval[3], last[2], last[3]) > 0) {
+                        last[2] = interval[2];
+                        last[3] = interval[3];
+                    }
+                } else {
+                    last = interval.clone();
+                    merged.add(last);
+                }
+            }
+            int    n         = merged.size();
+            long[] startHigh = new long[n], startLow = new long[n], endHigh = new long[n], endLow = new long[n];
+            for (int i = 0; i < n; i++) {
+                long[] interval = merged.get(i);
+                startHigh[i] = interval[0];
+                startLow[i]  = interval[1];
+                endHigh[i]   = interval[2];
+                endLow[i]    = interval[3];
+            }
+            return new Intervals(startHigh, startLow, endHigh, endLow);
+        }
+
+        private int size() {
+            return startHigh.length;
+        }
+
+        private boolean contains(long high,
+                                 long low) {
+            // 最后一个起始地址 <= 目标地址的区间
+            int lo = 0, hi = startHigh.length - 1, index = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compare(startHigh[mid], startLow[mid], high, low) <= 0) {
+                    index = mid;
+                    lo    = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return index != -1 && compare(high, low, endHigh[index], endLow[index]) <= 0;
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package cn.omisheep.authz.support.util;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 
 import java.util.HashSet;
@@ -13,26 +14,69 @@ public class IPRangeMeta {
     private HashSet<IPRange> allow;
     private HashSet<IPRange> deny;
 
+    /**
+     * allow/deny 编译后的区间表，见 {@link #compile()}
+     */
+    @JsonIgnore
+    private transient volatile IPRangeMatcher allowMatcher;
+    @JsonIgnore
+    private transient volatile IPRangeMatcher denyMatcher;
+
     public IPRangeMeta setAllow(HashSet<IPRange> allow) {
-        this.allow = allow;
+        this.allow        = allow;
+        this.allowMatcher = null;
         return this;
     }
 
     public IPRangeMeta setDeny(HashSet<IPRange> deny) {
-        this.deny = deny;
+        this.deny        = deny;
+        this.denyMatcher = null;
         return this;
     }
 
     public IPRangeMeta setAllow(String allow) {
-        this.allow = parse(allow);
+        this.allow        = parse(allow);
+        this.allowMatcher = null;
         return this;
     }
 
     public IPRangeMeta setDeny(String deny) {
-        this.deny = parse(deny);
+        this.deny        = parse(deny);
+        this.denyMatcher = null;
+        return this;
+    }
+
+    /**
+     * 将 allow/deny 编译为有序区间表，修改 allow/deny 之后需要重新编译
+     *
+     * @return this
+     * @since 1.2.14
+     */
+    public IPRangeMeta compile() {
+        this.denyMatcher  = IPRangeMatcher.compile(deny);
+        this.allowMatcher = IPRangeMatcher.compile(allow);
         return this;
     }
 
+    /**
+     * 不在deny中，且allow为空或在allow中时允许访问。尚未编译时先编译
+     *
+     * @param ipAddress 已解析的ip，为null时不在任何网段内
+     * @return 是否允许访问
+     * @since 1.2.14
+     */
+    public boolean isPermitted(IPAddress ipAddress) {
+        IPRangeMatcher allowMatcher = this.allowMatcher;
+        IPRangeMatcher denyMatcher  = this.denyMatcher;
+        if (allowMatcher == null || denyMatcher == null) {
+            compile();
+            allowMatcher = this.allowMatcher;
+            denyMatcher  = this.denyMatcher;
+        }
+        if (denyMatcher.matches(ipAddress)) return false;
+        return allowMatcher.isEmpty() || allowMatcher.matches(ipAddress);
+    }
+
     public static HashSet<IPRange> parse(String info) {
         if (info != null && info.trim().length() != 0) {
             HashSet<IPRange> ipRanges = new HashSet<>();
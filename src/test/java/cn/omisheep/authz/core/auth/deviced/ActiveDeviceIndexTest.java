@@ -0,0 +1,75 @@
+package cn.omisheep.authz.core.auth.deviced;
+
+import cn.omisheep.authz.core.LogLevel;
+import cn.omisheep.authz.core.config.AuthzAppVersion;
+import cn.omisheep.authz.core.util.EmbeddedRedis;
+import cn.omisheep.authz.core.util.LogUtils;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ActiveDeviceIndexTest {
+
+    @Test
+    void testLocalIndex() {
+        ActiveDeviceIndex index = new ActiveDeviceIndex(false, 10000);
+        assertTrue(index.since(0).isEmpty());
+
+        HashMap<String, Long> requests = new HashMap<>();
+        requests.put("1:a", 1000L);
+        requests.put("1:b", 2000L);
+        requests.put("2:a", 3000L);
+        index.add(requests, 3000);
+        assertEquals(new HashSet<>(Arrays.asList("1:b", "2:a")), index.since(1000).keySet());
+        assertEquals(Collections.singleton("2:a"), index.since(2000).keySet());
+
+        index.add(Collections.singletonMap("1:a", 4000L), 4000);
+        index.add(Collections.singletonMap("1:a", 3500L), 4000);
+        assertEquals(new HashSet<>(Arrays.asList("1:a", "2:a")), index.since(2000).keySet());
+        assertEquals(Collections.singleton("1:a"), index.since(3000).keySet());
+
+        index.add(Collections.singletonMap("3:a", 13500L), 13500);
+        assertEquals(new HashSet<>(Arrays.asList("1:a", "3:a")), index.since(0).keySet());
+        assertEquals(Long.valueOf(13500), index.since(0).get("3:a"));
+
+        Map<String, Long> scores = index.scores(Arrays.asList("1:a", "1:b", "4:a"));
+        assertEquals(Collections.singletonMap("1:a", 4000L), scores);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRedisIndex() throws Exception {
+        Field field = AuthzAppVersion.class.getDeclaredField("_values");
+        field.setAccessible(true);
+        ((Map<String, String>) field.get(null)).putIfAbsent("USER_ACTIVE_INDEX_KEY", "authz:test:user:active");
+        LogUtils.setLogLevel(LogLevel.INFO);
+        EmbeddedRedis.start();
+
+        ActiveDeviceIndex index = new ActiveDeviceIndex(true, 10000);
+        long              now   = System.currentTimeMillis();
+        String            user  = UUID.randomUUID().toString();
+        HashMap<String, Long> requests = new HashMap<>();
+        requests.put(user + ":a", now - 1000);
+        requests.put(user + ":b", now);
+        index.add(requests, now);
+        Map<String, Long> since = index.since(now - 1000);
+        assertFalse(since.containsKey(user + ":a"));
+        assertEquals(Long.valueOf(now), since.get(user + ":b"));
+
+        // 较晚写入的旧分数不覆盖新分数
+        index.add(Collections.singletonMap(user + ":b", now - 500), now);
+        assertEquals(Long.valueOf(now), index.since(now - 1000).get(user + ":b"));
+        index.add(Collections.singletonMap(user + ":b", now + 500), now);
+        assertEquals(Long.valueOf(now + 500), index.since(now - 1000).get(user + ":b"));
+    }
+
+}
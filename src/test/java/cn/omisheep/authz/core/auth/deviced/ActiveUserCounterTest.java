@@ -0,0 +1,84 @@
+package cn.omisheep.authz.core.auth.deviced;
+
+import cn.omisheep.authz.core.LogLevel;
+import cn.omisheep.authz.core.config.AuthzAppVersion;
+import cn.omisheep.authz.core.util.EmbeddedRedis;
+import cn.omisheep.authz.core.util.LogUtils;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ActiveUserCounterTest {
+
+    private static final long MINUTE = ActiveUserCounter.BUCKET;
+
+    @Test
+    void testLocalCounter() {
+        ActiveUserCounter counter = new ActiveUserCounter(false, 10 * MINUTE);
+        long              now     = 100 * MINUTE;
+        assertEquals(0, counter.count(now, MINUTE));
+
+        counter.add(ActiveUserCounter.bucket(now - 3 * MINUTE), Arrays.asList("1", "2"));
+        counter.add(ActiveUserCounter.bucket(now), Arrays.asList("2", "3"));
+        counter.add(ActiveUserCounter.bucket(now), Collections.singleton("3"));
+
+        assertEquals(2, counter.count(now, MINUTE));
+        assertEquals(3, counter.count(now, 5 * MINUTE));
+        assertEquals(0, counter.count(now, 0));
+
+        assertEquals(0, counter.count(now + 20 * MINUTE, 20 * MINUTE));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testOldBucketsArePrunedOnAdd() throws Exception {
+        ActiveUserCounter counter = new ActiveUserCounter(false, 10 * MINUTE);
+        Field             field   = ActiveUserCounter.class.getDeclaredField("local");
+        field.setAccessible(true);
+        Map<Long, HyperLogLog> local = (Map<Long, HyperLogLog>) field.get(counter);
+
+        for (long bucket = 0; bucket < 100; bucket++) counter.add(bucket, Collections.singleton("1"));
+        assertEquals(11, local.size());
+        assertTrue(local.keySet().stream().allMatch(bucket -> bucket >= 89));
+    }
+
+    @Test
+    void testEstimateError() {
+        ActiveUserCounter counter = new ActiveUserCounter(false, 10 * MINUTE);
+        int               total   = 100000;
+        for (int bucket = 0; bucket < 5; bucket++) {
+            ArrayList<String> userIds = new ArrayList<>();
+            for (int i = bucket * total / 10; i < bucket * total / 10 + total / 2; i++) userIds.add("user-" + i);
+            counter.add(bucket, userIds);
+        }
+        long expected = total / 10 * 4 + total / 2;
+        long actual   = counter.count(5 * MINUTE - 1, 5 * MINUTE);
+        assertTrue(Math.abs(actual - expected) < expected * 0.05, "estimate " + actual + ", expected " + expected);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRedisCounter() throws Exception {
+        Field field = AuthzAppVersion.class.getDeclaredField("_values");
+        field.setAccessible(true);
+        ((Map<String, String>) field.get(null)).putIfAbsent("USER_ACTIVE_COUNTER_KEY_PREFIX",
+                                                           "authz:{test:user:active:count}:");
+        LogUtils.setLogLevel(LogLevel.INFO);
+        EmbeddedRedis.start();
+
+        ActiveUserCounter counter = new ActiveUserCounter(true, 10 * MINUTE);
+        long              now     = System.currentTimeMillis();
+        String            user    = UUID.randomUUID().toString();
+        counter.add(ActiveUserCounter.bucket(now - MINUTE), Arrays.asList(user + "1", user + "2"));
+        counter.add(ActiveUserCounter.bucket(now), Arrays.asList(user + "2", user + "3"));
+        assertEquals(3, counter.count(now, 2 * MINUTE));
+    }
+
+}
@@ -0,0 +1,117 @@
+package cn.omisheep.authz.core.auth.deviced;
+
+import cn.omisheep.authz.core.AuthzProperties;
+import cn.omisheep.authz.core.LogLevel;
+import cn.omisheep.authz.core.cache.Cache;
+import cn.omisheep.authz.core.config.AuthzAppVersion;
+import cn.omisheep.authz.core.config.Constants;
+import cn.omisheep.authz.core.util.EmbeddedRedis;
+import cn.omisheep.authz.core.util.LogUtils;
+import cn.omisheep.authz.core.util.RedisUtils;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserDeviceIndexTest {
+
+    @Test
+    void testLocalIndex() {
+        UserDeviceIndex index = new UserDeviceIndex(false);
+        assertTrue(index.tids(1).isEmpty());
+
+        index.add(1, "a", 1000);
+        index.add(1, "b", -1);
+        index.add("1", "c", 1000);
+        index.add(2, "a", 1000);
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")), index.tids(1));
+        assertEquals(Collections.singleton("a"), index.tids(2));
+
+        index.remove(1, Arrays.asList("a", "x"));
+        assertEquals(new HashSet<>(Arrays.asList("b", "c")), index.tids(1));
+
+        index.tids(1).clear();
+        assertEquals(2, index.tids(1).size());
+
+        index.remove(1, Arrays.asList("b", "c"));
+        assertTrue(index.tids(1).isEmpty());
+
+        index.remove(2, Collections.singleton("a"));
+        assertTrue(index.tids(2).isEmpty());
+    }
+
+    @Test
+    void testLocalPrune() {
+        UserDeviceIndex index = new UserDeviceIndex(false);
+        index.add(1, "a", 1000);
+        index.add(1, "b", 1000);
+        index.prune(1, Collections.singleton("a"));
+        assertEquals(Collections.singleton("b"), index.tids(1));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRedisPruneKeepsExistingDevices() throws Exception {
+        Field field = AuthzAppVersion.class.getDeclaredField("_values");
+        field.setAccessible(true);
+        Map<String, String> values = (Map<String, String>) field.get(null);
+        values.putIfAbsent("USER_DEVICE_KEY_PREFIX", "authz:test:user:device:");
+        values.putIfAbsent("USER_DEVICE_INDEX_KEY_PREFIX", "authz:test:user:device:index:");
+        LogUtils.setLogLevel(LogLevel.INFO);
+        EmbeddedRedis.start();
+
+        UserDeviceIndex index  = new UserDeviceIndex(true);
+        String          userId = UUID.randomUUID().toString();
+        index.add(userId, "a", 60000);
+        index.add(userId, "b", 60000);
+        index.add(userId, "c", 60000);
+        // 其他节点刚写入了a
+        RedisUtils.Obj.set(UserDevicesDict.key(userId, "a"), "device", 60000);
+
+        index.prune(userId, Arrays.asList("a", "b"));
+        assertEquals(new HashSet<>(Arrays.asList("a", "c")), index.tids(userId));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRedisMigrationRunsOnce() throws Exception {
+        Field field = AuthzAppVersion.class.getDeclaredField("_values");
+        field.setAccessible(true);
+        Map<String, String> values = (Map<String, String>) field.get(null);
+        values.putIfAbsent("USER_DEVICE_KEY_PREFIX", "authz:test:user:device:");
+        values.putIfAbsent("USER_DEVICE_INDEX_KEY_PREFIX", "authz:test:user:device:index:");
+        values.putIfAbsent("USER_DEVICE_INDEX_MIGRATED_KEY", "authz:test:user:devices:migrated");
+        values.putIfAbsent("USER_REQUEST_KEY_PREFIX", "authz:test:user:request:");
+        values.putIfAbsent("USER_ACTIVE_INDEX_KEY", "authz:test:user:active");
+        LogUtils.setLogLevel(LogLevel.INFO);
+        EmbeddedRedis.start();
+        RedisUtils.Obj.del(Constants.USER_DEVICE_INDEX_MIGRATED_KEY.get());
+
+        AuthzProperties.CacheConfig cacheConfig = new AuthzProperties.CacheConfig();
+        cacheConfig.setEnableRedis(true);
+        AuthzProperties properties = mock(AuthzProperties.class);
+        when(properties.getCache()).thenReturn(cacheConfig);
+        UserDevicesDictByCache dict = new UserDevicesDictByCache(properties, mock(Cache.class));
+
+        UserDeviceIndex index  = new UserDeviceIndex(true);
+        String          userId = UUID.randomUUID().toString();
+        RedisUtils.Obj.set(UserDevicesDict.key(userId, "a"), "device", 60000);
+        dict.initDeviceIndex();
+        assertEquals(Collections.singleton("a"), index.tids(userId));
+        assertTrue(RedisUtils.hasKey(Constants.USER_DEVICE_INDEX_MIGRATED_KEY.get()));
+
+        // 迁移标记存在时不再扫描
+        RedisUtils.Obj.set(UserDevicesDict.key(userId, "b"), "device", 60000);
+        dict.initDeviceIndex();
+        assertEquals(Collections.singleton("a"), index.tids(userId));
+    }
+
+}
@@ -14,6 +14,7 @@ import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 
 import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -48,6 +49,7 @@ class UserDevicesDictByCacheIT {
         userConfig.setMaximumTotalDevice(10);
         userConfig.setMaximumTotalSameTypeDevice(5);
         when(mockProperties.getUser()).thenReturn(userConfig);
+        when(mockProperties.getCache()).thenReturn(new AuthzProperties.CacheConfig());
         
         // 初始化 AuthzAppVersion 靜態欄位
         AuthzAppVersion.USER_ID_TYPE = String.class;
@@ -127,7 +129,7 @@ class UserDevicesDictByCacheIT {
         userDevicesDict.addUser(tokenPair);
         
         // 驗證快取被設置
-        verify(mockCache).set(anyString(), any(Device.class), anyLong());
+        verify(mockCache).set(anyString(), any(Device.class), anyLong(), any(Runnable.class));
     }
 
     @Test
@@ -144,8 +146,9 @@ class UserDevicesDictByCacheIT {
         
         assertTrue(result);
         verify(mockCache).get(anyString(), eq(Device.class));
-        verify(mockCache).set(anyString(), any(Device.class), anyLong());
-        verify(mockCache).del(anyString());
+        // 寫入在非同步任務中完成
+        verify(mockCache, timeout(1000)).set(anyString(), any(Device.class), anyLong(), any(Runnable.class));
+        verify(mockCache, timeout(1000)).del(anyString());
     }
 
     @Test
@@ -162,6 +165,7 @@ class UserDevicesDictByCacheIT {
         assertFalse(result);
         verify(mockCache).get(anyString(), eq(Device.class));
         verify(mockCache, never()).set(anyString(), any(Device.class), anyLong());
+        verify(mockCache, never()).set(anyString(), any(Device.class), anyLong(), any(Runnable.class));
     }
 
     @Test
@@ -207,17 +211,25 @@ class UserDevicesDictByCacheIT {
     }
 
     @Test
-    void testRemoveAllDevice() {
-        // 測試移除所有裝置
-        when(mockCache.keys(anyString())).thenReturn(Set.of(
-            "authz:app:user:device:user123:device1",
-            "authz:app:user:device:user123:device2"
-        ));
-        
+    @SuppressWarnings("unchecked")
+    void testRemoveAllDevice() throws Exception {
+        // 測試移除所有裝置，裝置從索引中讀取
+        Field field = UserDevicesDictByCache.class.getDeclaredField("deviceIndex");
+        field.setAccessible(true);
+        UserDeviceIndex index = (UserDeviceIndex) field.get(userDevicesDict);
+        index.add("user123", "tid1", 60000L);
+        index.add("user123", "tid2", 60000L);
+        index.add("user456", "tid3", 60000L);
+
         userDevicesDict.removeAllDevice("user123");
-        
-        // 驗證非同步操作被調用
-        verify(mockCache, timeout(1000)).del(any(Set.class));
+
+        // 驗證只刪除該使用者的兩個裝置
+        verify(mockCache, timeout(1000)).del((Set<String>) argThat(keys -> keys.equals(Set.of(
+                UserDevicesDict.key("user123", "tid1"),
+                UserDevicesDict.key("user123", "tid2")
+        ))));
+        assertTrue(index.tids("user123").isEmpty());
+        assertEquals(Set.of("tid3"), index.tids("user456"));
     }
 
     @Test
@@ -0,0 +1,152 @@
+package cn.omisheep.authz.core.auth.deviced;
+
+import cn.omisheep.authz.core.AuthzProperties;
+import cn.omisheep.authz.core.auth.ipf.HttpMeta;
+import cn.omisheep.authz.core.cache.Cache;
+import cn.omisheep.authz.core.config.AuthzAppVersion;
+import cn.omisheep.authz.core.tk.AccessToken;
+import cn.omisheep.authz.core.tk.GrantType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class UserDevicesDictByCacheRequestTest {
+
+    private AuthzProperties.CacheConfig cacheConfig;
+    private Cache                       cache;
+    private AuthzProperties             properties;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        Field field = AuthzAppVersion.class.getDeclaredField("_values");
+        field.setAccessible(true);
+        ((Map<String, String>) field.get(null)).putIfAbsent("USER_REQUEST_KEY_PREFIX", "authz:test:user:request:");
+
+        cacheConfig = new AuthzProperties.CacheConfig();
+        cache       = mock(Cache.class);
+        properties  = mock(AuthzProperties.class);
+        when(properties.getCache()).thenReturn(cacheConfig);
+    }
+
+    private static HttpMeta httpMeta(String deviceId,
+                                     long now) {
+        AccessToken token = new AccessToken("tid-" + deviceId, "token-value", "refresh-tid", 3600000L,
+                                            now + 3600000L, GrantType.PASSWORD, null, "scope", "user", "web",
+                                            deviceId);
+        HttpMeta httpMeta = mock(HttpMeta.class);
+        when(httpMeta.getToken()).thenReturn(token);
+        when(httpMeta.getNow()).thenReturn(new Date(now));
+        when(httpMeta.getIp()).thenReturn("127.0.0.1");
+        return httpMeta;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRequestWritesAreThrottledAndBatched() {
+        UserDevicesDictByCache dict = new UserDevicesDictByCache(properties, cache);
+        long                   now  = System.currentTimeMillis();
+
+        dict.request(httpMeta("a", now));
+        dict.request(httpMeta("a", now + 1000));
+        dict.request(httpMeta("b", now + 1000));
+        verify(cache, never()).setSneaky(anyMap(), anyLong());
+
+        dict.flushRequests();
+        verify(cache).setSneaky((Map<String, ?>) argThat(m -> ((Map<?, ?>) m).size() == 2), anyLong());
+
+        dict.request(httpMeta("a", now + 2000));
+        dict.flushRequests();
+        verify(cache, times(1)).setSneaky(anyMap(), anyLong());
+
+        dict.request(httpMeta("a", now + 31000));
+        dict.flushRequests();
+        verify(cache, times(2)).setSneaky(anyMap(), anyLong());
+    }
+
+    @Test
+    void testThrottleDisabled() {
+        cacheConfig.setRequestDetailsWriteInterval("0");
+        cacheConfig.setRequestDetailsFlushPeriod("0");
+        UserDevicesDictByCache dict = new UserDevicesDictByCache(properties, cache);
+        long                   now  = System.currentTimeMillis();
+
+        dict.request(httpMeta("a", now));
+        dict.request(httpMeta("a", now));
+        verify(cache, timeout(1000).times(2)).setSneaky(anyString(), any(), anyLong());
+    }
+
+    @Test
+    void testActiveUserIsCountedOncePerBucketWithoutBatch() throws Exception {
+        cacheConfig.setRequestDetailsWriteInterval("0");
+        cacheConfig.setRequestDetailsFlushPeriod("0");
+        UserDevicesDictByCache dict  = new UserDevicesDictByCache(properties, cache);
+        Field                  field = UserDevicesDictByCache.class.getDeclaredField("activeUserCounter");
+        field.setAccessible(true);
+        ActiveUserCounter counter = spy((ActiveUserCounter) field.get(dict));
+        field.set(dict, counter);
+        long now = ActiveUserCounter.bucket(System.currentTimeMillis()) * ActiveUserCounter.BUCKET;
+
+        dict.request(httpMeta("a", now));
+        dict.request(httpMeta("a", now + 1000));
+        dict.request(httpMeta("b", now + 2000));
+        verify(cache, timeout(1000).times(3)).setSneaky(anyString(), any(), anyLong());
+        verify(counter, timeout(1000).times(1)).add(anyLong(), anyCollection());
+
+        dict.request(httpMeta("a", now + ActiveUserCounter.BUCKET));
+        verify(counter, timeout(1000).times(2)).add(anyLong(), anyCollection());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testListActiveUserDevicesUsesIndex() {
+        UserDevicesDictByCache dict = new UserDevicesDictByCache(properties, cache);
+        long                   now  = System.currentTimeMillis();
+
+        dict.request(httpMeta("a", now - 120000));
+        dict.request(httpMeta("b", now));
+        dict.flushRequests();
+
+        when(cache.get(anySet(), eq(RequestDetails.class))).thenReturn(Collections.emptyMap());
+        dict.listActiveUserDevices(60000);
+        verify(cache).get((Set<String>) argThat(keys -> ((Set<?>) keys).size() == 1
+                && ((Set<String>) keys).iterator().next().endsWith("tid-b")), eq(RequestDetails.class));
+        verify(cache, never()).keys(anyString());
+    }
+
+    @Test
+    void testStaleDetailsDoNotHideActiveDevice() {
+        Class<?> userIdType = AuthzAppVersion.USER_ID_TYPE;
+        AuthzAppVersion.USER_ID_TYPE = String.class;
+        try {
+            UserDevicesDictByCache dict = new UserDevicesDictByCache(properties, cache);
+            long                   now  = System.currentTimeMillis();
+
+            dict.request(httpMeta("a", now));
+            dict.flushRequests();
+
+            // 本地缓存中还是其他节点写入前的旧值
+            String rKey = UserDevicesDict.requestKey("user", "tid-a");
+            RequestDetails stale = new DefaultRequestDetails().setLastRequestTime(new Date(now - 120000))
+                    .setIp("127.0.0.1");
+            when(cache.get(anySet(), eq(RequestDetails.class))).thenReturn(Collections.singletonMap(rKey, stale));
+
+            List<DeviceDetails> list = dict.listActiveUserDevices(60000);
+            assertEquals(1, list.size());
+            assertEquals(now, list.get(0).getLastRequestTime().getTime());
+        } finally {
+            AuthzAppVersion.USER_ID_TYPE = userIdType;
+        }
+    }
+
+}
@@ -0,0 +1,207 @@
+package cn.omisheep.authz.core.auth.deviced;
+
+import cn.omisheep.authz.AuthzAutoConfiguration;
+import cn.omisheep.authz.core.AuthzProperties;
+import cn.omisheep.authz.core.LogLevel;
+import cn.omisheep.authz.core.cache.Cache;
+import cn.omisheep.authz.core.cache.L1Cache;
+import cn.omisheep.authz.core.cache.L2Cache;
+import cn.omisheep.authz.core.config.AuthzAppVersion;
+import cn.omisheep.authz.core.msg.CacheMessage;
+import cn.omisheep.authz.core.tk.AccessToken;
+import cn.omisheep.authz.core.tk.GrantType;
+import cn.omisheep.authz.core.tk.RefreshToken;
+import cn.omisheep.authz.core.tk.TokenPair;
+import cn.omisheep.authz.core.util.EmbeddedRedis;
+import cn.omisheep.authz.core.util.LogUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class UserDevicesDictByCacheStatusTest {
+
+    private Cache                  cache;
+    private UserDevicesDictByCache dict;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        Field field = AuthzAppVersion.class.getDeclaredField("_values");
+        field.setAccessible(true);
+        ((Map<String, String>) field.get(null)).putIfAbsent("USER_DEVICE_KEY_PREFIX", "authz:test:user:device:");
+        ((Map<String, String>) field.get(null)).putIfAbsent("USER_REQUEST_KEY_PREFIX", "authz:test:user:request:");
+
+        AuthzProperties properties = mock(AuthzProperties.class);
+        when(properties.getCache()).thenReturn(new AuthzProperties.CacheConfig());
+        cache = spy(new L1Cache());
+        dict  = new UserDevicesDictByCache(properties, cache);
+    }
+
+    private static AccessToken accessToken(String tokenId) {
+        return new AccessToken("tid", "token-value", tokenId, 3600000L, System.currentTimeMillis() + 3600000L,
+                               GrantType.PASSWORD, null, "scope", "user", "web", "device");
+    }
+
+    private void setDevice(String accessTokenId) {
+        Device device = new DefaultDevice().setAccessTokenId(accessTokenId);
+        cache.set(UserDevicesDict.key(accessToken(accessTokenId)), device);
+    }
+
+    @Test
+    void testStatusIsCachedUntilDeviceChanges() {
+        AccessToken token = accessToken("a");
+        assertEquals(UserDevicesDict.UserStatus.REQUIRE_LOGIN, dict.userStatus(token));
+        assertEquals(UserDevicesDict.UserStatus.REQUIRE_LOGIN, dict.userStatus(token));
+        verify(cache, times(1)).get(anyString(), eq(Device.class));
+
+        setDevice("a");
+        assertEquals(UserDevicesDict.UserStatus.SUCCESS, dict.userStatus(token));
+        assertEquals(UserDevicesDict.UserStatus.SUCCESS, dict.userStatus(token));
+        verify(cache, times(2)).get(anyString(), eq(Device.class));
+
+        setDevice("b");
+        assertEquals(UserDevicesDict.UserStatus.LOGIN_EXCEPTION, dict.userStatus(token));
+        verify(cache, times(3)).get(anyString(), eq(Device.class));
+
+        cache.del(UserDevicesDict.key(token));
+        assertEquals(UserDevicesDict.UserStatus.REQUIRE_LOGIN, dict.userStatus(token));
+        verify(cache, times(4)).get(anyString(), eq(Device.class));
+    }
+
+    @Test
+    void testRefreshUserMovesDeviceIndex() throws Exception {
+        Field field = UserDevicesDictByCache.class.getDeclaredField("deviceIndex");
+        field.setAccessible(true);
+        UserDeviceIndex index = (UserDeviceIndex) field.get(dict);
+        long            now   = System.currentTimeMillis();
+        setDevice("a");
+        index.add("user", "tid", 7200000L);
+
+        AccessToken  accessToken  = new AccessToken("tid2", "token-value", "b", 3600000L, now + 3600000L,
+                                                    GrantType.PASSWORD, null, "scope", "user", "web", "device");
+        RefreshToken refreshToken = new RefreshToken("tid", "refresh-value", 7200000L, now + 7200000L, "user", null);
+        assertTrue(dict.refreshUser(new TokenPair(accessToken, refreshToken)));
+
+        long deadline = now + 5000;
+        while (!index.tids("user").equals(Collections.singleton("tid2"))) {
+            assertTrue(System.currentTimeMillis() < deadline, "timeout");
+            Thread.sleep(10);
+        }
+        assertNotNull(cache.get(UserDevicesDict.key(accessToken)));
+        assertNull(cache.get(UserDevicesDict.key(refreshToken)));
+    }
+
+    @Test
+    void testRefreshedTokenIsAcceptedBeforeDeviceIsWritten() throws Exception {
+        long now = System.currentTimeMillis();
+        setDevice("a");
+        assertEquals(UserDevicesDict.UserStatus.SUCCESS, dict.userStatus(accessToken("a")));
+
+        // 刷新后的设备写入被阻塞
+        CountDownLatch latch = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            latch.await(5, TimeUnit.SECONDS);
+            return invocation.callRealMethod();
+        }).when(cache).set(anyString(), any(), anyLong(), any(Runnable.class));
+
+        RefreshToken refreshToken = new RefreshToken("tid", "refresh-value", 7200000L, now + 7200000L, "user", null);
+        try {
+            assertTrue(dict.refreshUser(new TokenPair(accessToken("b"), refreshToken)));
+            assertEquals(UserDevicesDict.UserStatus.SUCCESS, dict.userStatus(accessToken("b")));
+            assertEquals(UserDevicesDict.UserStatus.LOGIN_EXCEPTION, dict.userStatus(accessToken("a")));
+        } finally {
+            latch.countDown();
+        }
+    }
+
+    @Test
+    void testRemoveAllDeviceKeepsDeviceAddedMeanwhile() throws Exception {
+        Field           field = UserDevicesDictByCache.class.getDeclaredField("deviceIndex");
+        field.setAccessible(true);
+        UserDeviceIndex index = spy((UserDeviceIndex) field.get(dict));
+        field.set(dict, index);
+        index.add("user", "a", 60000L);
+        // 读取tid之后另一个请求登录了新设备
+        doAnswer(invocation -> {
+            Object tids = invocation.callRealMethod();
+            index.add("user", "late", 60000L);
+            return tids;
+        }).when(index).tids("user");
+
+        dict.removeAllDevice("user");
+        verify(index, timeout(5000)).remove(eq("user"), anyCollection());
+        doCallRealMethod().when(index).tids("user");
+        assertEquals(Collections.singleton("late"), index.tids("user"));
+    }
+
+    @Test
+    void testNoneStatusIsDroppedAfterWriteMessageFromOtherNode() throws Exception {
+        LogUtils.setLogLevel(LogLevel.INFO);
+        EmbeddedRedis.start();
+        L2Cache a = new L2Cache(new AuthzProperties());
+        L2Cache b = new L2Cache(new AuthzProperties());
+        AuthzProperties properties = mock(AuthzProperties.class);
+        when(properties.getCache()).thenReturn(new AuthzProperties.CacheConfig());
+        UserDevicesDictByCache dictB = new UserDevicesDictByCache(properties, b);
+
+        String      tid         = UUID.randomUUID().toString();
+        AccessToken accessToken = new AccessToken(tid, "token-value", "a", 3600000L,
+                                                  System.currentTimeMillis() + 3600000L, GrantType.PASSWORD, null,
+                                                  "scope", "user", "web", "device");
+        String      key         = UserDevicesDict.key(accessToken);
+
+        // 节点b收到消息后才算同步完成
+        AtomicBoolean ready    = new AtomicBoolean();
+        AtomicBoolean received = new AtomicBoolean();
+        RedisMessageListenerContainer container = EmbeddedRedis.subscribe((message, pattern) -> {
+            CacheMessage cacheMessage = (CacheMessage) AuthzAutoConfiguration.CacheAutoConfiguration
+                    .jackson2JsonRedisSerializer.deserialize(message.getBody());
+            if (!cacheMessage.getKeys().contains(key)) {
+                ready.set(true);
+                return;
+            }
+            b.receive(cacheMessage);
+            received.set(true);
+        });
+        try {
+            await(() -> {
+                a.set(key + ":ready", "");
+                return ready.get();
+            });
+
+            assertEquals(UserDevicesDict.UserStatus.REQUIRE_LOGIN, dictB.userStatus(accessToken));
+            // cache.get(Set)留下的空占位仍视为设备不存在
+            b.get(Collections.singleton(key));
+            assertTrue(b.asRawMap().containsKey(key));
+            assertEquals(UserDevicesDict.UserStatus.REQUIRE_LOGIN, dictB.userStatus(accessToken));
+
+            a.set(key, new DefaultDevice().setAccessTokenId("a"));
+            await(received::get);
+            assertEquals(UserDevicesDict.UserStatus.SUCCESS, dictB.userStatus(accessToken));
+        } finally {
+            container.stop();
+        }
+    }
+
+    private static void await(Supplier<Boolean> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.get()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timeout");
+            Thread.sleep(10);
+        }
+    }
+
+}
@@ -0,0 +1,166 @@
+package cn.omisheep.authz.core.auth.ipf;
+
+import cn.omisheep.authz.core.AuthzManager;
+import cn.omisheep.authz.core.LogLevel;
+import cn.omisheep.authz.core.config.AuthzAppVersion;
+import cn.omisheep.authz.core.msg.AuthzModifier;
+import cn.omisheep.authz.core.util.EmbeddedRedis;
+import cn.omisheep.authz.core.util.LogUtils;
+import cn.omisheep.authz.core.util.RedisUtils;
+import cn.omisheep.commons.util.TimeUtils;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlacklistSnapshotTest {
+
+    @BeforeAll
+    static void setup() {
+        LogUtils.setLogLevel(LogLevel.INFO);
+    }
+
+    @Test
+    void testSaveAndRestoreFromFile(@TempDir Path dir) throws ParseException {
+        Path file = dir.resolve("blacklist.snapshot");
+        assertTrue(BlacklistSnapshot.init(false, file.toString()));
+
+        modify(new AuthzModifier.BlacklistInfo().setType(AuthzModifier.BlacklistInfo.TYPE.IP).setIp("10.9.9.9"),
+               AuthzModifier.BlacklistInfo.OP.UPDATE);
+        modify(new AuthzModifier.BlacklistInfo().setType(AuthzModifier.BlacklistInfo.TYPE.IP_RANGE)
+                       .setIpRange("10.8.0.0/16"), AuthzModifier.BlacklistInfo.OP.UPDATE);
+        modify(new AuthzModifier.BlacklistInfo().setType(AuthzModifier.BlacklistInfo.TYPE.USER)
+                       .setUserId(9527L).setDeviceType("web"), AuthzModifier.BlacklistInfo.OP.UPDATE);
+        BlacklistSnapshot.save();
+        assertTrue(Files.exists(file));
+
+        // 模拟重启：清空本地记录后从快照恢复
+        modify(new AuthzModifier.BlacklistInfo().setType(AuthzModifier.BlacklistInfo.TYPE.IP).setIp("10.9.9.9"),
+               AuthzModifier.BlacklistInfo.OP.REMOVE);
+        modify(new AuthzModifier.BlacklistInfo().setType(AuthzModifier.BlacklistInfo.TYPE.IP_RANGE)
+                       .setIpRange("10.8.0.0/16"), AuthzModifier.BlacklistInfo.OP.REMOVE);
+        modify(new AuthzModifier.BlacklistInfo().setType(AuthzModifier.BlacklistInfo.TYPE.USER)
+                       .setUserId(9527L).setDeviceType("web"), AuthzModifier.BlacklistInfo.OP.REMOVE);
+        assertTrue(Blacklist.check("10.9.9.9"));
+        assertTrue(Blacklist.check("10.8.1.1"));
+        assertTrue(Blacklist.User.check(9527L, "web", "d1"));
+
+        BlacklistSnapshot.init(false, file.toString());
+        assertFalse(Blacklist.check("10.9.9.9"));
+        assertFalse(Blacklist.check("10.8.1.1"));
+        assertFalse(Blacklist.User.check(9527L, "web", "d1"));
+        assertTrue(Blacklist.User.check(9527L, "app", "d1"));
+
+        modify(new AuthzModifier.BlacklistInfo().setType(AuthzModifier.BlacklistInfo.TYPE.IP).setIp("10.9.9.9"),
+               AuthzModifier.BlacklistInfo.OP.REMOVE);
+        modify(new AuthzModifier.BlacklistInfo().setType(AuthzModifier.BlacklistInfo.TYPE.IP_RANGE)
+                       .setIpRange("10.8.0.0/16"), AuthzModifier.BlacklistInfo.OP.REMOVE);
+        modify(new AuthzModifier.BlacklistInfo().setType(AuthzModifier.BlacklistInfo.TYPE.USER)
+                       .setUserId(9527L).setDeviceType("web"), AuthzModifier.BlacklistInfo.OP.REMOVE);
+        BlacklistSnapshot.init(false, null);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRemovedBanIsNotRestoredFromRedis() throws Exception {
+        Field field = AuthzAppVersion.class.getDeclaredField("_values");
+        field.setAccessible(true);
+        Map<String, String> values = (Map<String, String>) field.get(null);
+        values.putIfAbsent("BLACKLIST_SNAPSHOT_KEY", "authz:test:blacklist:snapshot");
+        EmbeddedRedis.start();
+        assertTrue(BlacklistSnapshot.init(true, null));
+
+        // 本节点发起的封禁写入共用快照
+        AuthzManager.modify(blacklist(new AuthzModifier.BlacklistInfo().setType(AuthzModifier.BlacklistInfo.TYPE.IP)
+                                              .setIp("10.7.7.7"), AuthzModifier.BlacklistInfo.OP.UPDATE));
+        AuthzManager.modify(blacklist(new AuthzModifier.BlacklistInfo().setType(AuthzModifier.BlacklistInfo.TYPE.USER)
+                                              .setUserId(9528L).setDeviceType("web"),
+                                      AuthzModifier.BlacklistInfo.OP.UPDATE));
+        // 通过广播收到的修改不重复写入
+        AuthzManager.op(blacklist(new AuthzModifier.BlacklistInfo().setType(AuthzModifier.BlacklistInfo.TYPE.IP)
+                                          .setIp("10.7.7.8"), AuthzModifier.BlacklistInfo.OP.UPDATE));
+        assertEquals(2, RedisUtils.Hashes.entries("authz:test:blacklist:snapshot").size());
+
+        // 解除的封禁从共用快照中删除，重启后不会恢复
+        AuthzManager.modify(blacklist(new AuthzModifier.BlacklistInfo().setType(AuthzModifier.BlacklistInfo.TYPE.IP)
+                                              .setIp("10.7.7.7"), AuthzModifier.BlacklistInfo.OP.REMOVE));
+        AuthzManager.op(blacklist(new AuthzModifier.BlacklistInfo().setType(AuthzModifier.BlacklistInfo.TYPE.IP)
+                                          .setIp("10.7.7.8"), AuthzModifier.BlacklistInfo.OP.REMOVE));
+        AuthzManager.op(blacklist(new AuthzModifier.BlacklistInfo().setType(AuthzModifier.BlacklistInfo.TYPE.USER)
+                                          .setUserId(9528L).setDeviceType("web"),
+                                  AuthzModifier.BlacklistInfo.OP.REMOVE));
+        assertTrue(Blacklist.User.check(9528L, "web", "d1"));
+
+        BlacklistSnapshot.init(true, null);
+        assertTrue(Blacklist.check("10.7.7.7"));
+        assertTrue(Blacklist.check("10.7.7.8"));
+        assertFalse(Blacklist.User.check(9528L, "web", "d1"));
+
+        // 过期记录由定时任务清理
+        RedisUtils.Hashes.put("authz:test:blacklist:snapshot", "expired",
+                              new AuthzModifier.BlacklistInfo().setType(AuthzModifier.BlacklistInfo.TYPE.IP)
+                                      .setOp(AuthzModifier.BlacklistInfo.OP.UPDATE).setIp("10.7.7.9")
+                                      .setDate(TimeUtils.format(new Date(System.currentTimeMillis() - 1000))));
+        BlacklistSnapshot.save();
+        assertEquals(1, RedisUtils.Hashes.entries("authz:test:blacklist:snapshot").size());
+
+        AuthzManager.modify(blacklist(new AuthzModifier.BlacklistInfo().setType(AuthzModifier.BlacklistInfo.TYPE.USER)
+                                              .setUserId(9528L).setDeviceType("web"),
+                                      AuthzModifier.BlacklistInfo.OP.REMOVE));
+        assertTrue(RedisUtils.Hashes.entries("authz:test:blacklist:snapshot").isEmpty());
+        BlacklistSnapshot.init(false, null);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRedisSnapshotRoundTripsThroughLoad() throws Exception {
+        Field field = AuthzAppVersion.class.getDeclaredField("_values");
+        field.setAccessible(true);
+        Map<String, String> values = (Map<String, String>) field.get(null);
+        values.putIfAbsent("BLACKLIST_SNAPSHOT_KEY", "authz:test:blacklist:snapshot");
+        EmbeddedRedis.start();
+        assertTrue(BlacklistSnapshot.init(true, null));
+
+        // 通过生产环境的authzRedisTemplate写入
+        AuthzManager.modify(blacklist(new AuthzModifier.BlacklistInfo().setType(AuthzModifier.BlacklistInfo.TYPE.IP)
+                                              .setIp("10.6.6.6"), AuthzModifier.BlacklistInfo.OP.UPDATE));
+        assertEquals(1, RedisUtils.Hashes.entries("authz:test:blacklist:snapshot").size());
+
+        // 模拟重启：只清空本地记录后从快照恢复
+        modify(new AuthzModifier.BlacklistInfo().setType(AuthzModifier.BlacklistInfo.TYPE.IP).setIp("10.6.6.6"),
+               AuthzModifier.BlacklistInfo.OP.REMOVE);
+        assertTrue(Blacklist.check("10.6.6.6"));
+        BlacklistSnapshot.load();
+        assertFalse(Blacklist.check("10.6.6.6"));
+
+        AuthzManager.modify(blacklist(new AuthzModifier.BlacklistInfo().setType(AuthzModifier.BlacklistInfo.TYPE.IP)
+                                              .setIp("10.6.6.6"), AuthzModifier.BlacklistInfo.OP.REMOVE));
+        assertTrue(RedisUtils.Hashes.entries("authz:test:blacklist:snapshot").isEmpty());
+        BlacklistSnapshot.init(false, null);
+    }
+
+    private static AuthzModifier blacklist(AuthzModifier.BlacklistInfo blacklistInfo,
+                                           AuthzModifier.BlacklistInfo.OP op) {
+        blacklistInfo.setOp(op);
+        if (op == AuthzModifier.BlacklistInfo.OP.UPDATE) {
+            blacklistInfo.setDate(TimeUtils.format(new Date(System.currentTimeMillis() + 3600000L)));
+        }
+        return new AuthzModifier().setTarget(AuthzModifier.Target.BLACKLIST).setBlacklistInfo(blacklistInfo);
+    }
+
+    private static void modify(AuthzModifier.BlacklistInfo blacklistInfo,
+                               AuthzModifier.BlacklistInfo.OP op) throws ParseException {
+        blacklistInfo.setOp(op).setDate(TimeUtils.format(new Date(System.currentTimeMillis() + 3600000L)));
+        Blacklist.modify(new AuthzModifier().setTarget(AuthzModifier.Target.BLACKLIST)
+                                 .setBlacklistInfo(blacklistInfo));
+    }
+
+}
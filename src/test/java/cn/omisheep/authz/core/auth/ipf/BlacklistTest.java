@@ -11,6 +11,7 @@ import org.junit.jupiter.api.Test;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 
+import java.lang.reflect.Field;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.Set;
@@ -159,6 +160,67 @@ class BlacklistTest {
         });
     }
 
+    @Test
+    void testUserIndex() throws ParseException {
+        modifyUser(AuthzModifier.BlacklistInfo.OP.UPDATE, "u-index", "web", "d1", 3600000L);
+        modifyUser(AuthzModifier.BlacklistInfo.OP.UPDATE, "u-index", "app", null, 3600000L);
+        modifyUser(AuthzModifier.BlacklistInfo.OP.UPDATE, "u-expired", null, null, -10000L);
+
+        assertFalse(Blacklist.User.check("u-index", "web", "d1"));
+        assertTrue(Blacklist.User.check("u-index", "web", "d2"));
+        assertFalse(Blacklist.User.check("u-index", "app", "any"));
+        assertTrue(Blacklist.User.check("u-other", null, null));
+        assertTrue(Blacklist.User.check("u-expired", null, null), "過期記錄應被跳過");
+        assertEquals(2, Blacklist.User.list("u-index").size());
+        assertNotNull(Blacklist.User.getDevice("u-index", "web", "d1"));
+        assertTrue(Blacklist.User.list("u-expired").isEmpty());
+
+        Blacklist.clean();
+        assertTrue(Blacklist.User.list().stream().noneMatch(u -> u.getUserId().equals("u-expired")));
+
+        modifyUser(AuthzModifier.BlacklistInfo.OP.REMOVE, "u-index", "web", "d1", 0);
+        assertTrue(Blacklist.User.check("u-index", "web", "d1"));
+        modifyUser(AuthzModifier.BlacklistInfo.OP.REMOVE, "u-index", "app", null, 0);
+        assertTrue(Blacklist.User.list("u-index").isEmpty());
+    }
+
+    @Test
+    void testExpiredIPRangeIsRemovedByClean() throws ParseException {
+        Blacklist.modify(new AuthzModifier().setTarget(AuthzModifier.Target.BLACKLIST)
+                                 .setBlacklistInfo(new AuthzModifier.BlacklistInfo()
+                                                           .setType(AuthzModifier.BlacklistInfo.TYPE.IP_RANGE)
+                                                           .setOp(AuthzModifier.BlacklistInfo.OP.UPDATE)
+                                                           .setIpRange("10.77.0.0/16")
+                                                           .setDate(TimeUtils.format(new Date(
+                                                                   System.currentTimeMillis() - 10000L)))));
+
+        // check 不再修改集合，过期记录被跳过
+        assertTrue(Blacklist.check("10.77.1.1"));
+        assertTrue(Blacklist.IPRangeDeny.list().stream()
+                           .noneMatch(r -> r.getValue().equals("10.77.0.0/16")));
+
+        Blacklist.clean();
+        assertTrue(Blacklist.check("10.77.1.1"));
+        assertTrue(Blacklist.IPRangeDeny.list().stream()
+                           .noneMatch(r -> r.getValue().equals("10.77.0.0/16")));
+    }
+
+    private static void modifyUser(AuthzModifier.BlacklistInfo.OP op,
+                                   Object userId,
+                                   String deviceType,
+                                   String deviceId,
+                                   long time) throws ParseException {
+        Blacklist.modify(new AuthzModifier().setTarget(AuthzModifier.Target.BLACKLIST)
+                                 .setBlacklistInfo(new AuthzModifier.BlacklistInfo()
+                                                           .setType(AuthzModifier.BlacklistInfo.TYPE.USER)
+                                                           .setOp(op)
+                                                           .setUserId(userId)
+                                                           .setDeviceType(deviceType)
+                                                           .setDeviceId(deviceId)
+                                                           .setDate(TimeUtils.format(
+                                                                   new Date(System.currentTimeMillis() + time)))));
+    }
+
     @Test
     void testBlacklistStaticMethods() {
         // 測試靜態方法不會拋出異常
@@ -174,4 +236,25 @@ class BlacklistTest {
             Blacklist.IPRangeDeny.remove("192.168.1.0/24");
         });
     }
+
+    @Test
+    void testExpiredIPsDoNotGrowBloomFilter() throws Exception {
+        Blacklist.init(16, 0.001);
+        for (int i = 0; i < 1000; i++) {
+            String ip = "10.66." + (i / 256) + "." + (i % 256);
+            // 封禁立即過期，check 時移除
+            Blacklist.modify(new AuthzModifier().setTarget(AuthzModifier.Target.BLACKLIST)
+                                     .setBlacklistInfo(new AuthzModifier.BlacklistInfo()
+                                                               .setType(AuthzModifier.BlacklistInfo.TYPE.IP)
+                                                               .setOp(AuthzModifier.BlacklistInfo.OP.UPDATE)
+                                                               .setIp(ip)
+                                                               .setDate(TimeUtils.format(new Date(
+                                                                       System.currentTimeMillis() - 1000)))));
+            assertTrue(Blacklist.IP.check(ip));
+        }
+        Field field = Blacklist.class.getDeclaredField("ipBlacklistBloomFilter");
+        field.setAccessible(true);
+        assertEquals(16, ((ResizableBloomFilter) field.get(null)).capacity());
+        Blacklist.init(1000, 0.001);
+    }
 }
@@ -41,6 +41,23 @@ class HttpMetaTest {
         assertNotNull(meta.getUserAgent());
     }
 
+    @Test
+    void testIpAddressIsParsedOnce() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/test");
+        request.addHeader("X-Real-IP", "10.1.2.3");
+        HttpMeta meta = new HttpMeta(request, "/api/test", "/api/test");
+        assertEquals("10.1.2.3", meta.getIp());
+        assertEquals(0x0A010203, meta.getIpAddress().intValue());
+
+        request = new MockHttpServletRequest("GET", "/api/test");
+        request.setRemoteAddr("2001:db8::1");
+        assertTrue(new HttpMeta(request, "/api/test", "/api/test").getIpAddress().isIPv6());
+
+        request = new MockHttpServletRequest("GET", "/api/test");
+        request.addHeader("X-Real-IP", "not-an-ip");
+        assertNull(new HttpMeta(request, "/api/test", "/api/test").getIpAddress());
+    }
+
     @Test
     void testGetBody() {
         MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/test");
@@ -3,6 +3,8 @@ package cn.omisheep.authz.core.auth.ipf;
 import cn.omisheep.authz.annotation.RateLimit;
 import cn.omisheep.authz.core.AuthzProperties;
 import cn.omisheep.authz.core.config.AuthzAppVersion;
+import cn.omisheep.authz.core.msg.RequestBatchMessage;
+import cn.omisheep.authz.core.msg.RequestMessage;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,6 +16,7 @@ import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
 
 import java.lang.reflect.Field;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -64,6 +67,73 @@ class HttpdTest {
         assertThat(Httpd.getPattern("GET", "/limit")).isEqualTo("/limit");
     }
 
+    @Test
+    void testClean() {
+        testInit();
+        RequestMeta.setCallback(mock(cn.omisheep.authz.core.callback.RateLimitCallback.class));
+        Httpd.RequestPool pool = Httpd.getIpRequestPools("/limit", "GET");
+        long now = System.currentTimeMillis();
+        LimitMeta limitMeta = new LimitMeta("1s", 1, new String[]{"1h"}, "0ms", new String[0], RateLimit.CheckType.IP);
+
+        pool.put("idle", new RequestMeta(now - 60_000, "idle", null));
+        pool.put("active", new RequestMeta(now, "active", null));
+        pool.put("banned", new RequestMeta(now - 60_000, "banned", null).forbidden("GET", "/limit", limitMeta));
+
+        Httpd.clean(30_000);
+
+        assertThat(pool).doesNotContainKey("idle").containsKeys("active", "banned");
+        assertThat(pool.get("banned").isBan()).isTrue();
+        pool.clear();
+    }
+
+    @Test
+    void testForbidAfterCleanIsKept() {
+        testInit();
+        RequestMeta.setCallback(mock(cn.omisheep.authz.core.callback.RateLimitCallback.class));
+        Httpd.RequestPool pool = Httpd.getIpRequestPools("/limit", "GET");
+        long now = System.currentTimeMillis();
+        LimitMeta limitMeta = new LimitMeta("1s", 1, new String[]{"1h"}, "0ms", new String[0], RateLimit.CheckType.IP);
+
+        RequestMeta requestMeta = new RequestMeta(now - 60_000, "10.0.0.2", null);
+        pool.put("10.0.0.2", requestMeta);
+        // 请求线程已经拿到记录，随后记录被清理
+        Httpd.clean(30_000);
+        assertThat(pool).doesNotContainKey("10.0.0.2");
+
+        Httpd.forbid(now, requestMeta, limitMeta, "GET", "/limit");
+        assertThat(pool.get("10.0.0.2")).isSameAs(requestMeta);
+        assertThat(pool.get("10.0.0.2").isBan()).isTrue();
+
+        // 封禁期间不会被清理
+        Httpd.clean(30_000);
+        assertThat(pool).containsKey("10.0.0.2");
+        pool.clear();
+    }
+
+    @Test
+    void testReceiveBatch() throws Exception {
+        testInit();
+        RequestMeta.setCallback(mock(cn.omisheep.authz.core.callback.RateLimitCallback.class));
+        Field field = Httpd.class.getDeclaredField("_rateLimitMetadata");
+        field.setAccessible(true);
+        Map<String, Map<String, LimitMeta>> metadata = (Map<String, Map<String, LimitMeta>>) field.get(null);
+        metadata.computeIfAbsent("/limit", k -> new HashMap<>())
+                .put("GET", new LimitMeta("1m", 2, new String[]{"1h"}, "0ms", new String[0], RateLimit.CheckType.IP));
+        long now = System.currentTimeMillis();
+
+        RequestBatchMessage batch = new RequestBatchMessage();
+        RequestBatchMessage.Entry entry = new RequestBatchMessage.Entry(
+                new RequestMessage("GET", "/limit", "10.0.0.1", null, now));
+        entry.getTimes().addAll(Arrays.asList(now, now + 1, now + 2));
+        batch.getEntries().add(entry);
+        Httpd.receive(batch);
+
+        Httpd.RequestPool pool = Httpd.getIpRequestPools("/limit", "GET");
+        assertThat(pool.get("10.0.0.1").isBan()).isTrue();
+        pool.clear();
+        metadata.remove("/limit");
+    }
+
     @Test
     void testForbidAndRelive() {
         RequestMeta.setCallback(mock(cn.omisheep.authz.core.callback.RateLimitCallback.class));
@@ -0,0 +1,127 @@
+package cn.omisheep.authz.core.auth.ipf;
+
+import cn.omisheep.authz.support.util.IPAddress;
+import cn.omisheep.authz.support.util.IPRange;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IPRangeTrieTest {
+
+    private final Set<String> expired = new HashSet<>();
+
+    private IPRangeTrie<String> ipRangeTrie;
+
+    @BeforeEach
+    void setUp() {
+        ipRangeTrie = new IPRangeTrie<>();
+        for (String range : new String[]{"10.0.0.0/8", "10.1.0.0/16", "192.168.1.0/24", "172.16.5.4",
+                "100.64.0.0/10", "2001:db8::/32", "2001:db8:1::/48", "fe80::1"}) {
+            put(range);
+        }
+    }
+
+    @Test
+    void testFind() {
+        assertThat(find("10.200.3.4")).isEqualTo("10.0.0.0/8");
+        assertThat(find("10.1.3.4")).isEqualTo("10.0.0.0/8");
+        assertThat(find("192.168.1.255")).isEqualTo("192.168.1.0/24");
+        assertThat(find("192.168.2.1")).isNull();
+        assertThat(find("172.16.5.4")).isEqualTo("172.16.5.4");
+        assertThat(find("172.16.5.5")).isNull();
+        assertThat(find("100.127.255.255")).isEqualTo("100.64.0.0/10");
+        assertThat(find("100.128.0.0")).isNull();
+    }
+
+    @Test
+    void testFindIPv6() {
+        assertThat(find("2001:db8:ffff::1")).isEqualTo("2001:db8::/32");
+        assertThat(find("2001:db9::1")).isNull();
+        assertThat(find("fe80::1")).isEqualTo("fe80::1");
+        assertThat(find("fe80::2")).isNull();
+        assertThat(find("::ffff:10.1.2.3")).isEqualTo("10.0.0.0/8");
+
+        expired.add("2001:db8::/32");
+        assertThat(find("2001:db8:1::1")).isEqualTo("2001:db8:1::/48");
+    }
+
+    @Test
+    void testExpiredRangeIsSkippedAndCleared() {
+        expired.add("10.0.0.0/8");
+        assertThat(find("10.1.3.4")).isEqualTo("10.1.0.0/16");
+        assertThat(find("10.2.3.4")).isNull();
+
+        expired.clear();
+        assertThat(find("10.2.3.4")).isNull();
+    }
+
+    @Test
+    void testRemoveAndMatchAll() {
+        remove("10.1.0.0/16");
+        remove("10.0.0.0/8");
+        assertThat(find("10.1.3.4")).isNull();
+
+        put("0.0.0.0/0");
+        assertThat(find("10.1.3.4")).isEqualTo("0.0.0.0/0");
+    }
+
+    @Test
+    void testSamePrefixRangesExpireSeparately() {
+        put("10.1.2.3/8");
+        assertThat(find("10.9.9.9")).isIn("10.0.0.0/8", "10.1.2.3/8");
+
+        expired.add("10.0.0.0/8");
+        assertThat(find("10.9.9.9")).isEqualTo("10.1.2.3/8");
+        expired.clear();
+        assertThat(find("10.9.9.9")).isEqualTo("10.1.2.3/8");
+
+        put("10.0.0.0/8");
+        remove("10.1.2.3/8");
+        assertThat(find("10.9.9.9")).isEqualTo("10.0.0.0/8");
+        remove("10.0.0.0/8");
+        assertThat(find("10.9.9.9")).isNull();
+        assertThat(find("10.1.3.4")).isEqualTo("10.1.0.0/16");
+    }
+
+    @Test
+    void testEmptyNodesArePruned() throws Exception {
+        ipRangeTrie = new IPRangeTrie<>();
+        for (int i = 0; i < 256; i++) {
+            String range = "10.20." + i + ".0/24";
+            put(range);
+            if (i % 2 == 0) {
+                remove(range);
+            } else {
+                expired.add(range);
+                assertThat(find("10.20." + i + ".1")).isNull();
+            }
+        }
+        Field field = IPRangeTrie.class.getDeclaredField("ipv4Root");
+        field.setAccessible(true);
+        Object root = field.get(ipRangeTrie);
+        Field  zero = root.getClass().getDeclaredField("zero");
+        Field  one  = root.getClass().getDeclaredField("one");
+        zero.setAccessible(true);
+        one.setAccessible(true);
+        assertThat(zero.get(root)).isNull();
+        assertThat(one.get(root)).isNull();
+    }
+
+    private void remove(String range) {
+        ipRangeTrie.remove(new IPRange(range), range);
+    }
+
+    private void put(String range) {
+        ipRangeTrie.put(new IPRange(range), range);
+    }
+
+    private String find(String ip) {
+        return ipRangeTrie.find(new IPAddress(ip), v -> !expired.contains(v));
+    }
+
+}
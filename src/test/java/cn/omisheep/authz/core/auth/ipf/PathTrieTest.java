@@ -0,0 +1,48 @@
+package cn.omisheep.authz.core.auth.ipf;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PathTrieTest {
+
+    private final PathPatternParser parser = new PathPatternParser();
+
+    private PathTrie pathTrie;
+
+    @BeforeEach
+    void setUp() {
+        pathTrie = new PathTrie();
+        for (String pattern : new String[]{"/user/{id}", "/user/me", "/user/{id}/posts", "/file/*.txt",
+                "/static/**", "/docs/{*path}", "/"}) {
+            pathTrie.add(pattern, parser.parse(pattern));
+        }
+    }
+
+    @Test
+    void testLiteralIsPreferred() {
+        assertThat(pathTrie.find("/user/me", p -> true)).isEqualTo("/user/me");
+        assertThat(pathTrie.find("/user/42", p -> true)).isEqualTo("/user/{id}");
+        assertThat(pathTrie.find("/user/me/posts", p -> true)).isEqualTo("/user/{id}/posts");
+    }
+
+    @Test
+    void testWildcardAndCatchAll() {
+        assertThat(pathTrie.find("/file/a.txt", p -> true)).isEqualTo("/file/*.txt");
+        assertThat(pathTrie.find("/file/a.png", p -> true)).isNull();
+        assertThat(pathTrie.find("/static/js/app.js", p -> true)).isEqualTo("/static/**");
+        assertThat(pathTrie.find("/static", p -> true)).isEqualTo("/static/**");
+        assertThat(pathTrie.find("/docs/a/b", p -> true)).isEqualTo("/docs/{*path}");
+        assertThat(pathTrie.find("/", p -> true)).isEqualTo("/");
+        assertThat(pathTrie.find("/unknown", p -> true)).isNull();
+    }
+
+    @Test
+    void testPredicateFallsBackToLessSpecificPattern() {
+        assertThat(pathTrie.find("/user/me", p -> !p.equals("/user/me"))).isEqualTo("/user/{id}");
+        assertThat(pathTrie.find("/user/me", p -> false)).isNull();
+    }
+
+}
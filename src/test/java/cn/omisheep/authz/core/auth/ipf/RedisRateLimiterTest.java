@@ -0,0 +1,200 @@
+package cn.omisheep.authz.core.auth.ipf;
+
+import cn.omisheep.authz.annotation.RateLimit;
+import com.github.fppt.jedismock.RedisServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 在内嵌的redis中执行限流脚本，并与 {@link RequestMeta} 的本地实现逐次比较
+ */
+class RedisRateLimiterTest {
+
+    private static RedisServer              server;
+    private static LettuceConnectionFactory factory;
+    private static StringRedisTemplate      template;
+
+    @BeforeAll
+    static void start() throws Exception {
+        server = RedisServer.newRedisServer().start();
+        factory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(server.getHost(),
+                                                                                server.getBindPort()));
+        factory.afterPropertiesSet();
+        template = new StringRedisTemplate(factory);
+    }
+
+    @AfterAll
+    static void stop() throws Exception {
+        factory.destroy();
+        server.stop();
+    }
+
+    private static boolean redis(RedisScript<Long> script,
+                                 String key,
+                                 long now,
+                                 long window,
+                                 int maxRequests,
+                                 long minInterval) {
+        return execute(script, key, String.valueOf(now), window, maxRequests, minInterval) == RedisRateLimiter.ALLOWED;
+    }
+
+    /**
+     * @param now 为空时使用redis的时间
+     */
+    private static long execute(RedisScript<Long> script,
+                                String key,
+                                String now,
+                                long window,
+                                int maxRequests,
+                                long minInterval,
+                                long... punishmentTime) {
+        List<String> args = new ArrayList<>(Arrays.asList(now, String.valueOf(window), String.valueOf(maxRequests),
+                                                          String.valueOf(minInterval)));
+        if (script == RedisRateLimiter.SLIDING_WINDOW) args.add(UUID.randomUUID().toString());
+        for (long punishment : punishmentTime) args.add(String.valueOf(punishment));
+        Long result = template.execute(script, RedisSerializer.string(), new GenericToStringSerializer<>(Long.class),
+                                       Arrays.asList(key, key + ":ban"), args.toArray());
+        assertNotNull(result);
+        return result;
+    }
+
+    private static boolean local(RequestMeta meta,
+                                 RedisScript<Long> script,
+                                 long now,
+                                 long window,
+                                 int maxRequests,
+                                 long minInterval) {
+        if (script == RedisRateLimiter.SLIDING_WINDOW) return meta.request(now, maxRequests, window, minInterval);
+        RateLimit.Algorithm algorithm = script == RedisRateLimiter.GCRA ? RateLimit.Algorithm.GCRA
+                                                                        : RateLimit.Algorithm.TOKEN_BUCKET;
+        LimitMeta limitMeta = new LimitMeta(window + "ms", maxRequests, new String[]{"1s"}, minInterval + "ms",
+                                            new String[0], RateLimit.CheckType.IP, algorithm);
+        return meta.request(now, limitMeta);
+    }
+
+    private static void assertSameAsLocal(RedisScript<Long> script,
+                                          long seed) {
+        Random random = new Random(seed);
+        for (int round = 0; round < 20; round++) {
+            int         maxRequests = 1 + random.nextInt(6);
+            long        window      = 100 + random.nextInt(900);
+            long        minInterval = random.nextInt(4) == 0 ? random.nextInt(50) : 0;
+            String      key         = "test:" + UUID.randomUUID();
+            long        now         = 1_000_000L;
+            RequestMeta meta        = RequestMeta.withoutRequest(now, "127.0.0.1", null);
+            for (int i = 0; i < 60; i++) {
+                now += random.nextInt(3) == 0 ? 0 : random.nextInt((int) window / 2);
+                assertEquals(local(meta, script, now, window, maxRequests, minInterval),
+                             redis(script, key, now, window, maxRequests, minInterval),
+                             "round " + round + " request " + i);
+            }
+        }
+    }
+
+    @Test
+    void testSlidingWindowMatchesLocal() {
+        assertSameAsLocal(RedisRateLimiter.SLIDING_WINDOW, 1);
+    }
+
+    @Test
+    void testGcraMatchesLocal() {
+        assertSameAsLocal(RedisRateLimiter.GCRA, 2);
+    }
+
+    @Test
+    void testTokenBucketMatchesLocal() {
+        assertSameAsLocal(RedisRateLimiter.TOKEN_BUCKET, 3);
+    }
+
+    @Test
+    void testSlidingWindowEdge() {
+        String key = "test:" + UUID.randomUUID();
+        assertTrue(redis(RedisRateLimiter.SLIDING_WINDOW, key, 1000, 1000, 2, 0));
+        assertTrue(redis(RedisRateLimiter.SLIDING_WINDOW, key, 1500, 1000, 2, 0));
+        assertFalse(redis(RedisRateLimiter.SLIDING_WINDOW, key, 1999, 1000, 2, 0));
+        // 距离最早一次恰好一个窗口
+        assertTrue(redis(RedisRateLimiter.SLIDING_WINDOW, key, 2500, 1000, 2, 0));
+    }
+
+    @Test
+    void testMinIntervalLongerThanWindow() {
+        String key = "test:" + UUID.randomUUID();
+        assertTrue(redis(RedisRateLimiter.SLIDING_WINDOW, key, 1000, 100, 5, 500));
+        assertFalse(redis(RedisRateLimiter.SLIDING_WINDOW, key, 1200, 100, 5, 500));
+        assertTrue(redis(RedisRateLimiter.SLIDING_WINDOW, key, 1700, 100, 5, 500));
+    }
+
+    @Test
+    void testGcraBurst() {
+        String key = "test:" + UUID.randomUUID();
+        for (int i = 0; i < 5; i++) assertTrue(redis(RedisRateLimiter.GCRA, key, 1000, 1000, 5, 0));
+        assertFalse(redis(RedisRateLimiter.GCRA, key, 1000, 1000, 5, 0));
+        assertTrue(redis(RedisRateLimiter.GCRA, key, 1200, 1000, 5, 0));
+        assertFalse(redis(RedisRateLimiter.GCRA, key, 1200, 1000, 5, 0));
+    }
+
+    @Test
+    void testTokenBucketRefill() {
+        String key = "test:" + UUID.randomUUID();
+        for (int i = 0; i < 5; i++) assertTrue(redis(RedisRateLimiter.TOKEN_BUCKET, key, 1000, 1000, 5, 0));
+        assertFalse(redis(RedisRateLimiter.TOKEN_BUCKET, key, 1000, 1000, 5, 0));
+        assertTrue(redis(RedisRateLimiter.TOKEN_BUCKET, key, 1200, 1000, 5, 0));
+        assertFalse(redis(RedisRateLimiter.TOKEN_BUCKET, key, 1200, 1000, 5, 0));
+        for (int i = 0; i < 5; i++) assertTrue(redis(RedisRateLimiter.TOKEN_BUCKET, key, 2200, 1000, 5, 0));
+        assertFalse(redis(RedisRateLimiter.TOKEN_BUCKET, key, 2200, 1000, 5, 0));
+    }
+
+    @Test
+    void testBanIsSharedAndEscalates() {
+        for (RedisScript<Long> script : Arrays.asList(RedisRateLimiter.SLIDING_WINDOW, RedisRateLimiter.GCRA,
+                                                      RedisRateLimiter.TOKEN_BUCKET)) {
+            String key = "test:" + UUID.randomUUID();
+            assertEquals(RedisRateLimiter.ALLOWED, execute(script, key, "1000", 1000, 1, 0, 100, 300));
+            // 超出限制，按第一级惩罚封禁
+            assertEquals(-100, execute(script, key, "1000", 1000, 1, 0, 100, 300));
+            // 其他节点在封禁期间同样被拒绝，返回剩余的封禁时间
+            assertEquals(-40, execute(script, key, "1060", 1000, 1, 0, 100, 300));
+            // 解封后计数已清空
+            assertEquals(RedisRateLimiter.ALLOWED, execute(script, key, "1100", 1000, 1, 0, 100, 300));
+            // 一个窗口内再次被封禁，惩罚升级
+            assertEquals(-300, execute(script, key, "1100", 1000, 1, 0, 100, 300));
+            assertEquals(RedisRateLimiter.ALLOWED, execute(script, key, "1400", 1000, 1, 0, 100, 300));
+            // 超过一个窗口后惩罚等级归零
+            assertEquals(RedisRateLimiter.ALLOWED, execute(script, key, "2500", 1000, 1, 0, 100, 300));
+            assertEquals(-100, execute(script, key, "2500", 1000, 1, 0, 100, 300));
+        }
+    }
+
+    @Test
+    void testRejectWithoutPunishmentDoesNotBan() {
+        String key = "test:" + UUID.randomUUID();
+        assertEquals(RedisRateLimiter.ALLOWED, execute(RedisRateLimiter.GCRA, key, "1000", 1000, 1, 0));
+        assertEquals(RedisRateLimiter.REJECTED, execute(RedisRateLimiter.GCRA, key, "1000", 1000, 1, 0));
+        assertEquals(RedisRateLimiter.ALLOWED, execute(RedisRateLimiter.GCRA, key, "2000", 1000, 1, 0));
+    }
+
+    @Test
+    void testRedisClock() {
+        String key = "test:" + UUID.randomUUID();
+        assertEquals(RedisRateLimiter.ALLOWED, execute(RedisRateLimiter.SLIDING_WINDOW, key, "", 60000, 1, 0, 1000));
+        assertEquals(-1000, execute(RedisRateLimiter.SLIDING_WINDOW, key, "", 60000, 1, 0, 1000));
+        long remaining = execute(RedisRateLimiter.SLIDING_WINDOW, key, "", 60000, 1, 0, 1000);
+        assertTrue(remaining < 0 && remaining >= -1000, String.valueOf(remaining));
+    }
+
+}
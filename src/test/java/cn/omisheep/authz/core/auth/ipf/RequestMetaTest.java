@@ -1,10 +1,20 @@
 package cn.omisheep.authz.core.auth.ipf;
 
+import cn.omisheep.authz.annotation.RateLimit;
 import cn.omisheep.authz.core.LogLevel;
 import cn.omisheep.authz.core.util.LogUtils;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import java.lang.reflect.Field;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static cn.omisheep.authz.annotation.RateLimit.Algorithm.*;
 import static org.junit.jupiter.api.Assertions.*;
 
 class RequestMetaTest {
@@ -92,4 +102,124 @@ class RequestMetaTest {
         assertNotNull(meta1.hashCode());
         assertFalse(meta1.equals(meta3));
     }
+
+    @Test
+    void testSlidingWindow() {
+        long now = 1_000_000L;
+        RequestMeta meta = new RequestMeta(now, "192.168.1.1", null, limitMeta(SLIDING_WINDOW, 3));
+
+        assertTrue(meta.request(now + 100, 3, 1000, 0));
+        assertTrue(meta.request(now + 200, 3, 1000, 0));
+        // 第4次落在窗口内
+        assertFalse(meta.request(now + 300, 3, 1000, 0));
+        // 窗口滑过最早的一次后恢复
+        assertTrue(meta.request(now + 1200, 3, 1000, 0));
+        assertEquals(3, meta.getRequestTimeList().size());
+    }
+
+    @Test
+    void testMinInterval() {
+        long now = 1_000_000L;
+        RequestMeta meta = new RequestMeta(now, "192.168.1.1", null, limitMeta(SLIDING_WINDOW, 10));
+
+        assertFalse(meta.request(now + 50, 10, 1000, 100));
+        assertTrue(meta.request(now + 200, 10, 1000, 100));
+    }
+
+    @Test
+    void testPushRequestOutOfOrder() {
+        long now = 1_000_000L;
+        RequestMeta meta = new RequestMeta(now, "192.168.1.1", null, limitMeta(SLIDING_WINDOW, 3));
+
+        assertTrue(meta.request(now + 500, 3, 1000, 0));
+        assertTrue(meta.pushRequest(now + 100, 3, 1000, 0));
+        assertEquals(new Date(now + 100), meta.getRequestTimeList().get(1));
+        assertFalse(meta.pushRequest(now + 300, 3, 1000, 0));
+    }
+
+    @Test
+    void testResizeKeepsLatestRequests() {
+        long now = 1_000_000L;
+        RequestMeta meta = new RequestMeta(now, "192.168.1.1", null, limitMeta(SLIDING_WINDOW, 5));
+        for (int i = 1; i < 5; i++) meta.request(now + i, 5, 1000, 0);
+
+        assertFalse(meta.request(now + 5, 2, 1000, 0));
+        assertEquals(2, meta.getRequestTimeList().size());
+        assertEquals(new Date(now + 5), meta.getRequestTimeList().get(1));
+    }
+
+    @Test
+    void testConcurrentRequestDoesNotUndercount() throws InterruptedException {
+        long            now    = 1_000_000L;
+        RequestMeta     meta   = new RequestMeta(now, "192.168.1.1", null, limitMeta(SLIDING_WINDOW, 50));
+        AtomicInteger   passed = new AtomicInteger(1);
+        ExecutorService pool   = Executors.newFixedThreadPool(8);
+        CountDownLatch  start  = new CountDownLatch(1);
+        for (int i = 0; i < 400; i++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ignore) {
+                }
+                if (meta.request(now + 1, 50, 60000, 0)) passed.incrementAndGet();
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(50, passed.get());
+    }
+
+    @Test
+    void testGcra() {
+        long        now       = 1_000_000L;
+        LimitMeta   limitMeta = limitMeta(GCRA, 5);
+        RequestMeta meta      = new RequestMeta(now, "192.168.1.1", null, limitMeta);
+
+        for (int i = 1; i < 5; i++) assertTrue(meta.request(now, limitMeta));
+        assertFalse(meta.request(now, limitMeta));
+        // 每 window / maxRequests 恢复一次
+        assertTrue(meta.request(now + 200, limitMeta));
+        assertFalse(meta.request(now + 200, limitMeta));
+        assertTrue(meta.getRequestTimeList().isEmpty());
+    }
+
+    @Test
+    void testTokenBucket() {
+        long        now       = 1_000_000L;
+        LimitMeta   limitMeta = limitMeta(TOKEN_BUCKET, 5);
+        RequestMeta meta      = new RequestMeta(now, "192.168.1.1", null, limitMeta);
+
+        for (int i = 1; i < 5; i++) assertTrue(meta.request(now, limitMeta));
+        assertFalse(meta.request(now, limitMeta));
+        assertTrue(meta.request(now + 200, limitMeta));
+        assertFalse(meta.request(now + 200, limitMeta));
+        // 一个窗口后补满
+        for (int i = 0; i < 5; i++) assertTrue(meta.pushRequest(now + 1200, limitMeta));
+        assertFalse(meta.pushRequest(now + 1200, limitMeta));
+    }
+
+    @Test
+    void testWithoutRequestAllocatesRingLazily() throws Exception {
+        long        now       = 1_000_000L;
+        LimitMeta   limitMeta = limitMeta(GCRA, 5);
+        RequestMeta meta      = RequestMeta.withoutRequest(now, "192.168.1.1", null);
+        Field       ring      = RequestMeta.class.getDeclaredField("requestTimes");
+        ring.setAccessible(true);
+
+        assertTrue(meta.getRequestTimeList().isEmpty());
+        for (int i = 0; i < 5; i++) assertTrue(meta.request(now, limitMeta));
+        assertFalse(meta.request(now, limitMeta));
+        assertNull(ring.get(meta));
+        assertNull(ring.get(new RequestMeta(now, "192.168.1.1", null, limitMeta(TOKEN_BUCKET, 5))));
+
+        assertTrue(meta.request(now, 3, 1000, 0));
+        assertEquals(3, ((long[]) ring.get(meta)).length);
+    }
+
+    private static LimitMeta limitMeta(RateLimit.Algorithm algorithm,
+                                       int maxRequests) {
+        return new LimitMeta("1s", maxRequests, new String[]{"1m"}, "0ms", new String[0], RateLimit.CheckType.IP,
+                             algorithm);
+    }
 }
@@ -0,0 +1,82 @@
+package cn.omisheep.authz.core.auth.ipf;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResizableBloomFilterTest {
+
+    private final Set<String> elements = new HashSet<>();
+
+    @Test
+    void testGrowsAndKeepsElements() {
+        ResizableBloomFilter filter = new ResizableBloomFilter(16, 0.001, () -> elements);
+        for (int i = 0; i < 1000; i++) {
+            String ip = "10.0." + (i / 256) + "." + (i % 256);
+            filter.add(ip, () -> elements.add(ip));
+        }
+        assertThat(filter.capacity()).isGreaterThanOrEqualTo(1000);
+        assertThat(elements).allMatch(filter::contains);
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.contains("172.16." + (i / 256) + "." + (i % 256))) falsePositives++;
+        }
+        assertThat(falsePositives).isLessThan(100);
+    }
+
+    @Test
+    void testRemoveAndReset() {
+        ResizableBloomFilter filter = new ResizableBloomFilter(16, 0.001, () -> elements);
+        filter.add("1.1.1.1", () -> elements.add("1.1.1.1"));
+        // 重复添加
+        filter.add("1.1.1.1", () -> true);
+        filter.remove("1.1.1.1", () -> elements.remove("1.1.1.1"));
+        assertThat(filter.contains("1.1.1.1")).isTrue();
+
+        // 重建后重复添加留下的计数被清除
+        filter.reset(32, 0.01);
+        assertThat(filter.capacity()).isEqualTo(32);
+        assertThat(filter.contains("1.1.1.1")).isFalse();
+    }
+
+    @Test
+    void testChurnDoesNotGrowCapacity() {
+        ResizableBloomFilter filter = new ResizableBloomFilter(16, 0.001, () -> elements);
+        for (int i = 0; i < 10000; i++) {
+            String ip = "10.0." + (i / 256) + "." + (i % 256);
+            filter.add(ip, () -> elements.add(ip));
+            if (elements.size() > 8) {
+                String old = elements.iterator().next();
+                filter.remove(old, () -> elements.remove(old));
+            }
+        }
+        assertThat(filter.capacity()).isEqualTo(16);
+        assertThat(elements).allMatch(filter::contains);
+    }
+
+    @Test
+    void testRebuildIsSizedFromLiveElements() {
+        ResizableBloomFilter filter = new ResizableBloomFilter(16, 0.001, () -> elements);
+        for (int i = 0; i < 17; i++) {
+            String ip = "10.0.0." + i;
+            filter.add(ip, () -> elements.add(ip));
+        }
+        assertThat(filter.capacity()).isEqualTo(34);
+    }
+
+    @Test
+    void testRemoveOfAbsentElementKeepsOtherCounts() {
+        ResizableBloomFilter filter = new ResizableBloomFilter(16, 0.001, () -> elements);
+        filter.add("1.1.1.1", () -> elements.add("1.1.1.1"));
+        // 已经不在数据源中的元素不会减去计数
+        for (int i = 0; i < 10; i++) filter.remove("1.1.1.1", () -> elements.remove("1.1.1.1"));
+        filter.add("2.2.2.2", () -> elements.add("2.2.2.2"));
+        filter.remove("3.3.3.3", () -> elements.remove("3.3.3.3"));
+        assertThat(filter.contains("2.2.2.2")).isTrue();
+    }
+
+}
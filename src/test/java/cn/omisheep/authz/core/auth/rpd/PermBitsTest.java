@@ -0,0 +1,76 @@
+package cn.omisheep.authz.core.auth.rpd;
+
+import cn.omisheep.commons.util.CollectionUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PermBitsTest {
+
+    @Test
+    void testContainsSubMatchesCollectionUtils() {
+        Random random = new Random(42);
+        for (int round = 0; round < 500; round++) {
+            Set<Set<String>> groups = new HashSet<>();
+            int              n      = 1 + random.nextInt(4);
+            for (int i = 0; i < n; i++) {
+                Set<String> group = new HashSet<>();
+                int         m     = 1 + random.nextInt(3);
+                for (int j = 0; j < m; j++) group.add("perm-" + random.nextInt(150));
+                groups.add(group);
+            }
+            Set<String> owned = new HashSet<>();
+            int         k     = random.nextInt(120);
+            for (int i = 0; i < k; i++) owned.add("perm-" + random.nextInt(200));
+
+            PermRolesMeta meta = new PermRolesMeta();
+            meta.setRequirePermissions(groups);
+            long[][] compiled = meta.compile().requirePermissions;
+
+            assertEquals(CollectionUtils.containsSub(groups, owned),
+                         PermBits.containsSub(compiled, PermBits.permissions().bits(owned)));
+        }
+    }
+
+    @Test
+    void testNullAndEmpty() {
+        PermRolesMeta meta = new PermRolesMeta();
+        meta.setRequireRoles(Collections.singleton(new HashSet<>(Arrays.asList("admin", "user"))));
+        long[][] require = meta.compile().requireRoles;
+
+        assertFalse(PermBits.containsSub(require, null));
+        assertFalse(PermBits.containsSub(null, PermBits.roles().bits(Collections.singleton("admin"))));
+        assertFalse(PermBits.containsSub(require, PermBits.roles().bits(Collections.emptySet())));
+        assertFalse(PermBits.containsSub(require, PermBits.roles().bits(Collections.singleton("admin"))));
+        assertTrue(PermBits.containsSub(require, PermBits.roles()
+                .bits(new HashSet<>(Arrays.asList("admin", "user", "unknown")))));
+        assertNull(meta.compile().excludeRoles);
+        assertFalse(meta.compile().hasPermissions());
+    }
+
+    @Test
+    void testCompileInvalidatedByModify() {
+        PermRolesMeta meta = new PermRolesMeta();
+        meta.setRequireRoles(Collections.singleton(Collections.singleton("admin")));
+        PermRolesMeta.Compiled compiled = meta.compile();
+        assertSame(compiled, meta.compile());
+
+        meta.setExcludeRoles(Collections.singleton(Collections.singleton("guest")));
+        assertNotSame(compiled, meta.compile());
+        assertTrue(PermBits.containsSub(meta.compile().excludeRoles,
+                                        PermBits.roles().bits(Collections.singleton("guest"))));
+    }
+
+    @Test
+    void testOr() {
+        long[] a = {1L};
+        long[] b = {0L, 2L};
+        assertArrayEquals(new long[]{1L, 2L}, PermBits.or(a, b));
+        assertArrayEquals(new long[]{1L}, a);
+        assertSame(a, PermBits.or(a, null));
+        assertNull(PermBits.or(null, null));
+    }
+
+}
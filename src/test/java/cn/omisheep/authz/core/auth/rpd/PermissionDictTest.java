@@ -21,6 +21,7 @@ import java.lang.reflect.Field;
 import java.util.*;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.*;
 
 import org.mockito.quality.Strictness;
@@ -264,4 +265,105 @@ class PermissionDictTest {
         // 應該返回 ResponseResult 或 AuthzResult
         assertThat(result).isNotNull();
     }
+
+    @Test
+    void testSnapshotIsImmutableAfterModify() {
+        // 修改前取得的快照不受之後修改影響
+        Map<String, Map<String, PermRolesMeta>> before = PermissionDict.getRolePermission();
+        boolean                                 had    = before.containsKey("snapshot-api");
+
+        AuthzModifier modifier = new AuthzModifier();
+        modifier.setTarget(AuthzModifier.Target.API);
+        modifier.setOperate(AuthzModifier.Operate.ADD);
+        modifier.setApi("snapshot-api");
+        modifier.setMethod("GET");
+        Set<Set<String>> requireRoles = new HashSet<>();
+        requireRoles.add(new HashSet<>(Arrays.asList("admin")));
+        modifier.setRequireRoles(requireRoles);
+        PermissionDict.modifyAPI(modifier);
+
+        assertThat(before.containsKey("snapshot-api")).isEqualTo(had);
+        assertThat(PermissionDict.getRolePermission().get("snapshot-api")).containsKey("GET");
+
+        modifier.setOperate(AuthzModifier.Operate.DELETE);
+        PermissionDict.modifyAPI(modifier);
+        assertThat(PermissionDict.getRolePermission()).doesNotContainKey("snapshot-api");
+    }
+
+    @Test
+    void testOnlyModifiedEntryIsRepublished() {
+        PermissionDict.putParam("untouched-api", "GET");
+        AuthzModifier modifier = new AuthzModifier();
+        modifier.setTarget(AuthzModifier.Target.API);
+        modifier.setOperate(AuthzModifier.Operate.ADD);
+        modifier.setApi("untouched-api");
+        modifier.setMethod("GET");
+        Set<Set<String>> requireRoles = new HashSet<>();
+        requireRoles.add(new HashSet<>(Arrays.asList("admin")));
+        modifier.setRequireRoles(requireRoles);
+        PermissionDict.modifyAPI(modifier);
+        Map<String, PermRolesMeta> untouched = PermissionDict.getRolePermission().get("untouched-api");
+
+        modifier.setApi("modified-api");
+        PermissionDict.modifyAPI(modifier);
+        assertThat(PermissionDict.getRolePermission().get("untouched-api")).isSameAs(untouched);
+        assertThat(PermissionDict.getRolePermission()).containsKey("modified-api");
+
+        modifier.setOperate(AuthzModifier.Operate.DELETE);
+        PermissionDict.modifyAPI(modifier);
+        modifier.setApi("untouched-api");
+        PermissionDict.modifyAPI(modifier);
+    }
+
+    @Test
+    void testParamSnapshotDoesNotShareMetadata() {
+        PermissionDict.putParam("param-api", "GET", "id",
+                                ParamMetadata.of(String.class, ParamMetadata.ParamType.REQUEST_PARAM, null));
+        AuthzModifier modifier = new AuthzModifier();
+        modifier.setTarget(AuthzModifier.Target.PARAMETER);
+        modifier.setOperate(AuthzModifier.Operate.ADD);
+        modifier.setApi("param-api");
+        modifier.setMethod("GET");
+        modifier.setValue("id");
+        modifier.setIndex(0);
+        Set<Set<String>> requireRoles = new HashSet<>();
+        requireRoles.add(new HashSet<>(Arrays.asList("admin")));
+        modifier.setRequireRoles(requireRoles);
+        modifier.setRange(Collections.singleton("1-10"));
+        PermissionDict.modifyParam(modifier);
+
+        ParamMetadata snapshot = PermissionDict.getParamPermission().get("param-api").get("GET").get("id");
+        assertThat(snapshot.getParamMetaList()).hasSize(1);
+        assertThatThrownBy(() -> snapshot.getParamMetaList().clear()).isInstanceOf(UnsupportedOperationException.class);
+
+        modifier.setIndex(1);
+        PermissionDict.modifyParam(modifier);
+        assertThat(snapshot.getParamMetaList()).hasSize(1);
+        assertThat(PermissionDict.getParamPermission().get("param-api").get("GET").get("id").getParamMetaList())
+                .hasSize(2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testModifyDataReturnsUnmodifiableList() throws Exception {
+        String className = "cn.omisheep.test.Resource";
+        Field  field     = PermissionDict.class.getDeclaredField("_authzResourcesModel");
+        field.setAccessible(true);
+        ((Map<String, Object>) field.get(null)).put(className, mock(cn.omisheep.authz.core.schema.Model.class));
+        HashMap<String, List<DataPermRolesMeta>> data = new HashMap<>();
+        data.put(className, new ArrayList<>(Arrays.asList(new DataPermRolesMeta(), new DataPermRolesMeta())));
+        PermissionDict.initArgs(Collections.emptySet(), Collections.emptyMap(), data, new HashMap<>());
+
+        AuthzModifier modifier = new AuthzModifier();
+        modifier.setTarget(AuthzModifier.Target.DATA_ROW);
+        modifier.setOperate(AuthzModifier.Operate.DELETE);
+        modifier.setClassName(className);
+        modifier.setIndex(0);
+        Object result = PermissionDict.modifyData(modifier);
+
+        assertThat(result).isInstanceOf(List.class);
+        assertThatThrownBy(() -> ((List<DataPermRolesMeta>) result).clear())
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThat(PermissionDict.getDataPermission().get(className)).hasSize(1);
+    }
 }
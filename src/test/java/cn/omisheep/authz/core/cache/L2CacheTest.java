@@ -0,0 +1,137 @@
+package cn.omisheep.authz.core.cache;
+
+import cn.omisheep.authz.AuthzAutoConfiguration;
+import cn.omisheep.authz.core.AuthzProperties;
+import cn.omisheep.authz.core.LogLevel;
+import cn.omisheep.authz.core.msg.CacheMessage;
+import cn.omisheep.authz.core.util.EmbeddedRedis;
+import cn.omisheep.authz.core.util.LogUtils;
+import cn.omisheep.authz.core.util.RedisUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 两个L2Cache实例共用同一个内嵌redis，模拟两个节点
+ */
+class L2CacheTest {
+
+    private RedisMessageListenerContainer container;
+
+    @BeforeAll
+    static void start() throws Exception {
+        LogUtils.setLogLevel(LogLevel.INFO);
+        EmbeddedRedis.start();
+    }
+
+    @AfterEach
+    void stop() {
+        if (container != null) container.stop();
+    }
+
+    private static L2Cache node(String refreshAfterWriteTime) {
+        AuthzProperties properties = new AuthzProperties();
+        properties.getCache().setRefreshAfterWriteTime(refreshAfterWriteTime);
+        return new L2Cache(properties);
+    }
+
+    private static void await(Supplier<Boolean> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.get()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timeout");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void testWriteMessageIsPublishedAfterRedisWrite() throws Exception {
+        L2Cache a   = node("0");
+        L2Cache b   = node("0");
+        String  key = "test:" + UUID.randomUUID();
+
+        // 收到消息时redis中的值
+        AtomicReference<Object> seen  = new AtomicReference<>();
+        AtomicBoolean           ready = new AtomicBoolean();
+        container = EmbeddedRedis.subscribe((message, pattern) -> {
+            CacheMessage cacheMessage = (CacheMessage) AuthzAutoConfiguration.CacheAutoConfiguration
+                    .jackson2JsonRedisSerializer.deserialize(message.getBody());
+            if (!cacheMessage.getKeys().contains(key)) {
+                ready.set(true);
+                return;
+            }
+            Cache.CacheItem item = RedisUtils.Obj.get(key, Cache.CacheItem.class);
+            b.receive(cacheMessage);
+            seen.set(item != null ? item.getValue() : null);
+        });
+        // 等待订阅生效
+        await(() -> {
+            a.set(key + ":ready", "");
+            return ready.get();
+        });
+
+        for (int i = 1; i <= 20; i++) {
+            String value = "v" + i;
+            a.set(key, value);
+            await(() -> value.equals(seen.get()));
+            assertEquals(value, b.get(key));
+        }
+    }
+
+    @Test
+    void testAfterWriteRunsAfterRedisWrite() throws Exception {
+        L2Cache                 a    = node("0");
+        String                  key  = "test:" + UUID.randomUUID();
+        AtomicReference<Object> seen = new AtomicReference<>();
+        a.set(key, "v1", 60000L, () -> {
+            Cache.CacheItem item = RedisUtils.Obj.get(key, Cache.CacheItem.class);
+            seen.set(item != null ? item.getValue() : "absent");
+        });
+        await(() -> seen.get() != null);
+        assertEquals("v1", seen.get());
+    }
+
+    @Test
+    void testSneakyWriteIsStaleOnOtherNodeWithoutRefresh() throws Exception {
+        L2Cache a   = node("0");
+        L2Cache b   = node("0");
+        String  key = "test:" + UUID.randomUUID();
+
+        a.set(key, "v1");
+        await(() -> "v1".equals(b.get(key)));
+
+        a.setSneaky(key, "v2");
+        await(() -> {
+            Cache.CacheItem item = RedisUtils.Obj.get(key, Cache.CacheItem.class);
+            return item != null && "v2".equals(item.getValue());
+        });
+        Thread.sleep(300);
+        assertEquals("v1", b.get(key));
+    }
+
+    @Test
+    void testSneakyWriteIsRefreshedOnOtherNode() throws Exception {
+        L2Cache a   = node("200ms");
+        L2Cache b   = node("200ms");
+        String  key = "test:" + UUID.randomUUID();
+
+        a.set(key, "v1");
+        await(() -> "v1".equals(b.get(key)));
+
+        a.setSneaky(key, "v2");
+        await(() -> "v2".equals(b.get(key)));
+    }
+
+    @Test
+    void testRefreshIsEnabledByDefault() {
+        assertNotNull(new AuthzProperties().getCache().getRefreshAfterWriteTime());
+    }
+
+}
@@ -0,0 +1,101 @@
+package cn.omisheep.authz.core.cache.library;
+
+import cn.omisheep.authz.core.auth.PermLibrary;
+import cn.omisheep.authz.core.auth.rpd.PermBits;
+import cn.omisheep.authz.core.auth.rpd.PermRolesMeta;
+import cn.omisheep.authz.core.cache.Cache;
+import cn.omisheep.authz.core.cache.L1Cache;
+import cn.omisheep.authz.core.config.Constants;
+import cn.omisheep.authz.core.helper.BaseHelper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RolePermissionsMemoTest {
+
+    private Object      previousCache;
+    private Cache       cache;
+    private PermLibrary permLibrary;
+
+    @BeforeEach
+    void setup() throws Exception {
+        Field field = BaseHelper.class.getDeclaredField("cache");
+        field.setAccessible(true);
+        previousCache = field.get(null);
+        cache         = new L1Cache();
+        field.set(null, cache);
+
+        permLibrary = mock(PermLibrary.class);
+        when(permLibrary.getPermissionsByRole("admin")).thenReturn(new HashSet<>(Arrays.asList("read", "write")));
+        when(permLibrary.getPermissionsByRole("user")).thenReturn(new HashSet<>(Collections.singletonList("read")));
+    }
+
+    @AfterEach
+    void restore() throws Exception {
+        Field field = BaseHelper.class.getDeclaredField("cache");
+        field.setAccessible(true);
+        field.set(null, previousCache);
+    }
+
+    private void cacheRole(String role) {
+        cache.set(Constants.PERMISSIONS_BY_ROLE_KEY_PREFIX.get() + role, permLibrary.getPermissionsByRole(role));
+    }
+
+    @Test
+    void testExpandIsMemoizedPerRoleCombination() {
+        cacheRole("admin");
+        cacheRole("user");
+        RolePermissionsMemo memo = new RolePermissionsMemo(permLibrary);
+
+        RolePermissionsMemo.Expansion first = memo.expand(new HashSet<>(Arrays.asList("user", "admin")));
+        assertEquals(new HashSet<>(Arrays.asList("read", "write")), first.getPermissions());
+        assertSame(first, memo.expand(new LinkedHashSet<>(Arrays.asList("admin", "user"))));
+        assertNotSame(first, memo.expand(Collections.singleton("user")));
+    }
+
+    @Test
+    void testInvalidatedWhenRoleCacheChanges() {
+        cacheRole("admin");
+        RolePermissionsMemo           memo  = new RolePermissionsMemo(permLibrary);
+        RolePermissionsMemo.Expansion first = memo.expand(Collections.singleton("admin"));
+
+        when(permLibrary.getPermissionsByRole("admin")).thenReturn(Collections.singleton("read"));
+        cacheRole("admin");
+        RolePermissionsMemo.Expansion second = memo.expand(Collections.singleton("admin"));
+        assertNotSame(first, second);
+        assertEquals(Collections.singleton("read"), second.getPermissions());
+
+        cache.del(Constants.PERMISSIONS_BY_ROLE_KEY_PREFIX.get() + "admin");
+        assertNotSame(second, memo.expand(Collections.singleton("admin")));
+    }
+
+    @Test
+    void testNotMemoizedWithoutCacheEntry() {
+        RolePermissionsMemo memo = new RolePermissionsMemo(permLibrary);
+        assertNotSame(memo.expand(Collections.singleton("admin")), memo.expand(Collections.singleton("admin")));
+        assertTrue(memo.expand(null).getPermissions().isEmpty());
+    }
+
+    @Test
+    void testInvalidatedWhenNewPermissionInterned() {
+        cacheRole("admin");
+        RolePermissionsMemo           memo  = new RolePermissionsMemo(permLibrary);
+        RolePermissionsMemo.Expansion first = memo.expand(Collections.singleton("admin"));
+
+        PermRolesMeta meta = new PermRolesMeta();
+        meta.setRequirePermissions(Collections.singleton(Collections.singleton("write")));
+        meta.setExcludePermissions(Collections.singleton(Collections.singleton("memo-" + UUID.randomUUID())));
+        long[][] require = meta.compile().requirePermissions;
+
+        RolePermissionsMemo.Expansion second = memo.expand(Collections.singleton("admin"));
+        assertNotSame(first, second);
+        assertTrue(PermBits.containsSub(require, second.getBits()));
+    }
+
+}
@@ -0,0 +1,87 @@
+package cn.omisheep.authz.core.msg;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestMessageBatcherTest {
+
+    @BeforeEach
+    void setUp() {
+        RequestMessageBatcher.init(10, "1h");
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestMessageBatcher.shutdown();
+    }
+
+    @Test
+    void testDrainCoalescesSameSource() {
+        RequestMessageBatcher.publish(new RequestMessage("GET", "/a", "10.0.0.1", null, 1));
+        RequestMessageBatcher.publish(new RequestMessage("GET", "/a", "10.0.0.2", null, 2));
+        RequestMessageBatcher.publish(new RequestMessage("GET", "/a", "10.0.0.1", null, 3));
+
+        RequestBatchMessage batch = RequestMessageBatcher.drain(10);
+        assertThat(batch.getEntries()).hasSize(2);
+        assertThat(batch.getEntries().get(0).getIp()).isEqualTo("10.0.0.1");
+        assertThat(batch.getEntries().get(0).getTimes()).containsExactly(1L, 3L);
+        assertThat(batch.getEntries().get(1).getTimes()).containsExactly(2L);
+        assertThat(RequestMessageBatcher.drain(10)).isNull();
+    }
+
+    @Test
+    void testDrainRespectsMax() {
+        for (int i = 0; i < 3; i++) {
+            RequestMessageBatcher.publish(new RequestMessage("GET", "/b", "10.0.0.1", null, i));
+        }
+
+        assertThat(RequestMessageBatcher.drain(2).getEntries().get(0).getTimes()).containsExactly(0L, 1L);
+        assertThat(RequestMessageBatcher.drain(2).getEntries().get(0).getTimes()).containsExactly(2L);
+        assertThat(RequestMessageBatcher.drain(2)).isNull();
+    }
+
+    @Test
+    void testInitCancelsPreviousSchedule() throws Exception {
+        Field field = RequestMessageBatcher.class.getDeclaredField("scheduledFuture");
+        field.setAccessible(true);
+        ScheduledFuture<?> first = (ScheduledFuture<?>) field.get(null);
+
+        RequestMessageBatcher.init(10, "1h");
+        assertThat(first.isCancelled()).isTrue();
+        assertThat(((ScheduledFuture<?>) field.get(null)).isCancelled()).isFalse();
+    }
+
+    @Test
+    void testQueueIsBounded() throws Exception {
+        // 模拟发布阻塞
+        Field field = RequestMessageBatcher.class.getDeclaredField("flushing");
+        field.setAccessible(true);
+        AtomicBoolean flushing = (AtomicBoolean) field.get(null);
+        flushing.set(true);
+        try {
+            long dropped = RequestMessageBatcher.getDroppedCount();
+            int  max     = 10 * RequestMessageBatcher.MAX_PENDING_BATCHES;
+            for (int i = 0; i < max + 5; i++) {
+                RequestMessageBatcher.publish(new RequestMessage("GET", "/c", "10.0.0.1", null, i));
+            }
+            assertThat(RequestMessageBatcher.getDroppedCount() - dropped).isEqualTo(5);
+
+            int drained = 0;
+            RequestBatchMessage batch;
+            while ((batch = RequestMessageBatcher.drain(10)) != null) {
+                drained += batch.getEntries().get(0).getTimes().size();
+            }
+            assertThat(drained).isEqualTo(max);
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package cn.omisheep.authz.core.tk;
+
+import cn.omisheep.authz.core.TokenException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class AccessTokenCacheTest {
+
+    private MockedStatic<TokenHelper> tokenHelper;
+
+    @BeforeEach
+    void setUp() {
+        tokenHelper = mockStatic(TokenHelper.class);
+        tokenHelper.when(() -> TokenHelper.parseAccessToken(anyString())).thenAnswer(invocation -> {
+            String value = invocation.getArgument(0);
+            if (value.startsWith("invalid")) throw new TokenException();
+            String tid = value.substring(0, value.indexOf('.'));
+            return new AccessToken(tid, value, "token-" + value, 60000L, System.currentTimeMillis() + 60000L,
+                                   GrantType.PASSWORD, null, "scope", "user", "web", "device");
+        });
+        AccessTokenCache.init(10, "1m");
+    }
+
+    @AfterEach
+    void tearDown() {
+        AccessTokenCache.init(0, null);
+        tokenHelper.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, ?> index() throws Exception {
+        Field field = AccessTokenCache.class.getDeclaredField("index");
+        field.setAccessible(true);
+        return (Map<String, ?>) field.get(null);
+    }
+
+    @Test
+    void testParseIsCached() {
+        AccessToken first = AccessTokenCache.parse("a.1");
+        assertSame(first, AccessTokenCache.parse("a.1"));
+        tokenHelper.verify(() -> TokenHelper.parseAccessToken("a.1"), times(1));
+
+        assertThrows(TokenException.class, () -> AccessTokenCache.parse("invalid"));
+        assertThrows(TokenException.class, () -> AccessTokenCache.parse("invalid"));
+        tokenHelper.verify(() -> TokenHelper.parseAccessToken("invalid"), times(2));
+    }
+
+    @Test
+    void testInvalidateByTid() throws Exception {
+        AccessToken a1 = AccessTokenCache.parse("a.1");
+        AccessToken a2 = AccessTokenCache.parse("a.2");
+        AccessToken b1 = AccessTokenCache.parse("b.1");
+
+        AccessTokenCache.invalidate("a");
+        assertFalse(index().containsKey("a"));
+        assertNotSame(a1, AccessTokenCache.parse("a.1"));
+        assertNotSame(a2, AccessTokenCache.parse("a.2"));
+        assertSame(b1, AccessTokenCache.parse("b.1"));
+
+        AccessTokenCache.invalidate("unknown");
+        AccessTokenCache.invalidate(null);
+    }
+
+    @Test
+    void testIndexFollowsEviction() throws Exception {
+        for (int i = 0; i < 100; i++) AccessTokenCache.parse("t" + i + ".x");
+        Field field = AccessTokenCache.class.getDeclaredField("cache");
+        field.setAccessible(true);
+        ((com.github.benmanes.caffeine.cache.Cache<?, ?>) field.get(null)).cleanUp();
+        assertTrue(index().size() <= 10);
+    }
+
+}
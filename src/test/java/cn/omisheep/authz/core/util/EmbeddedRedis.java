@@ -0,0 +1,84 @@
+package cn.omisheep.authz.core.util;
+
+import cn.omisheep.authz.AuthzAutoConfiguration;
+import cn.omisheep.authz.core.AuthzContext;
+import cn.omisheep.authz.core.AuthzProperties;
+import cn.omisheep.authz.core.msg.CacheMessage;
+import com.github.fppt.jedismock.RedisServer;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.lang.reflect.Field;
+import java.time.Duration;
+
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 测试用的内嵌redis，{@link RedisUtils} 只会初始化一次，所以整个测试进程共用同一个实例
+ */
+public final class EmbeddedRedis {
+
+    private static LettuceConnectionFactory factory;
+
+    private EmbeddedRedis() {
+    }
+
+    /**
+     * 启动内嵌redis，并让 {@link RedisUtils} 连接到它
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public static synchronized void start() throws Exception {
+        if (factory != null) return;
+        RedisServer server = RedisServer.newRedisServer().start();
+        // 脚本出错时内嵌redis不会返回，缩短超时时间让测试尽快失败
+        factory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(server.getHost(),
+                                                                                server.getBindPort()),
+                                               LettuceClientConfiguration.builder()
+                                                       .commandTimeout(Duration.ofSeconds(5)).build());
+        factory.afterPropertiesSet();
+
+        // 与生产环境使用同一个配置
+        RedisTemplate template = new AuthzAutoConfiguration.CacheAutoConfiguration().redisTemplate(factory);
+
+        ApplicationContext ctx = mock(ApplicationContext.class);
+        when(ctx.getBean(eq("authzRedisTemplate"), eq(RedisTemplate.class))).thenReturn(template);
+        when(ctx.getBean(RedisProperties.class)).thenReturn(new RedisProperties());
+        when(ctx.getBean(AuthzProperties.class)).thenReturn(new AuthzProperties());
+        Field field = AuthzContext.class.getDeclaredField("ctx");
+        field.setAccessible(true);
+        ApplicationContext origin = (ApplicationContext) field.get(null);
+        field.set(null, ctx);
+        try {
+            Class.forName(RedisUtils.class.getName(), true, RedisUtils.class.getClassLoader());
+        } finally {
+            field.set(null, origin);
+        }
+
+        if (CacheMessage.CHANNEL == null) CacheMessage.CHANNEL = "AUTHZ:test:CACHE_DATA_UPDATE";
+    }
+
+    /**
+     * 订阅 {@link CacheMessage#CHANNEL}，模拟其他节点收到的消息
+     *
+     * @param listener 监听器
+     * @return 订阅容器，用完后需要stop
+     */
+    public static RedisMessageListenerContainer subscribe(MessageListener listener) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        container.addMessageListener(listener, new ChannelTopic(CacheMessage.CHANNEL));
+        container.afterPropertiesSet();
+        container.start();
+        return container;
+    }
+
+}
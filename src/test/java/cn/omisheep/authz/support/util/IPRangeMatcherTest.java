@@ -0,0 +1,69 @@
+package cn.omisheep.authz.support.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IPRangeMatcherTest {
+
+    @Test
+    void testMatches() {
+        IPRangeMatcher matcher = IPRangeMatcher.compile(
+                IPRangeMeta.parse("10.0.0.0/8,10.1.0.0/16,192.168.1.0/24,192.168.2.0/24,172.16.5.4,2001:db8::/32"));
+        assertThat(matcher.isEmpty()).isFalse();
+        assertThat(matcher.matches(new IPAddress("10.255.255.255"))).isTrue();
+        assertThat(matcher.matches(new IPAddress("11.0.0.0"))).isFalse();
+        assertThat(matcher.matches(new IPAddress("192.168.2.200"))).isTrue();
+        assertThat(matcher.matches(new IPAddress("192.168.3.1"))).isFalse();
+        assertThat(matcher.matches(new IPAddress("172.16.5.4"))).isTrue();
+        assertThat(matcher.matches(new IPAddress("172.16.5.5"))).isFalse();
+        assertThat(matcher.matches(new IPAddress("2001:db8:ffff::1"))).isTrue();
+        assertThat(matcher.matches(new IPAddress("::a01:203"))).isFalse();
+        assertThat(matcher.matches(null)).isFalse();
+
+        IPRangeMatcher all = IPRangeMatcher.compile(IPRangeMeta.parse("0.0.0.0/0,::/0"));
+        assertThat(all.matches(new IPAddress("255.255.255.255"))).isTrue();
+        assertThat(all.matches(new IPAddress("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff"))).isTrue();
+
+        assertThat(IPRangeMatcher.compile(null).isEmpty()).isTrue();
+    }
+
+    @Test
+    void testSameResultAsLinearScan() {
+        Random       random = new Random(7);
+        Set<IPRange> ranges = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            ranges.add(new IPRange(randomIPv4(random) + "/" + (8 + random.nextInt(25))));
+        }
+        IPRangeMatcher matcher = IPRangeMatcher.compile(ranges);
+        for (int i = 0; i < 10000; i++) {
+            IPAddress address  = new IPAddress(randomIPv4(random));
+            boolean   expected = ranges.stream().anyMatch(r -> r.isIPAddressInRange(address));
+            assertThat(matcher.matches(address)).as(address.toString()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void testIPRangeMeta() {
+        IPRangeMeta meta = new IPRangeMeta().setAllow("10.0.0.0/8").setDeny("10.0.0.0/24");
+        assertThat(meta.isPermitted(new IPAddress("10.1.0.1"))).isTrue();
+        assertThat(meta.isPermitted(new IPAddress("10.0.0.1"))).isFalse();
+        assertThat(meta.isPermitted(new IPAddress("11.0.0.1"))).isFalse();
+        assertThat(meta.isPermitted(null)).isFalse();
+
+        meta.setAllow("");
+        assertThat(meta.isPermitted(new IPAddress("11.0.0.1"))).isTrue();
+        assertThat(meta.isPermitted(null)).isTrue();
+    }
+
+    private static String randomIPv4(Random random) {
+        // 集中在少数几个网段，使随机网段之间大量重叠
+        return (10 + random.nextInt(3)) + "." + random.nextInt(4) + "." + random.nextInt(256) + "."
+                + random.nextInt(256);
+    }
+
+}
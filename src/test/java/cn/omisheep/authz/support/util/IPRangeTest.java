@@ -0,0 +1,67 @@
+package cn.omisheep.authz.support.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IPRangeTest {
+
+    @Test
+    void testParseIPv6() {
+        assertThat(new IPAddress("::1").toString()).isEqualTo("0:0:0:0:0:0:0:1");
+        assertThat(new IPAddress("0:0:0:0:0:0:0:1")).isEqualTo(new IPAddress("::1"));
+        assertThat(new IPAddress("2001:DB8::8:800:200C:417A").toString()).isEqualTo("2001:db8:0:0:8:800:200c:417a");
+        assertThat(new IPAddress("[fe80::1%eth0]")).isEqualTo(new IPAddress("fe80::1"));
+        assertThat(new IPAddress("::").toString()).isEqualTo("0:0:0:0:0:0:0:0");
+        assertThat(new IPAddress("64:ff9b::192.0.2.33").getLow()).isEqualTo(0xC0000221L);
+
+        IPAddress mapped = new IPAddress("::ffff:192.168.1.1");
+        assertThat(mapped.isIPv6()).isFalse();
+        assertThat(mapped).isEqualTo(new IPAddress("192.168.1.1"));
+
+        for (String invalid : new String[]{"1::2::3", "12345::", "1:2:3:4:5:6:7:8:9", "1:2:3", "g::1", "1:"}) {
+            assertThatThrownBy(() -> new IPAddress(0).parseIPv6Address(invalid))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void testParseIPv4() {
+        assertThat(new IPAddress("255.255.255.255").toString()).isEqualTo("255.255.255.255");
+        assertThat(new IPAddress("10.1.2.3").intValue()).isEqualTo(0x0A010203);
+        for (String invalid : new String[]{"1.2.3", "1.2.3.256", "1..2.3", "1.2.3.4.5", "a.b.c.d"}) {
+            assertThatThrownBy(() -> new IPAddress(0).parseIPAddress(invalid))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void testIPv6Range() {
+        IPRange range = new IPRange("2001:db8::/32");
+        assertThat(range.getPrefixLength()).isEqualTo(32);
+        assertThat(range.isIPAddressInRange(new IPAddress("2001:db8:ffff:ffff::1"))).isTrue();
+        assertThat(range.isIPAddressInRange(new IPAddress("2001:db9::"))).isFalse();
+        assertThat(range.isIPAddressInRange(new IPAddress("32.1.13.184"))).isFalse();
+
+        IPRange low = new IPRange("fe80::ff00/120");
+        assertThat(low.isIPAddressInRange(new IPAddress("fe80::ffab"))).isTrue();
+        assertThat(low.isIPAddressInRange(new IPAddress("fe80::1:ffab"))).isFalse();
+
+        assertThat(new IPRange("::/0").isIPAddressInRange(new IPAddress("abcd::1"))).isTrue();
+        assertThat(new IPRange("::1").getPrefixLength()).isEqualTo(128);
+        assertThat(new IPRange("::1").isIPAddressInRange(new IPAddress("0:0:0:0:0:0:0:1"))).isTrue();
+        assertThat(new IPRange("::1/128").isIPAddressInRange(new IPAddress("::2"))).isFalse();
+
+        assertThatThrownBy(() -> new IPRange("::/129")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new IPRange("::/255.0.0.0")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testIPv4RangeDoesNotMatchIPv6() {
+        IPRange range = new IPRange("0.0.0.0/0");
+        assertThat(range.isIPAddressInRange(new IPAddress("10.0.0.1"))).isTrue();
+        assertThat(range.isIPAddressInRange(new IPAddress("::a00:1"))).isFalse();
+    }
+
+}